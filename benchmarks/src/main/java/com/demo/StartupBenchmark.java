@@ -0,0 +1,115 @@
+package com.demo;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup of the application in a new JVM, in the default and the {@code fast-startup} profile: the time until it
+ * accepts connections, and the time until it answered its first request, a find by id. The JVM runs the classes of the
+ * benchmarks, unless {@code -p jar=} names a jar to run instead, such as the plain jar of a {@code -Pcds} build with
+ * {@code -p jvmArgs=-XX:SharedArchiveFile=../target/client-api.jsa}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+   static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+   @Param({ "default", "fast-startup" })
+   String profile;
+   @Param({ "" })
+   String jar;
+   @Param({ "" })
+   String jvmArgs;
+
+   HttpClient http = HttpClient.newHttpClient();
+   Process process;
+   int port;
+
+   @TearDown(Level.Invocation)
+   public void stop() throws InterruptedException {
+      process.destroy();
+      process.waitFor();
+   }
+
+   @Benchmark
+   public int accepting() throws IOException, InterruptedException {
+      start();
+
+      for (long start = System.nanoTime(); System.nanoTime() - start < TIMEOUT_NANOS; Thread.sleep(1)) {
+         try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port));
+            return port;
+         } catch (ConnectException e) { //not listening yet
+         }
+      }
+
+      throw new IllegalStateException("Not accepting connections after a minute");
+   }
+
+   @Benchmark
+   public int firstRequest() throws IOException, InterruptedException {
+      start();
+      HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v1/clients/1")).build();
+
+      for (long start = System.nanoTime(); System.nanoTime() - start < TIMEOUT_NANOS; Thread.sleep(1)) {
+         try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+         } catch (ConnectException e) { //not listening yet
+         }
+      }
+
+      throw new IllegalStateException("No answer after a minute");
+   }
+
+   private void start() throws IOException {
+      try (ServerSocket socket = new ServerSocket(0)) {
+         port = socket.getLocalPort();
+      }
+
+      List<String> command = new ArrayList<>();
+      command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+      if (!jvmArgs.isBlank()) command.addAll(List.of(jvmArgs.trim().split("\\s+")));
+
+      if (jar.isEmpty()) {
+         command.addAll(List.of("-cp", System.getProperty("java.class.path"), ClientApiApplication.class.getName()));
+      } else {
+         command.addAll(List.of("-jar", jar));
+      }
+
+      command.add("--server.port=" + port);
+      command.add("--spring.profiles.active=" + profile);
+
+      process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+   }
+}
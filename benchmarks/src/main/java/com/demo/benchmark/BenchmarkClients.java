@@ -0,0 +1,111 @@
+package com.demo.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Generates valid, distinct clients from a seed, cheaply enough to be generated inside a benchmark.
+ * <p>
+ * The same seed always gives the same client, so a benchmark can rebuild the values of a stored client, and distinct
+ * seeds give distinct idNumbers and mobileNumbers. First names are drawn from {@value #FIRST_NAME_COUNT} names made of
+ * two or three syllables.
+ */
+public final class BenchmarkClients {
+   public static final int FIRST_NAME_COUNT = 8_400;
+
+   private static final long RANK_PERMUTATION = 2_654_435_761L; //a prime, so a bijection modulo any client count it does not divide
+
+   private static final String[] SYLLABLES = {
+         "an", "de", "el", "ja", "ko", "la", "ma", "ne", "pi", "ra",
+         "sa", "si", "th", "wa", "zo", "bu", "ch", "di", "fe", "ho" };
+   private static final String[] FIRST_NAMES = new String[FIRST_NAME_COUNT];
+
+   static {
+      int count = SYLLABLES.length;
+
+      for (int index = 0; index < FIRST_NAME_COUNT; index++) {
+         String name = index < count * count
+               ? SYLLABLES[index / count] + SYLLABLES[index % count]
+               : SYLLABLES[index / count / count % count] + SYLLABLES[index / count % count] + SYLLABLES[index % count];
+         FIRST_NAMES[index] = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+      }
+   }
+
+   private BenchmarkClients() {
+   }
+
+   public static ClientDto client(long seed) {
+      ClientDto client = new ClientDto();
+      client.setFirstName(firstName(seed));
+      client.setLastName("Pretorius");
+      client.setIdNumber(idNumber(seed));
+      client.setMobileNumber(mobileNumber(seed));
+      client.setAddress("12 Long Street, Cape Town");
+      return client;
+   }
+
+   public static String firstName(long seed) {
+      return FIRST_NAMES[(int) (seed % FIRST_NAME_COUNT)];
+   }
+
+   /**
+    * @return the first name with its third letter left out, as typed in a hurry
+    */
+   public static String misspelledFirstName(long seed) {
+      String name = firstName(seed);
+      return name.substring(0, 2) + name.substring(3);
+   }
+
+   /**
+    * @return a 13-digit idNumber holding the seed, with a valid check digit
+    */
+   public static String idNumber(long seed) {
+      char[] digits = new char[13];
+      long value = seed;
+      int checksum = 0;
+
+      for (int index = 11; index >= 0; index--) {
+         int digit = (int) (value % 10);
+         value /= 10;
+         digits[index] = (char) ('0' + digit);
+         checksum += index % 2 == 0 ? digit : (digit < 5 ? digit * 2 : digit * 2 - 9);
+      }
+
+      digits[12] = (char) ('0' + (10 - checksum % 10) % 10);
+      return new String(digits);
+   }
+
+   public static String mobileNumber(long seed) {
+      return "0" + (600_000_000L + seed);
+   }
+
+   /**
+    * Draws seeds 1 to {@code clients} with Zipfian frequencies, as the reads of a few popular clients: the client of
+    * rank k is drawn with a weight of 1/k^skew. Ranks are spread over the seeds by a fixed permutation, so the popular
+    * clients are not the first ones inserted.
+    *
+    * @return {@code count} seeds, the same for the same arguments
+    */
+   public static long[] zipfianSeeds(int clients, double skew, int count) {
+      double[] cumulative = new double[clients];
+      double total = 0;
+
+      for (int rank = 0; rank < clients; rank++) {
+         total += 1.0 / Math.pow(rank + 1.0, skew);
+         cumulative[rank] = total;
+      }
+
+      Random random = new Random(clients);
+      long[] seeds = new long[count];
+
+      for (int index = 0; index < count; index++) {
+         int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+         rank = rank < 0 ? -rank - 1 : rank;
+         seeds[index] = 1L + Math.floorMod(rank * RANK_PERMUTATION, (long) clients);
+      }
+
+      return seeds;
+   }
+}
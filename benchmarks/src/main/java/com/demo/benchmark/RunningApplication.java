@@ -0,0 +1,65 @@
+package com.demo.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.demo.ClientApiApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The application running on a random local port, with an HTTP client to call it.
+ */
+public class RunningApplication implements Closeable {
+   private final ConfigurableApplicationContext context;
+   private final HttpClient http = HttpClient.newHttpClient();
+   private final String base;
+
+   public RunningApplication(String... properties) {
+      String[] args = new String[properties.length + 2];
+      args[0] = "--server.port=0";
+      args[1] = "--logging.level.root=WARN";
+      System.arraycopy(properties, 0, args, 2, properties.length);
+
+      context = SpringApplication.run(ClientApiApplication.class, args);
+      base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+   }
+
+   public ObjectMapper mapper() {
+      return context.getBean(ObjectMapper.class);
+   }
+
+   public URI uri(String path) {
+      return URI.create(base + path);
+   }
+
+   public HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+      return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+   }
+
+   /**
+    * @return the length of the response body
+    * @throws IllegalStateException when the response status is not the expected one
+    */
+   public int send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+      HttpResponse<byte[]> response = send(request);
+
+      if (response.statusCode() != expectedStatus) {
+         throw new IllegalStateException(request.method() + " " + request.uri() + " answered " + response.statusCode());
+      }
+
+      return response.body().length;
+   }
+
+   @Override
+   public void close() {
+      context.close();
+   }
+}
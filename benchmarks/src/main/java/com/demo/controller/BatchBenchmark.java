@@ -0,0 +1,92 @@
+package com.demo.controller;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.benchmark.RunningApplication;
+import com.demo.dto.ClientDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Clients created per second over HTTP, one POST /v1/clients per client versus one POST /v1/clients/batch per
+ * {@value #CLIENTS} clients, against the application running on a random local port.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+   static final int CLIENTS = 1_000;
+
+   RunningApplication application;
+   ObjectMapper mapper;
+   URI clients;
+   URI batch;
+   final AtomicLong seeds = new AtomicLong();
+
+   @Setup
+   public void start() {
+      application = new RunningApplication();
+      mapper = application.mapper();
+      clients = application.uri("/v1/clients");
+      batch = application.uri("/v1/clients/batch");
+   }
+
+   @TearDown
+   public void stop() {
+      application.close();
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CLIENTS)
+   public int createOneByOne() throws IOException, InterruptedException {
+      int created = 0;
+
+      for (int index = 0; index < CLIENTS; index++) {
+         created += application.send(post(clients, mapper.writeValueAsBytes(client(seeds.incrementAndGet()))), 201);
+      }
+
+      return created;
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CLIENTS)
+   public int createInBatch() throws IOException, InterruptedException {
+      List<ClientDto> clients = new ArrayList<>(CLIENTS);
+
+      for (int index = 0; index < CLIENTS; index++) {
+         clients.add(client(seeds.incrementAndGet()));
+      }
+
+      return application.send(post(batch, mapper.writeValueAsBytes(clients)), 200);
+   }
+
+   static HttpRequest post(URI uri, byte[] body) {
+      return HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+   }
+}
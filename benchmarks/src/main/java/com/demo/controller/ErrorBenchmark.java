@@ -0,0 +1,75 @@
+package com.demo.controller;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.benchmark.RunningApplication;
+import com.demo.dto.ClientDto;
+
+/**
+ * Requests per second over HTTP that find a client, miss an unknown id, or are rejected by validation, to compare the
+ * error paths with the successful one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ErrorBenchmark {
+   RunningApplication application;
+   HttpRequest found;
+   HttpRequest notFound;
+   HttpRequest invalid;
+
+   @Setup
+   public void start() throws IOException, InterruptedException {
+      application = new RunningApplication();
+      application.send(BatchBenchmark.post(application.uri("/v1/clients"),
+            application.mapper().writeValueAsBytes(client(1L))), 201);
+
+      ClientDto missingFields = new ClientDto();
+      missingFields.setIdNumber(idNumber(2L));
+
+      found = HttpRequest.newBuilder(application.uri("/v1/clients/1")).build();
+      notFound = HttpRequest.newBuilder(application.uri("/v1/clients/404")).build();
+      invalid = BatchBenchmark.post(application.uri("/v1/clients"), application.mapper().writeValueAsBytes(missingFields));
+   }
+
+   @TearDown
+   public void stop() {
+      application.close();
+   }
+
+   @Benchmark
+   public int found() throws IOException, InterruptedException {
+      return application.send(found, 200);
+   }
+
+   @Benchmark
+   public int notFound() throws IOException, InterruptedException {
+      return application.send(notFound, 404);
+   }
+
+   @Benchmark
+   public int invalid() throws IOException, InterruptedException {
+      return application.send(invalid, 400);
+   }
+}
@@ -0,0 +1,105 @@
+package com.demo.controller;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.benchmark.RunningApplication;
+import com.demo.dto.ClientDto;
+
+/**
+ * The same workload over HTTP against the servlet stack on Tomcat and the reactive stack on Netty (the {@code reactive}
+ * profile): finding a client by id, a page of a firstName search, and creating a client. Each benchmark thread is one
+ * client connection that sends its next request when the previous one was answered, so the thread count sets the
+ * number of concurrent connections; pass {@code -t} to change it. {@link Overloaded} runs with more connections than
+ * Tomcat has worker threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@State(Scope.Benchmark)
+public class WebStackBenchmark {
+   static final int CLIENTS = 10_000;
+   static final int LOAD_BATCH = 1_000;
+
+   @Param({ "servlet", "reactive" })
+   String stack;
+
+   RunningApplication application;
+   AtomicLong seeds;
+
+   @Setup
+   public void start() throws IOException, InterruptedException {
+      application = "reactive".equals(stack) ? new RunningApplication("--spring.profiles.active=reactive")
+            : new RunningApplication();
+
+      for (long seed = 1; seed <= CLIENTS; seed += LOAD_BATCH) {
+         List<ClientDto> batch = new ArrayList<>(LOAD_BATCH);
+
+         for (long index = seed; index < seed + LOAD_BATCH; index++) {
+            batch.add(client(index));
+         }
+         application.send(BatchBenchmark.post(application.uri("/v1/clients/batch"),
+               application.mapper().writeValueAsBytes(batch)), 200);
+      }
+
+      seeds = new AtomicLong(CLIENTS);
+   }
+
+   @TearDown
+   public void stop() {
+      application.close();
+   }
+
+   @Benchmark
+   public int find() throws IOException, InterruptedException {
+      return application.send(HttpRequest.newBuilder(application.uri("/v1/clients/" + storedSeed())).build(), 200);
+   }
+
+   @Benchmark
+   public int searchByFirstName() throws IOException, InterruptedException {
+      return application.send(HttpRequest.newBuilder(
+            application.uri("/v1/clients?limit=20&firstName=" + firstName(storedSeed()))).build(), 200);
+   }
+
+   @Benchmark
+   public int create() throws IOException, InterruptedException {
+      return application.send(BatchBenchmark.post(application.uri("/v1/clients"),
+            application.mapper().writeValueAsBytes(client(seeds.incrementAndGet()))), 201);
+   }
+
+   long storedSeed() {
+      return 1L + ThreadLocalRandom.current().nextInt(CLIENTS);
+   }
+
+   /**
+    * More connections than the default {@code server.tomcat.threads.max} of 200, so servlet requests queue for a worker
+    * thread while the reactive stack keeps serving every connection from its event loops.
+    */
+   @Threads(400)
+   public static class Overloaded extends WebStackBenchmark {
+   }
+}
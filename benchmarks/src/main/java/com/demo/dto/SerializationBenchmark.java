@@ -0,0 +1,97 @@
+package com.demo.dto;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson (de)serialization of {@link ClientDto} as JSON and as the binary CBOR and Smile encodings the client API
+ * negotiates, with the object mappers configured like Spring MVC configures them. The setup prints the bytes of a
+ * client and of a page of 100 clients in each encoding, to weigh the time against the bytes on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public abstract class SerializationBenchmark {
+   static final TypeReference<List<ClientDto>> CLIENT_LIST = new TypeReference<>() {};
+
+   @Param({ "json", "cbor", "smile" })
+   String format;
+
+   final ClientDto client = stored(1L);
+   final List<ClientDto> page = LongStream.rangeClosed(1, 100).mapToObj(SerializationBenchmark::stored).toList();
+   ObjectMapper mapper;
+   byte[] clientJson;
+   byte[] pageJson;
+
+   @Setup
+   public void encode() throws IOException {
+      Jackson2ObjectMapperBuilder builder = switch (format) {
+         case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+         case "smile" -> Jackson2ObjectMapperBuilder.smile();
+         default -> Jackson2ObjectMapperBuilder.json();
+      };
+      mapper = builder.build();
+      clientJson = mapper.writeValueAsBytes(client);
+      pageJson = mapper.writeValueAsBytes(page);
+
+      System.out.printf("%n%s: client %d bytes, page %d bytes%n", format, clientJson.length, pageJson.length);
+   }
+
+   @Benchmark
+   public byte[] writeClient() throws IOException {
+      return mapper.writeValueAsBytes(client);
+   }
+
+   @Benchmark
+   public ClientDto readClient() throws IOException {
+      return mapper.readValue(clientJson, ClientDto.class);
+   }
+
+   @Benchmark
+   public byte[] writePage() throws IOException {
+      return mapper.writeValueAsBytes(page);
+   }
+
+   @Benchmark
+   public List<ClientDto> readPage() throws IOException {
+      return mapper.readValue(pageJson, CLIENT_LIST);
+   }
+
+   static ClientDto stored(long id) {
+      ClientDto client = client(id);
+      client.setClient(id);
+      return client;
+   }
+
+   @Threads(1)
+   public static class SingleThreaded extends SerializationBenchmark {
+   }
+
+   @Threads(Threads.MAX)
+   public static class MultiThreaded extends SerializationBenchmark {
+   }
+}
@@ -0,0 +1,130 @@
+package com.demo.repository;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Reads and writes of {@link ClientRepo} on a store already holding {@code clients} clients, in both in-memory layouts.
+ * <p>
+ * Every benchmark runs once on a single thread and once on as many threads as there are cores. Searches ask for a page
+ * of 100 clients, plus the one telling whether there is a next page. The 10M stores need a heap of about 8 GB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public abstract class ClientRepoBenchmark {
+   static final int PAGE = 101;
+   static final int LOAD_BATCH = 10_000;
+
+   @Param({ "10000", "1000000", "10000000" })
+   int clients;
+
+   @Param({ "objects", "compact" })
+   String layout;
+
+   ClientRepo repo;
+   AtomicLong seeds;
+
+   @Setup
+   public void load() {
+      repo = new ClientRepo("compact".equals(layout) ? new CompactClientStore() : new MemoryClientStore());
+
+      //ids are taken from the sequence in insert order, so client id and seed are the same
+      for (long seed = 1; seed <= clients; seed += LOAD_BATCH) {
+         List<ClientDto> batch = new ArrayList<>(LOAD_BATCH);
+
+         for (long index = seed; index < seed + LOAD_BATCH && index <= clients; index++) {
+            batch.add(client(index));
+         }
+         repo.insertAll(batch);
+      }
+
+      seeds = new AtomicLong(clients);
+   }
+
+   @Benchmark
+   public ClientDto findById() {
+      return repo.findById(storedSeed());
+   }
+
+   @Benchmark
+   public boolean existsByIdNumber() {
+      return repo.existsByIdNumber(idNumber(storedSeed()));
+   }
+
+   @Benchmark
+   public List<ClientDto> searchByIdNumber() {
+      return repo.search(idNumber(storedSeed()), null, null, 0L, PAGE);
+   }
+
+   @Benchmark
+   public List<ClientDto> searchByFirstName() {
+      return repo.search(null, firstName(storedSeed()), null, 0L, PAGE);
+   }
+
+   @Benchmark
+   public List<ClientDto> searchByFirstNamePrefix() {
+      return repo.searchByFirstNamePrefix(firstName(storedSeed()).substring(0, 3), 0, PAGE);
+   }
+
+   @Benchmark
+   public List<ClientDto> searchByFirstNameSimilarTo() {
+      return repo.searchByFirstNameSimilarTo(misspelledFirstName(storedSeed()), 0, PAGE);
+   }
+
+   @Benchmark
+   public Long nextId() {
+      return repo.nextId();
+   }
+
+   @Benchmark
+   public Long insert() {
+      return repo.insert(client(seeds.incrementAndGet()));
+   }
+
+   /**
+    * Rewrites a stored client with its own unique values and a new firstName.
+    */
+   @Benchmark
+   public boolean update() {
+      long seed = storedSeed();
+      ClientDto client = client(seed);
+      client.setFirstName(firstName(seed + ThreadLocalRandom.current().nextInt(FIRST_NAME_COUNT)));
+      return repo.update(seed, client);
+   }
+
+   long storedSeed() {
+      return 1L + ThreadLocalRandom.current().nextInt(clients);
+   }
+
+   @Threads(1)
+   public static class SingleThreaded extends ClientRepoBenchmark {
+   }
+
+   @Threads(Threads.MAX)
+   public static class MultiThreaded extends ClientRepoBenchmark {
+   }
+}
@@ -0,0 +1,153 @@
+package com.demo.repository;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Durable writes and startup recovery of the write-ahead log engine, in a temporary directory.
+ */
+public class LogClientStoreBenchmark {
+   /**
+    * Durable inserts through {@link ClientRepo}. A write returns once its record is fsynced, so concurrent writers
+    * share fsyncs; the multi-threaded variant uses far more threads than cores, like a servlet container does.
+    */
+   @BenchmarkMode(Mode.Throughput)
+   @OutputTimeUnit(TimeUnit.SECONDS)
+   @Fork(1)
+   @Warmup(iterations = 2, time = 5)
+   @Measurement(iterations = 5, time = 5)
+   @State(Scope.Benchmark)
+   public abstract static class Writes {
+      Path dir;
+      LogClientStore store;
+      ClientRepo repo;
+      final AtomicLong seeds = new AtomicLong();
+
+      @Setup
+      public void open() throws IOException {
+         dir = Files.createTempDirectory("client-log-writes");
+         store = new LogClientStore(new MemoryClientStore(), dir, Duration.ZERO);
+         repo = new ClientRepo(store);
+      }
+
+      @TearDown
+      public void close() throws IOException {
+         store.closeLog();
+         delete(dir);
+      }
+
+      @Benchmark
+      public Long insert() {
+         return repo.insert(client(seeds.incrementAndGet()));
+      }
+   }
+
+   @Threads(1)
+   public static class SingleThreadedWrites extends Writes {
+   }
+
+   @Threads(64)
+   public static class MultiThreadedWrites extends Writes {
+   }
+
+   /**
+    * Startup of the engine and the {@link ClientRepo} indexes on a directory holding {@code clients} clients, either
+    * as the snapshot taken on a clean shutdown, or only as log segments, as after a crash.
+    */
+   @BenchmarkMode(Mode.SingleShotTime)
+   @OutputTimeUnit(TimeUnit.MILLISECONDS)
+   @Fork(1)
+   @Warmup(iterations = 1)
+   @Measurement(iterations = 3)
+   @State(Scope.Benchmark)
+   public static class Recovery {
+      static final int SYNC_EVERY = 10_000;
+
+      @Param({ "1000000", "10000000" })
+      int clients;
+
+      @Param({ "snapshot", "log" })
+      String from;
+
+      Path dir;
+      LogClientStore recovered;
+
+      /**
+       * Appends the clients straight to the log, waiting for a group commit every {@value #SYNC_EVERY} records only, 
+       * and lets the engine take its shutdown snapshot when recovering from one.
+       */
+      @Setup(Level.Trial)
+      public void write() throws IOException {
+         dir = Files.createTempDirectory("client-log-recovery");
+
+         try (WriteAheadLog wal = new WriteAheadLog(dir, 1)) {
+            for (long id = 1; id <= clients; id++) {
+               ClientDto client = client(id);
+               client.setClient(id);
+               long ticket = wal.append(WriteAheadLog.put(client));
+
+               if (id % SYNC_EVERY == 0) {
+                  wal.awaitDurable(ticket);
+               }
+            }
+         }
+
+         if ("snapshot".equals(from)) {
+            new LogClientStore(new MemoryClientStore(), dir, Duration.ZERO).close();
+         }
+      }
+
+      @Benchmark
+      public ClientRepo recover() throws IOException {
+         recovered = new LogClientStore(new MemoryClientStore(), dir, Duration.ZERO);
+         return new ClientRepo(recovered);
+      }
+
+      /**
+       * Closes without a snapshot, so the next recovery reads the same files plus an empty segment.
+       */
+      @TearDown(Level.Invocation)
+      public void closeRecovered() throws IOException {
+         recovered.closeLog();
+         recovered = null;
+      }
+
+      @TearDown(Level.Trial)
+      public void deleteDir() throws IOException {
+         delete(dir);
+      }
+   }
+
+   static void delete(Path dir) throws IOException {
+      try (Stream<Path> paths = Files.walk(dir)) {
+         for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+            Files.delete(path);
+         }
+      }
+   }
+}
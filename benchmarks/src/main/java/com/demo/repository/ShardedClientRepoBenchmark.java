@@ -0,0 +1,104 @@
+package com.demo.repository;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Throughput of {@link ClientRepo} writes and searches by firstName over {@code shards} shards, to be run once per
+ * thread count to see how each scales as cores are added, for example:
+ *
+ * <pre>
+ * for threads in 1 2 4 8 16 32; do
+ *    java -jar benchmarks.jar ShardedClientRepoBenchmark -t $threads -rff sharded-$threads.json
+ * done
+ * </pre>
+ *
+ * The store holds {@code clients} clients spread over {@value BenchmarkClients#FIRST_NAME_COUNT} first names, so a
+ * search by firstName asks for a page of 100 clients, plus the one telling whether there is a next page, out of the
+ * about 120 holding the name per million clients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ShardedClientRepoBenchmark {
+   static final int PAGE = 101;
+   static final int LOAD_BATCH = 10_000;
+
+   @Param({ "1000000" })
+   int clients;
+
+   @Param({ "1", "8", "32" })
+   int shards;
+
+   ClientRepo repo;
+   AtomicLong seeds;
+
+   @Setup
+   public void load() {
+      List<ClientStore> stores = new ArrayList<>(shards);
+
+      for (int shard = 0; shard < shards; shard++) {
+         stores.add(new MemoryClientStore());
+      }
+      repo = new ClientRepo(shards == 1 ? stores.get(0) : new ShardedClientStore(stores));
+
+      //ids are taken from the sequence in insert order, so client id and seed are the same
+      for (long seed = 1; seed <= clients; seed += LOAD_BATCH) {
+         List<ClientDto> batch = new ArrayList<>(LOAD_BATCH);
+
+         for (long index = seed; index < seed + LOAD_BATCH && index <= clients; index++) {
+            batch.add(client(index));
+         }
+         repo.insertAll(batch);
+      }
+
+      seeds = new AtomicLong(clients);
+   }
+
+   @Benchmark
+   public Long insert() {
+      return repo.insert(client(seeds.incrementAndGet()));
+   }
+
+   /**
+    * Rewrites a stored client with its own unique values and a new firstName.
+    */
+   @Benchmark
+   public boolean update() {
+      long seed = storedSeed();
+      ClientDto client = client(seed);
+      client.setFirstName(firstName(seed + ThreadLocalRandom.current().nextInt(FIRST_NAME_COUNT)));
+      return repo.update(seed, client);
+   }
+
+   @Benchmark
+   public List<ClientDto> searchByFirstName() {
+      return repo.search(null, firstName(storedSeed()), null, 0L, PAGE);
+   }
+
+   long storedSeed() {
+      return 1L + ThreadLocalRandom.current().nextInt(clients);
+   }
+}
@@ -0,0 +1,109 @@
+package com.demo.service;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.demo.dto.ClientDto;
+import com.demo.repository.ClientRepo;
+import com.demo.repository.CompactClientStore;
+import com.demo.repository.MemoryClientStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Reads per second of the JSON of single clients, as {@code GET /v1/clients/{id}} builds its body: the client is read
+ * from the repository and its JSON taken from the {@link ClientJsonCache}. The clients are drawn with Zipfian frequencies
+ * of the given {@code skew}; a {@code capacity} of 0 disables the cache, so every read serializes the client.
+ * <p>
+ * HTTP is left out, as a round trip over a socket costs far more than serializing a client and would hide the 
+ * difference.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public abstract class ClientJsonCacheBenchmark {
+   static final int LOAD_BATCH = 10_000;
+   static final int DRAWS = 1 << 20;
+
+   @Param({ "1000000" })
+   int clients;
+
+   @Param({ "0.99", "1.2" })
+   double skew;
+
+   @Param({ "0", "16384" })
+   int capacity;
+
+   @Param({ "objects", "compact" })
+   String layout;
+
+   ClientRepo repo;
+   ClientJsonCache cache;
+   long[] seeds;
+
+   @Setup
+   public void load() {
+      repo = new ClientRepo("compact".equals(layout) ? new CompactClientStore() : new MemoryClientStore());
+      cache = new ClientJsonCache(Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(), capacity);
+
+      //ids are taken from the sequence in insert order, so client id and seed are the same
+      for (long seed = 1; seed <= clients; seed += LOAD_BATCH) {
+         List<ClientDto> batch = new ArrayList<>(LOAD_BATCH);
+
+         for (long index = seed; index < seed + LOAD_BATCH && index <= clients; index++) {
+            batch.add(client(index));
+         }
+         repo.insertAll(batch);
+      }
+
+      seeds = zipfianSeeds(clients, skew, DRAWS);
+   }
+
+   @Benchmark
+   public byte[] find(Draw draw) throws IOException {
+      return cache.json(repo.findById(seeds[draw.next()]));
+   }
+
+   /**
+    * Each thread walks the shared draws from its own random start.
+    */
+   @State(Scope.Thread)
+   public static class Draw {
+      int index = ThreadLocalRandom.current().nextInt(DRAWS);
+
+      int next() {
+         index = (index + 1) & (DRAWS - 1);
+         return index;
+      }
+   }
+
+   @Threads(1)
+   public static class SingleThreaded extends ClientJsonCacheBenchmark {
+   }
+
+   @Threads(Threads.MAX)
+   public static class MultiThreaded extends ClientJsonCacheBenchmark {
+   }
+}
@@ -0,0 +1,89 @@
+package com.demo.service;
+
+import static com.demo.benchmark.BenchmarkClients.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.ValidationCode;
+
+/**
+ * Validation of valid and of invalid clients, as sent by a well-behaved caller and by a broken partner feed. Run with
+ * {@code -prof gc} to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public abstract class ValidationBenchmark {
+   final ClientDto validClient = client(7_104_800_084L);
+   final ClientDto invalidClient = invalid();
+
+   @Benchmark
+   public boolean validIdNumber() {
+      return ClientValidator.isIdNumber(validClient.getIdNumber());
+   }
+
+   @Benchmark
+   public boolean invalidIdNumber() {
+      return ClientValidator.isIdNumber(invalidClient.getIdNumber());
+   }
+
+   @Benchmark
+   public boolean validMobileNumber() {
+      return ClientValidator.isMobileNumber(validClient.getMobileNumber());
+   }
+
+   @Benchmark
+   public boolean invalidMobileNumber() {
+      return ClientValidator.isMobileNumber(invalidClient.getMobileNumber());
+   }
+
+   @Benchmark
+   public int validClient() {
+      return ClientValidator.validate(validClient);
+   }
+
+   @Benchmark
+   public int invalidClient() {
+      return ClientValidator.validate(invalidClient);
+   }
+
+   /**
+    * Validation plus the reason texts of the response, as paid for a client that is rejected.
+    */
+   @Benchmark
+   public List<String> invalidClientReasons() {
+      return ValidationCode.reasons(ClientValidator.validate(invalidClient), invalidClient);
+   }
+
+   static ClientDto invalid() {
+      ClientDto client = client(7_104_800_084L);
+      client.setLastName(null);
+      client.setIdNumber("9607104800085");
+      client.setMobileNumber("+27 82 123 4567");
+      return client;
+   }
+
+   @Threads(1)
+   public static class SingleThreaded extends ValidationBenchmark {
+   }
+
+   @Threads(Threads.MAX)
+   public static class MultiThreaded extends ValidationBenchmark {
+   }
+}
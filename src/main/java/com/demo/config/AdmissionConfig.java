@@ -0,0 +1,140 @@
+package com.demo.config;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.WebFilter;
+
+import com.demo.service.ConcurrencyLimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Admission control of the client API: every request holds a place in the {@link ConcurrencyLimit} of its budget while
+ * it is served, and a request that finds its budget full is answered at once with the {@code reject-status} and a
+ * {@code Retry-After}, before it takes any other resources. Point reads by id are cheap and have their own budget, so a
+ * burst of searches or writes cannot starve them, nor the other way around.
+ */
+@Configuration
+@ConditionalOnProperty(name = "client.admission.enabled", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+   static final String CLIENTS = "/v1/clients";
+   static final String POINT_READS = "point-reads";
+   static final String OPERATIONS = "operations";
+
+   @Bean
+   ConcurrencyLimit pointReadLimit(AdmissionProperties properties, MeterRegistry registry) {
+      return limit(POINT_READS, properties.getPointReads(), properties, registry);
+   }
+
+   @Bean
+   ConcurrencyLimit operationLimit(AdmissionProperties properties, MeterRegistry registry) {
+      return limit(OPERATIONS, properties.getOperations(), properties, registry);
+   }
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+   FilterRegistrationBean<Filter> servletAdmission(AdmissionProperties properties,
+         @Qualifier("pointReadLimit") ConcurrencyLimit pointReads, @Qualifier("operationLimit") ConcurrencyLimit operations) {
+      String retryAfter = retryAfter(properties);
+      FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+         HttpServletRequest httpRequest = (HttpServletRequest) request;
+         String budget = budget(httpRequest.getMethod(), httpRequest.getRequestURI());
+
+         if (budget == null) {
+            chain.doFilter(request, response);
+            return;
+         }
+
+         ConcurrencyLimit limit = POINT_READS.equals(budget) ? pointReads : operations;
+
+         if (!limit.tryAcquire()) {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(properties.getRejectStatus().value());
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            return;
+         }
+
+         long start = System.nanoTime();
+
+         try {
+            chain.doFilter(request, response);
+         } finally {
+            limit.release(System.nanoTime() - start);
+         }
+      });
+      registration.setName("clientAdmission"); //the names deduced from lambda filters clash
+      registration.addUrlPatterns(CLIENTS, CLIENTS + "/*");
+      registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); //after the request metrics, which count the rejections
+      return registration;
+   }
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+   WebFilter reactiveAdmission(AdmissionProperties properties,
+         @Qualifier("pointReadLimit") ConcurrencyLimit pointReads, @Qualifier("operationLimit") ConcurrencyLimit operations) {
+      String retryAfter = retryAfter(properties);
+
+      return (exchange, chain) -> {
+         ServerHttpRequest request = exchange.getRequest();
+         HttpMethod method = request.getMethod();
+         String budget = method == null ? null : budget(method.name(), request.getPath().value());
+         if (budget == null) return chain.filter(exchange);
+
+         ConcurrencyLimit limit = POINT_READS.equals(budget) ? pointReads : operations;
+
+         if (!limit.tryAcquire()) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setRawStatusCode(properties.getRejectStatus().value());
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+            return response.setComplete();
+         }
+
+         long start = System.nanoTime();
+         return chain.filter(exchange).doFinally(signal -> limit.release(System.nanoTime() - start));
+      };
+   }
+
+   /**
+    * @return the budget of a request, null for requests that are not limited: those outside the client API, and the
+    * long-lived export and change streams, which would hold their places for minutes
+    */
+   static String budget(String method, String path) {
+      if (!path.startsWith(CLIENTS)) return null;
+      if (path.length() == CLIENTS.length()) return OPERATIONS;
+      if (path.charAt(CLIENTS.length()) != '/') return null;
+
+      String rest = path.substring(CLIENTS.length() + 1);
+      boolean get = "GET".equals(method);
+
+      if (get && (rest.equals("export") || rest.equals("changes"))) return null;
+      if (get && !rest.isEmpty() && rest.indexOf('/') < 0 && !rest.startsWith("_")) return POINT_READS;
+
+      return OPERATIONS;
+   }
+
+   private static ConcurrencyLimit limit(String budget, AdmissionProperties.Budget limits, AdmissionProperties properties,
+         MeterRegistry registry) {
+      return new ConcurrencyLimit(budget, limits.getInitialLimit(), limits.getMinLimit(), limits.getMaxLimit(),
+            properties.getTolerance(), properties.getWindow(), registry);
+   }
+
+   private static String retryAfter(AdmissionProperties properties) {
+      long millis = properties.getRetryAfter().toMillis();
+      return String.valueOf(Math.max(1, (millis + 999) / 1000));
+   }
+}
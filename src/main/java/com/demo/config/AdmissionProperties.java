@@ -0,0 +1,59 @@
+package com.demo.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the admission control of the client API, bound from the {@code client.admission.*} properties.
+ */
+@Data
+@ConfigurationProperties("client.admission")
+public class AdmissionProperties {
+   /**
+    * Whether requests past the concurrency limits are rejected; on by default.
+    */
+   private boolean enabled = true;
+   /**
+    * The answer to rejected requests: {@code SERVICE_UNAVAILABLE} (503, default) or {@code TOO_MANY_REQUESTS} (429).
+    */
+   private HttpStatus rejectStatus = HttpStatus.SERVICE_UNAVAILABLE;
+   /**
+    * The {@code Retry-After} of rejected requests, in whole seconds.
+    */
+   private Duration retryAfter = Duration.ofSeconds(1);
+   /**
+    * The ratio to the long-term latency that the latency of requests may reach before their limit shrinks.
+    */
+   private double tolerance = 2.0;
+   /**
+    * The time between recalculations of the limits.
+    */
+   private Duration window = Duration.ofMillis(100);
+   /**
+    * The limit of clients read by id, {@code GET /v1/clients/{id}}.
+    */
+   private Budget pointReads = new Budget(100, 10, 1000);
+   /**
+    * The limit of all other client API requests: searches, multi-gets and writes. The export and change streams are
+    * long-lived and not limited.
+    */
+   private Budget operations = new Budget(20, 2, 200);
+
+   @Data
+   @NoArgsConstructor
+   @AllArgsConstructor
+   public static class Budget {
+      /**
+       * The limit before the latency of the requests is known.
+       */
+      private int initialLimit;
+      private int minLimit;
+      private int maxLimit;
+   }
+}
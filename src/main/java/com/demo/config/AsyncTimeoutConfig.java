@@ -0,0 +1,38 @@
+package com.demo.config;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Lets a servlet handler that streams its response on an async request, like the export, time out later than the
+ * {@code spring.mvc.async.request-timeout} of all other async requests: it sets the {@link Duration} it needs as the
+ * {@value #ASYNC_TIMEOUT} request attribute, which is applied before the request goes async.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+   public static final String ASYNC_TIMEOUT = "com.demo.asyncTimeout";
+
+   @Override
+   public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+      configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+         @Override
+         public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            Object timeout = request.getAttribute(ASYNC_TIMEOUT, RequestAttributes.SCOPE_REQUEST);
+
+            if (timeout instanceof Duration && request instanceof AsyncWebRequest) {
+               ((AsyncWebRequest) request).setTimeout(((Duration) timeout).toMillis());
+            }
+         }
+      });
+   }
+}
@@ -0,0 +1,104 @@
+package com.demo.config;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads and writes clients as CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}) next to
+ * JSON, with object mappers configured like the JSON one. JSON comes first, so it stays the encoding of requests that
+ * accept any.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+   static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+   MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+      return new MappingJackson2CborHttpMessageConverter(mapper(builder, new CBORFactory()));
+   }
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+   MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+      return new MappingJackson2SmileHttpMessageConverter(mapper(builder, new SmileFactory()));
+   }
+
+   /**
+    * The Jackson codecs take the JSON media types unless given their own. Custom codecs are tried before the default
+    * ones, so the JSON codecs are registered again in front of CBOR.
+    */
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+   CodecCustomizer binaryCodecs(ObjectMapper json, Jackson2ObjectMapperBuilder builder) {
+      ObjectMapper cbor = mapper(builder, new CBORFactory());
+      ObjectMapper smile = mapper(builder, new SmileFactory());
+
+      return configurer -> {
+         configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, SMILE));
+         configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, SMILE));
+         configurer.customCodecs().register(new Jackson2JsonDecoder(json));
+         configurer.customCodecs().register(new Jackson2JsonEncoder(json));
+         configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+         configurer.customCodecs().register(new WholeCborEncoder(cbor));
+      };
+   }
+
+   private static ObjectMapper mapper(Jackson2ObjectMapperBuilder builder, JsonFactory factory) {
+      return builder.factory(factory).build();
+   }
+
+   /**
+    * The CBOR encoder of Spring 5.3 only encodes single values, while a response is always written as a stream. This
+    * one encodes a single value as is, and the values of a longer stream together as one CBOR array.
+    */
+   static class WholeCborEncoder extends Jackson2CborEncoder {
+      WholeCborEncoder(ObjectMapper mapper) {
+         super(mapper, MediaType.APPLICATION_CBOR);
+      }
+
+      @Override
+      public Flux<DataBuffer> encode(Publisher<?> input, DataBufferFactory bufferFactory, ResolvableType elementType,
+            MimeType mimeType, Map<String, Object> hints) {
+         if (input instanceof Mono) {
+            return Mono.from(input)
+                  .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                  .flux();
+         }
+
+         ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+         return Flux.from(input)
+               .collectList()
+               .map(values -> encodeValue(values, bufferFactory, listType, mimeType, hints))
+               .flux();
+      }
+   }
+}
@@ -0,0 +1,19 @@
+package com.demo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The reactive stack, enabled by the {@code reactive} profile, runs on Netty. Tomcat is on the class path for the 
+ * servlet stack and would otherwise be picked as the reactive server too.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+   @Bean
+   NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+      return new NettyReactiveWebServerFactory();
+   }
+}
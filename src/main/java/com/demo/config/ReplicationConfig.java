@@ -0,0 +1,111 @@
+package com.demo.config;
+
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.WebFilter;
+
+import com.demo.repository.ClientRepo;
+import com.demo.service.ClientFollower;
+import com.demo.service.ClientJsonCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs the instance as a follower of the leader set in {@code client.replication.leader}: the clients are replicated
+ * from the leader by a {@link ClientFollower}, and writes to the client API are redirected to the leader with a
+ * {@code 307 Temporary Redirect}, which keeps the method and body.
+ */
+@Configuration
+@ConditionalOnProperty("client.replication.leader")
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfig {
+   static final String CLIENTS = "/v1/clients";
+   static final Set<String> WRITES = Set.of("POST", "PUT", "PATCH", "DELETE");
+   static final String MULTI_GET = CLIENTS + "/_mget"; //a read, posted when the ids do not fit the URL
+
+   /**
+    * Keeps the connections of the instance apart from the global Reactor Netty resources, which any other instance in 
+    * the same JVM disposes of when it stops.
+    */
+   @Bean
+   ReactorResourceFactory reactorResourceFactory() {
+      ReactorResourceFactory resources = new ReactorResourceFactory();
+      resources.setUseGlobalResources(false);
+      return resources;
+   }
+
+   @Bean(initMethod = "start")
+   ClientFollower clientFollower(ClientRepo repo, ClientJsonCache jsonCache, WebClient.Builder webClient,
+         ReplicationProperties properties, MeterRegistry registry) {
+      return new ClientFollower(repo, jsonCache, webClient.baseUrl(properties.getLeader().toString()).build(),
+            properties.getMaxLag(), properties.getRetryInterval(), registry);
+   }
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+   FilterRegistrationBean<Filter> servletLeaderWrites(ReplicationProperties properties) {
+      FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+         HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+         if (!isWrite(httpRequest.getMethod(), httpRequest.getRequestURI())) {
+            chain.doFilter(request, response);
+            return;
+         }
+
+         HttpServletResponse httpResponse = (HttpServletResponse) response;
+         httpResponse.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+         httpResponse.setHeader(HttpHeaders.LOCATION,
+               leaderLocation(properties, httpRequest.getRequestURI(), httpRequest.getQueryString()));
+      });
+      registration.addUrlPatterns(CLIENTS, CLIENTS + "/*");
+      return registration;
+   }
+
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+   WebFilter reactiveLeaderWrites(ReplicationProperties properties) {
+      return (exchange, chain) -> {
+         ServerHttpRequest request = exchange.getRequest();
+         HttpMethod method = request.getMethod();
+         String path = request.getPath().value();
+
+         if (method == null || !isWrite(method.name(), path) || !(path.equals(CLIENTS) || path.startsWith(CLIENTS + "/"))) {
+            return chain.filter(exchange);
+         }
+
+         ServerHttpResponse response = exchange.getResponse();
+         response.setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+         response.getHeaders().set(HttpHeaders.LOCATION,
+               leaderLocation(properties, path, request.getURI().getRawQuery()));
+         return response.setComplete();
+      };
+   }
+
+   static boolean isWrite(String method, String path) {
+      return WRITES.contains(method) && !path.equals(MULTI_GET);
+   }
+
+   static String leaderLocation(ReplicationProperties properties, String path, String query) {
+      String leader = properties.getLeader().toString();
+      leader = leader.endsWith("/") ? leader.substring(0, leader.length() - 1) : leader;
+
+      return leader + path + (query == null ? "" : "?" + query);
+   }
+}
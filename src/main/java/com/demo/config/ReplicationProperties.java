@@ -0,0 +1,28 @@
+package com.demo.config;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Settings of a follower instance, bound from the {@code client.replication.*} properties.
+ */
+@Data
+@ConfigurationProperties("client.replication")
+public class ReplicationProperties {
+   /**
+    * Base URL of the leader instance to follow, for example {@code http://leader:8080}. Unset on the leader.
+    */
+   private URI leader;
+   /**
+    * The replication lag beyond which the follower reports itself down.
+    */
+   private Duration maxLag = Duration.ofSeconds(5);
+   /**
+    * Time between attempts to reach the leader, and before a new follower stream after one ended.
+    */
+   private Duration retryInterval = Duration.ofSeconds(1);
+}
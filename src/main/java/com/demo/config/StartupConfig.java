@@ -0,0 +1,72 @@
+package com.demo.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import com.demo.repository.ChangeLog;
+import com.demo.repository.ClientRepo;
+import com.demo.repository.ClientStore;
+import com.demo.service.ClientFollower;
+
+/**
+ * Startup of the application. With {@code spring.main.lazy-initialization}, as in the {@code fast-startup} profile,
+ * beans are created when first used, except for the clients and their stores: those load or recover the clients, and
+ * a follower has to start replicating, before the first request.
+ * <p>
+ * A training run, {@code client.startup.training-run=true}, sends a few requests to the client API once the application
+ * is ready and then exits, so {@code -XX:ArchiveClassesAtExit} archives the classes of the first requests along with
+ * those of the startup.
+ */
+@Configuration
+public class StartupConfig {
+   static final List<String> TRAINING_READS = List.of("/v1/clients/1", "/v1/clients?firstName=Dewald");
+
+   @Bean
+   static LazyInitializationExcludeFilter eagerClients() {
+      return LazyInitializationExcludeFilter.forBeanTypes(ClientStore.class, ClientRepo.class, ChangeLog.class,
+            ClientFollower.class);
+   }
+
+   @Bean
+   @ConditionalOnProperty("client.startup.training-run")
+   ApplicationListener<ApplicationReadyEvent> trainingRun() {
+      return event -> {
+         ConfigurableApplicationContext context = event.getApplicationContext();
+         String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+         HttpClient http = HttpClient.newHttpClient();
+
+         try {
+            for (String path : TRAINING_READS) {
+               http.send(HttpRequest.newBuilder(URI.create(base + path)).build(), HttpResponse.BodyHandlers.discarding());
+            }
+
+            http.send(HttpRequest.newBuilder(URI.create(base + "/v1/clients")) //an invalid client, which is not stored
+                  .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                  .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                  .build(), HttpResponse.BodyHandlers.discarding());
+         } catch (IOException e) {
+            throw new IllegalStateException("Training run failed", e);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+
+         System.exit(SpringApplication.exit(context));
+      };
+   }
+}
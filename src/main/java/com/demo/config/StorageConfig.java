@@ -0,0 +1,68 @@
+package com.demo.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.demo.repository.ChangeLog;
+import com.demo.repository.ClientStore;
+import com.demo.repository.CompactClientStore;
+import com.demo.repository.LogClientStore;
+import com.demo.repository.MemoryClientStore;
+import com.demo.repository.ShardedClientStore;
+import com.demo.repository.TieredClientStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@EnableConfigurationProperties(StoreProperties.class)
+public class StorageConfig {
+   @Bean
+   @ConditionalOnProperty(name = "client.store.engine", havingValue = "memory", matchIfMissing = true)
+   ClientStore memoryClientStore(StoreProperties properties, MeterRegistry registry) throws IOException {
+      return inMemory(properties, registry);
+   }
+
+   @Bean
+   @ConditionalOnProperty(name = "client.store.engine", havingValue = "log")
+   LogClientStore logClientStore(StoreProperties properties, MeterRegistry registry) throws IOException {
+      return new LogClientStore(inMemory(properties, registry), properties.getDir(), properties.getSnapshotInterval());
+   }
+   
+   /**
+    * The log of the latest client changes, served as a stream to consumers that follow the clients.
+    */
+   @Bean
+   ChangeLog changeLog(@Value("${client.changes.capacity:" + ChangeLog.DEFAULT_CAPACITY + "}") int capacity) {
+      return new ChangeLog(capacity);
+   }
+   
+   private ClientStore inMemory(StoreProperties properties, MeterRegistry registry) throws IOException {
+      if (properties.getShards() <= 1) return layout(properties, 1, registry);
+
+      List<ClientStore> shards = new ArrayList<>(properties.getShards());
+
+      for (int shard = 0; shard < properties.getShards(); shard++) {
+         shards.add(layout(properties, properties.getShards(), registry));
+      }
+
+      return new ShardedClientStore(shards);
+   }
+   
+   private ClientStore layout(StoreProperties properties, int shards, MeterRegistry registry) throws IOException {
+      switch (properties.getLayout()) {
+         case "compact":
+            return new CompactClientStore();
+         case "tiered":
+            return new TieredClientStore(properties.getDir(), properties.getHotCapacity() / shards, registry);
+         default:
+            return new MemoryClientStore();
+      }
+   }
+}
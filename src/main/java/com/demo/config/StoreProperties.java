@@ -0,0 +1,45 @@
+package com.demo.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Settings of the client storage engine, bound from the {@code client.store.*} properties.
+ */
+@Data
+@ConfigurationProperties("client.store")
+public class StoreProperties {
+   /**
+    * The storage engine: {@code memory} (default) or the durable {@code log}.
+    */
+   private String engine = "memory";
+   /**
+    * How the clients are held in memory: {@code objects} (default), the memory-compact {@code compact} columns, or
+    * {@code tiered}: on local disk in {@code dir}, read through memory-mapped files, with only the recently used clients
+    * on the heap.
+    */
+   private String layout = "objects";
+   /**
+    * The number of recently used clients the {@code tiered} layout keeps on the heap, over all shards.
+    */
+   private int hotCapacity = 65536;
+   /**
+    * The number of shards the clients are partitioned into by id, 1 (default) for none. Writes to different shards do 
+    * not contend, and searches by firstName search all shards in parallel; a shard count around the number of cores 
+    * suits write heavy loads.
+    */
+   private int shards = 1;
+   /**
+    * Directory of the write-ahead log segments and snapshots of the {@code log} engine, and of the files of the
+    * {@code tiered} layout.
+    */
+   private Path dir = Path.of("data");
+   /**
+    * Time between snapshots of the {@code log} engine; zero only snapshots on shutdown.
+    */
+   private Duration snapshotInterval = Duration.ofMinutes(10);
+}
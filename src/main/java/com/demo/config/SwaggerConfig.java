@@ -1,9 +1,15 @@
 package com.demo.config;
 
+import java.lang.reflect.Field;
 import java.util.Collections;
+import java.util.List;
 
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
 
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -11,20 +17,54 @@ import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+/**
+ * Describes the API from its handler mappings at startup. Turned off with {@code springfox.documentation.enabled=false}
+ * by the {@code fast-startup} profile, which serves the pre-generated description instead.
+ */
 @Configuration
 @EnableSwagger2
+@ConditionalOnProperty(name = SwaggerConfig.ENABLED, matchIfMissing = true)
 public class SwaggerConfig {
+   public static final String ENABLED = "springfox.documentation.enabled";
+   public static final String API_DOCS = "/v2/api-docs";
+
+
    @Bean
    Docket api() {
       return new Docket(DocumentationType.SWAGGER_2)
             .select()
-            .apis(RequestHandlerSelectors.any())
+            .apis(RequestHandlerSelectors.basePackage("com.demo"))
             .paths(PathSelectors.any())
             .build()
             .apiInfo(apiInfo());
    }
+   
+   /**
+    * Hides the actuator endpoints from springfox, which cannot read handler mappings that use path patterns instead of 
+    * the ant path matcher.
+    */
+   @Bean
+   static BeanPostProcessor actuatorHandlerMappingFilter() {
+      return new BeanPostProcessor() {
+         @Override
+         public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof WebMvcRequestHandlerProvider) {
+               handlerMappings(bean).removeIf(mapping -> mapping.getPatternParser() != null);
+            }
+            return bean;
+         }
+      };
+   }
+   
+   @SuppressWarnings("unchecked")
+   private static List<RequestMappingInfoHandlerMapping> handlerMappings(Object provider) {
+      Field field = ReflectionUtils.findField(provider.getClass(), "handlerMappings");
+      ReflectionUtils.makeAccessible(field);
+      return (List<RequestMappingInfoHandlerMapping>) ReflectionUtils.getField(field, provider);
+   }
 
     private ApiInfo apiInfo() {
         ApiInfo apiInfo = new ApiInfo("Client REST API", "Demo Client REST API", 
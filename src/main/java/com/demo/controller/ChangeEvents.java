@@ -0,0 +1,24 @@
+package com.demo.controller;
+
+import java.util.Locale;
+
+import org.springframework.http.codec.ServerSentEvent;
+
+import com.demo.dto.ClientChangeDto;
+
+/**
+ * The Server-Sent Events of client changes, shared by the servlet and the reactive stack.
+ */
+final class ChangeEvents {
+   static final String LAST_EVENT_ID = "Last-Event-ID";
+
+   private ChangeEvents() {
+   }
+
+   static ServerSentEvent<ClientChangeDto> of(ClientChangeDto change) {
+      return ServerSentEvent.builder(change)
+            .id(Long.toString(change.getSequence()))
+            .event(change.getType().name().toLowerCase(Locale.ROOT))
+            .build();
+   }
+}
@@ -1,43 +1,170 @@
 package com.demo.controller;
 
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.demo.config.AsyncTimeoutConfig;
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
 import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.ExportedClientDto;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.service.ClientJsonCache;
 import com.demo.service.ClientService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/v1/clients")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class ClientApi {
+   static final String DEFAULT_PAGE_SIZE = "100";
+   
    private final ClientService service;
+   private final ClientJsonCache jsonCache;
+   private final ObjectMapper mapper;
    
-   @GetMapping("/{id}")
+   @Value("${client.export.timeout:30m}")
+   private Duration exportTimeout;
+   
+   /**
+    * Returns the client with its version as ETag, encoded as JSON or in the binary encoding preferred by the 
+    * {@code Accept} header (see {@link ClientFormats}), which the ETag tells apart. A request whose {@code If-None-Match} holds the current ETag is 
+    * answered with 304 Not Modified, checked before the client is serialized. The JSON of clients that are read often 
+    * is written from the {@link ClientJsonCache}.
+    */
+   @GetMapping(path = "/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, 
+         ClientFormats.SMILE_VALUE })
    @ResponseBody
-   public ClientDto find(@PathVariable("id") Long id) {
-      return service.find(id);
+   public ResponseEntity<?> find(@PathVariable("id") Long id, @RequestHeader HttpHeaders headers, 
+         HttpServletRequest request, HttpServletResponse httpResponse) throws JsonProcessingException {
+      ClientDto client = service.find(id);
+      MediaType format = ClientFormats.negotiate(headers.getAccept());
+      String eTag = ClientETags.of(service.epoch(), client, format);
+      
+      if (new ServletWebRequest(request, httpResponse).checkNotModified(eTag)) {
+         return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+      }
+      
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(eTag)
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(format);
+      
+      return format.equals(MediaType.APPLICATION_JSON) ? response.body(jsonCache.json(client)) : response.body(client);
    }
    
+   /**
+    * Returns one page of matching clients, either matching idNumber, firstName or mobileNumber exactly, or ranked by 
+    * a firstName prefix or a typo-tolerant (fuzzy) firstName. When more clients match, the response carries a {@code Link} header with 
+    * the {@code next} page, which continues from an opaque cursor.
+    */
    @GetMapping
    @ResponseBody
-   public List<ClientDto> search(@RequestParam(required = false) String idNumber, 
+   public ResponseEntity<List<ClientDto>> search(@RequestParam(required = false) String idNumber, 
          @RequestParam(required = false) String firstName, 
-         @RequestParam(required = false) String mobileNumber) {
-      return service.search(idNumber, firstName, mobileNumber);
+         @RequestParam(required = false) String mobileNumber,
+         @RequestParam(required = false) String firstNamePrefix,
+         @RequestParam(required = false) String firstNameFuzzy,
+         @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit,
+         @RequestParam(required = false) String cursor) {
+      ClientPage page = service.search(idNumber, firstName, mobileNumber, firstNamePrefix, firstNameFuzzy, cursor, limit);
+      
+      if (page.getNextCursor() == null) {
+         return ResponseEntity.ok(page.getClients());
+      }
+      
+      Link next = linkTo(methodOn(ClientApi.class)
+            .search(idNumber, firstName, mobileNumber, firstNamePrefix, firstNameFuzzy, limit, page.getNextCursor()))
+            .withRel(IanaLinkRelations.NEXT)
+            .expand();
+      
+      return ResponseEntity.ok()
+            .header(HttpHeaders.LINK, next.toString())
+            .body(page.getClients());
+   }
+   
+   /**
+    * Returns the clients with the given ids in the order asked, and the ids no client exists for as missing, read in 
+    * one pass. The ids are passed as {@code ?ids=1,2,3}, or as an array in the body of a POST when the list is long.
+    */
+   @GetMapping("/_mget")
+   @ResponseBody
+   public MultiGetResultDto multiGet(@RequestParam List<Long> ids) {
+      return service.findAllById(ids);
+   }
+   
+   @PostMapping("/_mget")
+   @ResponseBody
+   public MultiGetResultDto multiGetPosted(@RequestBody List<Long> ids) {
+      return service.findAllById(ids);
+   }
+   
+   /**
+    * Streams every client with its version as newline-delimited JSON. Clients are serialized one at a time straight to 
+    * the response, so memory use does not grow with the store, and writers are never blocked by a running export. A 
+    * disconnecting client fails the next write, which ends the export. A large store takes long to export, so the 
+    * export times out after {@code client.export.timeout} instead of the timeout of other async requests.
+    */
+   @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+   public ResponseEntity<StreamingResponseBody> export(HttpServletRequest request) {
+      Iterable<ClientDto> clients = service.findAll();
+      request.setAttribute(AsyncTimeoutConfig.ASYNC_TIMEOUT, exportTimeout);
+      
+      return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(output -> writeNdjson(clients, output));
+   }
+   
+   /**
+    * Streams the client changes as Server-Sent Events named after the change type, with the change sequence as event 
+    * id. The stream starts after the {@code since} sequence, or after the {@code Last-Event-ID} of a reconnecting 
+    * EventSource, and otherwise with the next change. A {@code resync} event ends the stream when changes were lost: 
+    * reload the clients from the export and follow the changes again since the sequence of that event.
+    */
+   @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+   public Flux<ServerSentEvent<ClientChangeDto>> changes(@RequestParam(required = false) Long since,
+         @RequestHeader(name = ChangeEvents.LAST_EVENT_ID, required = false) Long lastEventId) {
+      return service.changes(since != null ? since : lastEventId).map(ChangeEvents::of);
    }
    
    @PostMapping
@@ -46,10 +173,33 @@ public class ClientApi {
       return service.create(client);
    }
    
+   /**
+    * Creates or updates many clients in one call. Clients without an id are created, clients with one are updated; 
+    * the response lists the id or the failure reasons of every client in request order.
+    */
+   @PostMapping("/batch")
+   @ResponseBody
+   public List<BatchResultDto> batch(@RequestBody List<ClientDto> clients) {
+      return service.batch(clients);
+   }
+   
+   /**
+    * Replaces the client and returns it with its new ETag. With an {@code If-Match} ETag, the client is only replaced 
+    * when it is still at that version, and 412 Precondition Failed is answered when it was changed in the meantime.
+    */
    @PutMapping("/{id}")
    @ResponseBody
-   public ClientDto update(@PathVariable("id") Long id, @RequestBody ClientDto client) {
-      return service.update(id, client);
+   public ResponseEntity<ClientDto> update(@PathVariable("id") Long id, @RequestBody ClientDto client,
+         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch, 
+         @RequestHeader HttpHeaders headers) {
+      String epoch = service.epoch();
+      MediaType format = ClientFormats.negotiate(headers.getAccept());
+      ClientDto updated = service.update(id, client, ClientETags.expectedVersion(epoch, ifMatch));
+      return ResponseEntity.ok()
+            .eTag(ClientETags.of(epoch, updated, format))
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(format)
+            .body(updated);
    }
    
    @DeleteMapping("/{id}")
@@ -57,4 +207,18 @@ public class ClientApi {
    public void remove(@PathVariable("id") Long id) {
       service.remove(id);
    }
+   
+   void writeNdjson(Iterable<ClientDto> clients, OutputStream output) throws IOException {
+      ObjectWriter writer = mapper.writerFor(ExportedClientDto.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      
+      try (JsonGenerator generator = mapper.createGenerator(output)) {
+         generator.setRootValueSeparator(null);
+         
+         for (ClientDto client : clients) {
+            writer.writeValue(generator, ExportedClientDto.of(client));
+            generator.writeRaw('\n');
+         }
+      }
+   }
 }
@@ -0,0 +1,72 @@
+package com.demo.controller;
+
+import org.springframework.http.MediaType;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * The ETags of clients: strong entity tags holding the version of the client, prefixed with the epoch the versions
+ * count in. Versions start over when the leader restarts, so the ETags of an earlier run must not match those of this
+ * one; a follower replicates the epoch of its leader, so an ETag read from either one matches on the other.
+ * <p>
+ * A strong ETag stands for one exact representation, so the CBOR and Smile encodings of a version get a tag of their
+ * own, suffixed with the encoding. The JSON tag has no suffix. An If-Match precondition is about the version only, so
+ * it accepts the tag of every encoding.
+ */
+final class ClientETags {
+   static final long NO_VERSION = Long.MIN_VALUE;
+
+   private ClientETags() {
+   }
+
+   static String of(String epoch, ClientDto client) {
+      return of(epoch, client, MediaType.APPLICATION_JSON);
+   }
+
+   /**
+    * @param format the encoding the client is sent in, one of {@link ClientFormats#PRODUCIBLE}
+    */
+   static String of(String epoch, ClientDto client, MediaType format) {
+      String suffix = suffix(format);
+      return "\"" + epoch + '-' + client.getVersion() + (suffix.isEmpty() ? "" : "-" + suffix) + "\"";
+   }
+
+   /**
+    * @return the version of the first strong ETag of the epoch in the If-Match header, in any encoding, null when any 
+    * version matches, or {@link #NO_VERSION} when none of the ETags can match
+    */
+   static Long expectedVersion(String epoch, String ifMatch) {
+      if (ifMatch == null || ifMatch.trim().equals("*")) return null;
+
+      String prefix = "\"" + epoch + '-';
+
+      for (String tag : ifMatch.split(",")) {
+         tag = tag.trim();
+
+         if (tag.startsWith(prefix) && tag.endsWith("\"")) { //weak W/ tags never match an If-Match
+            String value = tag.substring(prefix.length(), tag.length() - 1);
+            int suffix = value.indexOf('-', 1);
+
+            if (suffix > 0 && !isSuffix(value.substring(suffix + 1))) continue;
+
+            try {
+               long version = Long.parseLong(suffix > 0 ? value.substring(0, suffix) : value);
+               if (version >= 0) return version;
+            } catch (NumberFormatException e) { //not one of our tags
+            }
+         }
+      }
+
+      return NO_VERSION;
+   }
+
+   private static String suffix(MediaType format) {
+      if (format.isCompatibleWith(MediaType.APPLICATION_CBOR)) return "cbor";
+      if (format.isCompatibleWith(ClientFormats.SMILE)) return "smile";
+      return "";
+   }
+
+   private static boolean isSuffix(String suffix) {
+      return suffix.equals("cbor") || suffix.equals("smile");
+   }
+}
@@ -0,0 +1,40 @@
+package com.demo.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The encodings of clients in the client API. JSON is the default; CBOR and Smile are compact binary encodings of the
+ * same JSON data model for service-to-service calls, written and read by the same Jackson bindings, so they need no
+ * schema of their own. Request bodies are read in the encoding of their {@code Content-Type}, list and batch responses
+ * are negotiated by the message converters or codecs, which try JSON first.
+ */
+final class ClientFormats {
+   static final String SMILE_VALUE = "application/x-jackson-smile";
+   static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+   static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+   private ClientFormats() {
+   }
+
+   /**
+    * @return the encoding of a single client for the {@code Accept} header: the first producible one in the order of
+    * preference of the header, JSON when the header prefers none of them
+    */
+   static MediaType negotiate(List<MediaType> accept) {
+      List<MediaType> preferred = new ArrayList<>(accept);
+      MediaType.sortBySpecificityAndQuality(preferred);
+
+      for (MediaType accepted : preferred) {
+         if (accepted.getQualityValue() == 0.0) continue;
+
+         for (MediaType producible : PRODUCIBLE) {
+            if (accepted.includes(producible)) return producible;
+         }
+      }
+
+      return MediaType.APPLICATION_JSON;
+   }
+}
@@ -0,0 +1,175 @@
+package com.demo.controller;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.ExportedClientDto;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.service.ClientJsonCache;
+import com.demo.service.ClientService;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The {@link ClientApi} contract on the reactive stack, served when the application runs as a reactive web application
+ * (the {@code reactive} profile).
+ * <p>
+ * Reads and writes both run on the bounded elastic scheduler, never on the event loop: the {@code tiered} engine reads
+ * cold clients from memory-mapped files that may fault in from disk, searches of a sharded store wait for their shards
+ * on the common fork-join pool, and the {@code log} engine waits for its write-ahead log to reach the disk before a
+ * write returns. Search pages and the export are streamed as a {@link Flux}.
+ */
+@RestController
+@RequestMapping("/v1/clients")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveClientApi {
+   private static final Scheduler READS = Schedulers.boundedElastic();
+   private static final Scheduler WRITES = Schedulers.boundedElastic();
+
+   private final ClientService service;
+   private final ClientJsonCache jsonCache;
+
+   @GetMapping(path = "/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+         ClientFormats.SMILE_VALUE })
+   public Mono<ResponseEntity<?>> find(@PathVariable("id") Long id, @RequestHeader HttpHeaders headers,
+         ServerWebExchange exchange) {
+      return Mono.fromCallable(() -> {
+         ClientDto client = service.find(id);
+         MediaType format = ClientFormats.negotiate(headers.getAccept());
+         String eTag = ClientETags.of(service.epoch(), client, format);
+
+         if (exchange.checkNotModified(eTag)) { //before the client is serialized
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+         }
+
+         ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+               .eTag(eTag)
+               .varyBy(HttpHeaders.ACCEPT)
+               .contentType(format);
+
+         return format.equals(MediaType.APPLICATION_JSON) ? response.body(jsonCache.json(client)) : response.body(client);
+      }).subscribeOn(READS);
+   }
+
+   @GetMapping
+   public Mono<ResponseEntity<Flux<ClientDto>>> search(@RequestParam(required = false) String idNumber,
+         @RequestParam(required = false) String firstName,
+         @RequestParam(required = false) String mobileNumber,
+         @RequestParam(required = false) String firstNamePrefix,
+         @RequestParam(required = false) String firstNameFuzzy,
+         @RequestParam(defaultValue = ClientApi.DEFAULT_PAGE_SIZE) int limit,
+         @RequestParam(required = false) String cursor,
+         ServerWebExchange exchange) {
+      return Mono.fromCallable(() -> {
+         ClientPage page = service.search(idNumber, firstName, mobileNumber, firstNamePrefix, firstNameFuzzy, cursor, limit);
+         Flux<ClientDto> clients = Flux.fromIterable(page.getClients());
+
+         if (page.getNextCursor() == null) {
+            return ResponseEntity.ok(clients);
+         }
+
+         Link next = Link.of(UriComponentsBuilder.fromHttpRequest(exchange.getRequest())
+               .replaceQueryParam("limit", limit)
+               .replaceQueryParam("cursor", page.getNextCursor())
+               .toUriString(), IanaLinkRelations.NEXT);
+
+         return ResponseEntity.ok()
+               .header(HttpHeaders.LINK, next.toString())
+               .body(clients);
+      }).subscribeOn(READS);
+   }
+
+   @GetMapping("/_mget")
+   public Mono<MultiGetResultDto> multiGet(@RequestParam List<Long> ids) {
+      return Mono.fromCallable(() -> service.findAllById(ids)).subscribeOn(READS);
+   }
+
+   @PostMapping("/_mget")
+   public Mono<MultiGetResultDto> multiGetPosted(@RequestBody List<Long> ids) {
+      return Mono.fromCallable(() -> service.findAllById(ids)).subscribeOn(READS);
+   }
+
+   /**
+    * Streams every client with its version as newline-delimited JSON, reading the store lazily as the response is
+    * consumed.
+    */
+   @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+   public Flux<ExportedClientDto> export() {
+      return Flux.defer(() -> Flux.fromIterable(service.findAll())).map(ExportedClientDto::of).subscribeOn(READS);
+   }
+
+   /**
+    * Streams the client changes as Server-Sent Events named after the change type, with the change sequence as event 
+    * id. The stream starts after the {@code since} sequence, or after the {@code Last-Event-ID} of a reconnecting 
+    * EventSource, and otherwise with the next change. A {@code resync} event ends the stream when changes were lost: 
+    * reload the clients from the export and follow the changes again since the sequence of that event.
+    */
+   @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+   public Flux<ServerSentEvent<ClientChangeDto>> changes(@RequestParam(required = false) Long since,
+         @RequestHeader(name = ChangeEvents.LAST_EVENT_ID, required = false) Long lastEventId) {
+      return service.changes(since != null ? since : lastEventId).map(ChangeEvents::of);
+   }
+
+   @PostMapping
+   @ResponseStatus(HttpStatus.CREATED)
+   public Mono<Long> create(@RequestBody ClientDto client) {
+      return Mono.fromCallable(() -> service.create(client)).subscribeOn(WRITES);
+   }
+
+   @PostMapping("/batch")
+   public Mono<List<BatchResultDto>> batch(@RequestBody List<ClientDto> clients) {
+      return Mono.fromCallable(() -> service.batch(clients)).subscribeOn(WRITES);
+   }
+
+   @PutMapping("/{id}")
+   public Mono<ResponseEntity<ClientDto>> update(@PathVariable("id") Long id, @RequestBody ClientDto client,
+         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch, 
+         @RequestHeader HttpHeaders headers) {
+      return Mono.fromCallable(() -> {
+         String epoch = service.epoch();
+         MediaType format = ClientFormats.negotiate(headers.getAccept());
+         ClientDto updated = service.update(id, client, ClientETags.expectedVersion(epoch, ifMatch));
+         return ResponseEntity.ok()
+               .eTag(ClientETags.of(epoch, updated, format))
+               .varyBy(HttpHeaders.ACCEPT)
+               .contentType(format)
+               .body(updated);
+      }).subscribeOn(WRITES);
+   }
+
+   @DeleteMapping("/{id}")
+   @ResponseStatus(HttpStatus.NO_CONTENT)
+   public Mono<Void> remove(@PathVariable("id") Long id) {
+      return Mono.<Void>fromRunnable(() -> service.remove(id)).subscribeOn(WRITES);
+   }
+}
@@ -0,0 +1,44 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change of a client, numbered by its sequence in the change log: the client as stored after a create or update,
+ * or only the id of a deleted client, with the time of the change in epoch milliseconds.
+ * <p>
+ * A {@link Type#RESYNC} change tells a consumer that changes it did not read yet were lost. It carries the sequence to
+ * continue from after reloading all clients. A {@link Type#HEARTBEAT} tells a consumer that is idle that it read all
+ * changes up to its sequence as of its time.
+ * <p>
+ * Changes and heartbeats carry the epoch of the versions of the instance, which starts over when the versions do: a
+ * replica that takes over the epoch of its leader hands out the same ETags for the same versions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ClientChangeDto {
+   public enum Type {
+      CREATED, UPDATED, DELETED, RESYNC, HEARTBEAT
+   }
+
+   private long sequence;
+   private Type type;
+   private Long client;
+   private Long version;
+   private ClientDto data;
+   private Long time;
+   private String epoch;
+
+   public static ClientChangeDto resync(long sequence) {
+      return new ClientChangeDto(sequence, Type.RESYNC, null, null, null, null, null);
+   }
+
+   public static ClientChangeDto heartbeat(long sequence, long time, String epoch) {
+      return new ClientChangeDto(sequence, Type.HEARTBEAT, null, null, null, time, epoch);
+   }
+}
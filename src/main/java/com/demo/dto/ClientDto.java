@@ -1,6 +1,9 @@
 package com.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 @Data
 public class ClientDto {
@@ -10,4 +13,26 @@ public class ClientDto {
    private String mobileNumber;
    private String idNumber;
    private String address;
+   /**
+    * Counts the writes of the client in the running repository, starting at 1 when it is stored. It is not part of 
+    * the JSON body, but travels as the ETag of the client.
+    */
+   @JsonIgnore
+   @EqualsAndHashCode.Exclude
+   private long version;
+
+   /**
+    * @return a client with the same fields and version, which the caller owns and can change
+    */
+   public ClientDto copy() {
+      ClientDto copy = new ClientDto();
+      copy.client = client;
+      copy.firstName = firstName;
+      copy.lastName = lastName;
+      copy.mobileNumber = mobileNumber;
+      copy.idNumber = idNumber;
+      copy.address = address;
+      copy.version = version;
+      return copy;
+   }
 }
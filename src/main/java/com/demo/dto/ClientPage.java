@@ -0,0 +1,16 @@
+package com.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One page of search results and the opaque cursor of the page that follows it, if any.
+ */
+@Data
+@AllArgsConstructor
+public class ClientPage {
+   private List<ClientDto> clients;
+   private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the export: the fields of the client with the version it is at, which the body of a single client only
+ * carries as its ETag. A follower loads the clients from it at the versions they have on the leader.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportedClientDto {
+   @JsonUnwrapped
+   private ClientDto data;
+   private long version;
+
+   public static ExportedClientDto of(ClientDto client) {
+      return new ExportedClientDto(client, client.getVersion());
+   }
+}
@@ -0,0 +1,18 @@
+package com.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The clients found for a list of ids, in the order of the ids, and the ids no client exists for.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiGetResultDto {
+   private List<ClientDto> clients;
+   private List<Long> missing;
+}
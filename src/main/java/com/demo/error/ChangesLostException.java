@@ -0,0 +1,19 @@
+package com.demo.error;
+
+import lombok.Getter;
+
+/**
+ * Raised when a consumer of the change log asks for changes that were already overwritten, or that were logged by an
+ * earlier run of the application. It is created without a stack trace, as it only carries the outcome to the service.
+ */
+public class ChangesLostException extends RuntimeException {
+   private static final long serialVersionUID = 3320564712977013528L;
+
+   @Getter
+   private final long lastSequence;
+
+   public ChangesLostException(long after, long lastSequence) {
+      super("Changes after " + after + " are no longer available", null, false, false);
+      this.lastSequence = lastSequence;
+   }
+}
@@ -1,13 +1,17 @@
 package com.demo.error;
 
+/**
+ * An expected outcome rather than a fault, so it is created without a stack trace unless it wraps a cause.
+ */
 public class DataNotFoundException extends RuntimeException {
    private static final long serialVersionUID = 1283034866060698014L;
 
    public DataNotFoundException() {
+      super(null, null, false, false);
    }
 
    public DataNotFoundException(String message) {
-      super(message);
+      super(message, null, false, false);
    }
 
    public DataNotFoundException(Throwable cause) {
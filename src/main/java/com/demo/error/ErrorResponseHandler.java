@@ -1,26 +1,37 @@
 package com.demo.error;
 
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
-import com.demo.dto.ValidationFailureDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
 
+/**
+ * Answers the expected failures of the servlet stack with the {@link ErrorResponses}.
+ */
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ErrorResponseHandler extends ResponseEntityExceptionHandler {
+   private final ErrorResponses responses;
+
+   public ErrorResponseHandler(ErrorResponses responses) {
+      this.responses = responses;
+   }
 
    @ExceptionHandler({ DataNotFoundException.class })
-   protected ResponseEntity<Object> handleNotFound(DataNotFoundException error, WebRequest request) {
-      String errorMessage = "Data not found - " + error.getMessage();
-      return handleExceptionInternal(error, errorMessage, new HttpHeaders(), HttpStatus.NOT_FOUND, request);
+   protected ResponseEntity<byte[]> handleNotFound(DataNotFoundException error) {
+      return responses.notFound(error);
    }
-   
+
    @ExceptionHandler({ ValidationException.class })
-   protected ResponseEntity<ValidationFailureDto> handleValidationError(ValidationException error) {
-      return ResponseEntity.badRequest().body(new ValidationFailureDto(error.getReasons()));
+   protected ResponseEntity<byte[]> handleValidationError(ValidationException error) throws JsonProcessingException {
+      return responses.validationFailed(error);
+   }
+
+   @ExceptionHandler({ VersionConflictException.class })
+   protected ResponseEntity<byte[]> handleVersionConflict(VersionConflictException error) {
+      return responses.versionConflict(error);
    }
 }
@@ -0,0 +1,99 @@
+package com.demo.error;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.demo.dto.ValidationFailureDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The responses to the expected failures, shared by the servlet and the reactive exception handlers. Bodies are
+ * written as bytes, with shared read-only headers. Validation failures repeat a lot (missing fields), so the rendered
+ * JSON of a set of {@link ValidationCode}s is kept for the next request that fails the same codes. Reasons that hold a
+ * value sent by the caller, like a rejected idNumber, are rendered on every request, so callers cannot fill the cache.
+ */
+@Component
+public class ErrorResponses {
+   static final String ERRORS = "client.api.errors";
+
+   private static final byte[] NOT_FOUND_PREFIX = "Data not found - ".getBytes(StandardCharsets.UTF_8);
+   private static final byte[] CONFLICT_PREFIX = "Precondition failed - ".getBytes(StandardCharsets.UTF_8);
+   private static final HttpHeaders TEXT_HEADERS = readOnlyHeaders(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+   private static final HttpHeaders JSON_HEADERS = readOnlyHeaders(MediaType.APPLICATION_JSON);
+
+   private final ObjectMapper mapper;
+   private final AtomicReferenceArray<byte[]> renderedCodes = 
+         new AtomicReferenceArray<>(1 << ValidationCode.values().length);
+   private final Counter notFound;
+   private final Counter validationFailed;
+   private final Counter versionConflict;
+
+   public ErrorResponses(MeterRegistry registry, ObjectMapper mapper) {
+      this.mapper = mapper;
+      this.notFound = errors(registry, HttpStatus.NOT_FOUND, DataNotFoundException.class);
+      this.validationFailed = errors(registry, HttpStatus.BAD_REQUEST, ValidationException.class);
+      this.versionConflict = errors(registry, HttpStatus.PRECONDITION_FAILED, VersionConflictException.class);
+   }
+
+   public ResponseEntity<byte[]> notFound(DataNotFoundException error) {
+      notFound.increment();
+      return new ResponseEntity<>(text(NOT_FOUND_PREFIX, error.getMessage()), TEXT_HEADERS, HttpStatus.NOT_FOUND);
+   }
+
+   public ResponseEntity<byte[]> validationFailed(ValidationException error) throws JsonProcessingException {
+      validationFailed.increment();
+      return new ResponseEntity<>(render(error), JSON_HEADERS, HttpStatus.BAD_REQUEST);
+   }
+
+   public ResponseEntity<byte[]> versionConflict(VersionConflictException error) {
+      versionConflict.increment();
+      return new ResponseEntity<>(text(CONFLICT_PREFIX, error.getMessage()), TEXT_HEADERS, HttpStatus.PRECONDITION_FAILED);
+   }
+
+   byte[] render(ValidationException error) throws JsonProcessingException {
+      int codes = error.getCodes();
+
+      if (codes == 0 || !error.reasons.isEmpty() || ValidationCode.rejectsValues(codes)) {
+         return mapper.writeValueAsBytes(new ValidationFailureDto(error.getReasons()));
+      }
+
+      byte[] body = renderedCodes.get(codes);
+      if (body == null) {
+         body = mapper.writeValueAsBytes(new ValidationFailureDto(error.getReasons()));
+         renderedCodes.set(codes, body);
+      }
+      return body;
+   }
+
+   private static byte[] text(byte[] prefix, String message) {
+      byte[] encoded = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+      byte[] body = new byte[prefix.length + encoded.length];
+      System.arraycopy(prefix, 0, body, 0, prefix.length);
+      System.arraycopy(encoded, 0, body, prefix.length, encoded.length);
+      return body;
+   }
+
+   private static HttpHeaders readOnlyHeaders(MediaType contentType) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(contentType);
+      return HttpHeaders.readOnlyHttpHeaders(headers);
+   }
+
+   private static Counter errors(MeterRegistry registry, HttpStatus status, Class<? extends Exception> exception) {
+      return Counter.builder(ERRORS)
+            .description("Client API requests answered with an error")
+            .tag("status", String.valueOf(status.value()))
+            .tag("exception", exception.getSimpleName())
+            .register(registry);
+   }
+}
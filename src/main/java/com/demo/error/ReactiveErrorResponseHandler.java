@@ -0,0 +1,36 @@
+package com.demo.error;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Answers the expected failures of the reactive stack with the same {@link ErrorResponses} as the servlet stack.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveErrorResponseHandler {
+   private final ErrorResponses responses;
+
+   public ReactiveErrorResponseHandler(ErrorResponses responses) {
+      this.responses = responses;
+   }
+
+   @ExceptionHandler({ DataNotFoundException.class })
+   protected ResponseEntity<byte[]> handleNotFound(DataNotFoundException error) {
+      return responses.notFound(error);
+   }
+
+   @ExceptionHandler({ ValidationException.class })
+   protected ResponseEntity<byte[]> handleValidationError(ValidationException error) throws JsonProcessingException {
+      return responses.validationFailed(error);
+   }
+
+   @ExceptionHandler({ VersionConflictException.class })
+   protected ResponseEntity<byte[]> handleVersionConflict(VersionConflictException error) {
+      return responses.versionConflict(error);
+   }
+}
@@ -0,0 +1,19 @@
+package com.demo.error;
+
+import lombok.Getter;
+
+/**
+ * Raised by the repository when a write would store a value that another client already holds in a unique field. It
+ * is created without a stack trace, as it only carries the outcome to the service.
+ */
+public class UniqueConstraintException extends RuntimeException {
+   private static final long serialVersionUID = 6471320419556017415L;
+   
+   @Getter
+   private final String field;
+
+   public UniqueConstraintException(String field) {
+      super("Existing " + field, null, false, false);
+      this.field = field;
+   }
+}
@@ -0,0 +1,68 @@
+package com.demo.error;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * The reasons a client can fail validation. A set of codes is passed around as a bit mask of {@link #bit()}s and only
+ * turned into the reason texts of a response by {@link #reasons}.
+ */
+public enum ValidationCode {
+   FIRST_NAME_MISSING("Mandatory firstName is not submitted", null),
+   LAST_NAME_MISSING("Mandatory lastName is not submitted", null),
+   ID_NUMBER_MISSING("Mandatory idNumber is not submitted", null),
+   ID_NUMBER_INVALID("Invalid idNumber: ", ClientDto::getIdNumber),
+   MOBILE_NUMBER_INVALID("Invalid mobileNumber: ", ClientDto::getMobileNumber);
+
+   private static final ValidationCode[] CODES = values();
+
+   private final String reason;
+   private final Function<ClientDto, String> rejectedValue;
+
+   ValidationCode(String reason, Function<ClientDto, String> rejectedValue) {
+      this.reason = reason;
+      this.rejectedValue = rejectedValue;
+   }
+
+   public int bit() {
+      return 1 << ordinal();
+   }
+
+   public boolean in(int codes) {
+      return (codes & bit()) != 0;
+   }
+
+   public String reason(ClientDto client) {
+      return rejectedValue == null ? reason : reason + rejectedValue.apply(client);
+   }
+
+   /**
+    * @return whether any of the codes in the bit mask has a reason that holds the value the client was rejected for
+    */
+   public static boolean rejectsValues(int codes) {
+      for (ValidationCode code : CODES) {
+         if (code.in(codes) && code.rejectedValue != null) return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * @param codes the bit mask of the codes the client failed
+    * @return the reason texts of the codes, in declaration order
+    */
+   public static List<String> reasons(int codes, ClientDto client) {
+      List<String> reasons = new ArrayList<>(Integer.bitCount(codes));
+
+      for (ValidationCode code : CODES) {
+         if (code.in(codes)) {
+            reasons.add(code.reason(client));
+         }
+      }
+
+      return reasons;
+   }
+}
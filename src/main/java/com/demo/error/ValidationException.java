@@ -3,19 +3,27 @@ package com.demo.error;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.demo.dto.ClientDto;
+
 import lombok.Getter;
 
+/**
+ * An expected outcome rather than a fault, so it is created without a stack trace unless it wraps a cause.
+ */
 public class ValidationException extends RuntimeException {
    private static final long serialVersionUID = -324080258182296425L;
    
-   @Getter
    final List<String> reasons = new ArrayList<>();
+   private transient ClientDto client;
+   @Getter
+   private int codes;
 
    public ValidationException() {
+      super(null, null, false, false);
    }
 
    public ValidationException(String message) {
-      super(message);
+      super(message, null, false, false);
       reasons.add(message);
    }
 
@@ -34,6 +42,24 @@ public class ValidationException extends RuntimeException {
    }
 
    public ValidationException(List<String> reasons) {
+      this();
       this.reasons.addAll(reasons);
    }
+   
+   /**
+    * @param codes the bit mask of the {@link ValidationCode}s the client failed, rendered as reasons when read
+    */
+   public ValidationException(ClientDto client, int codes) {
+      this();
+      this.client = client;
+      this.codes = codes;
+   }
+   
+   public List<String> getReasons() {
+      if (codes == 0) return reasons;
+      
+      List<String> allReasons = ValidationCode.reasons(codes, client);
+      allReasons.addAll(reasons);
+      return allReasons;
+   }
 }
@@ -0,0 +1,19 @@
+package com.demo.error;
+
+import lombok.Getter;
+
+/**
+ * Raised by the repository when a conditional write expected another version of the client than the one stored. It is
+ * created without a stack trace, as it is an expected outcome of concurrent updates.
+ */
+public class VersionConflictException extends RuntimeException {
+   private static final long serialVersionUID = -2859167390446135622L;
+
+   @Getter
+   private final long version;
+
+   public VersionConflictException(Long id, long version) {
+      super("Client id: " + id + " is at version " + version, null, false, false);
+      this.version = version;
+   }
+}
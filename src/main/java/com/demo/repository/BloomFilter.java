@@ -0,0 +1,57 @@
+package com.demo.repository;
+
+/**
+ * Bloom filter of long keys: {@link #mightContain} is true for every key added, and false for most keys that were not.
+ * With 16 bits per key, about 1 in 700 keys that were not added still tests true; with 8 bits, about 1 in 50.
+ * <p>
+ * Keys cannot be removed. The filter is not safe for concurrent writes; readers racing a write may miss the key being
+ * added.
+ */
+final class BloomFilter {
+   static final int HASHES = 5;
+
+   private final long[] words;
+   private final int mask;
+
+   /**
+    * @param bits the number of bits, rounded up to a power of two of at least 64
+    */
+   BloomFilter(int bits) {
+      int size = Integer.highestOneBit(Math.max(Long.SIZE, bits) * 2 - 1);
+      this.words = new long[size / Long.SIZE];
+      this.mask = size - 1;
+   }
+
+   void add(long key) {
+      long hash = mix(key);
+      int step = (int) (hash >>> 32) | 1;
+
+      for (int index = 0, bit = (int) hash; index < HASHES; index++, bit += step) {
+         int position = bit & mask;
+         words[position >>> 6] |= 1L << position;
+      }
+   }
+
+   boolean mightContain(long key) {
+      long hash = mix(key);
+      int step = (int) (hash >>> 32) | 1;
+
+      for (int index = 0, bit = (int) hash; index < HASHES; index++, bit += step) {
+         int position = bit & mask;
+         if ((words[position >>> 6] & 1L << position) == 0) return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * The finalizer of MurmurHash3, which spreads sequential ids over all bits.
+    */
+   static long mix(long key) {
+      key ^= key >>> 33;
+      key *= 0xFF51AFD7ED558CCDL;
+      key ^= key >>> 33;
+      key *= 0xC4CEB9FE1A85EC53L;
+      return key ^ key >>> 33;
+   }
+}
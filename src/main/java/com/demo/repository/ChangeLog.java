@@ -0,0 +1,87 @@
+package com.demo.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientDto;
+import com.demo.error.ChangesLostException;
+
+/**
+ * Bounded in-memory log of the most recent client changes, numbered by a sequence.
+ * <p>
+ * The log is a ring buffer: a writer takes the next sequence and stores its change in the slot of that sequence,
+ * overwriting the change one capacity older. Writers never wait for readers; a reader that falls more than a capacity
+ * behind finds its next change overwritten and gets a {@link ChangesLostException}.
+ * <p>
+ * Sequences start at the start time of the process in microseconds, so the sequences of an earlier run are lower than
+ * those of this one (unless it logged more than a million changes per second on average) and read as lost.
+ */
+public class ChangeLog {
+   public static final int DEFAULT_CAPACITY = 1 << 16;
+
+   private final AtomicReferenceArray<ClientChangeDto> slots;
+   private final int mask;
+   private final long firstSequence;
+   private final AtomicLong sequence;
+
+   /**
+    * @param capacity the number of changes kept, rounded up to a power of two
+    */
+   public ChangeLog(int capacity) {
+      this.slots = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1));
+      this.mask = slots.length() - 1;
+      this.firstSequence = System.currentTimeMillis() * 1000L;
+      this.sequence = new AtomicLong(firstSequence);
+   }
+
+   /**
+    * @param client the client after the change, null when it was deleted
+    * @param epoch the epoch of the version of the client
+    */
+   void publish(ClientChangeDto.Type type, Long id, ClientDto client, String epoch) {
+      long next = sequence.incrementAndGet();
+      slots.set((int) next & mask, new ClientChangeDto(next, type, id, client == null ? null : client.getVersion(), client, 
+            System.currentTimeMillis(), epoch));
+   }
+
+   /**
+    * @return the sequence of the latest change, or the sequence before the first change when none was logged yet
+    */
+   public long lastSequence() {
+      return sequence.get();
+   }
+
+   /**
+    * Reads the changes following a sequence in order, stopping at the first change that is still being written.
+    *
+    * @param after the sequence of the last change the reader has seen
+    * @param max the maximum number of changes to read
+    * @return the changes after the sequence, empty when there are none yet
+    * @throws ChangesLostException when changes after the sequence are no longer in the log
+    */
+   public List<ClientChangeDto> read(long after, int max) {
+      long last = sequence.get();
+
+      if (after < firstSequence || after > last || last - after > slots.length()) {
+         throw new ChangesLostException(after, last);
+      }
+      if (after == last) return Collections.emptyList();
+
+      List<ClientChangeDto> changes = new ArrayList<>((int) Math.min(max, last - after));
+
+      for (long next = after + 1; next <= last && changes.size() < max; next++) {
+         ClientChangeDto change = slots.get((int) next & mask);
+
+         if (change == null || change.getSequence() < next) break; //taken, but not stored yet
+         if (change.getSequence() > next) throw new ChangesLostException(after, last);
+
+         changes.add(change);
+      }
+
+      return changes;
+   }
+}
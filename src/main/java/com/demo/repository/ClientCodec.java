@@ -0,0 +1,84 @@
+package com.demo.repository;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Binary encoding of a client: the id followed by the text fields, each as an int byte length (-1 for null) and UTF-8 
+ * bytes.
+ */
+final class ClientCodec {
+   private ClientCodec() {
+   }
+
+   static byte[][] fields(ClientDto client) {
+      return new byte[][] {
+         bytes(client.getFirstName()),
+         bytes(client.getLastName()),
+         bytes(client.getMobileNumber()),
+         bytes(client.getIdNumber()),
+         bytes(client.getAddress())
+      };
+   }
+
+   static int size(byte[][] fields) {
+      int size = Long.BYTES;
+
+      for (byte[] field : fields) {
+         size += Integer.BYTES + (field == null ? 0 : field.length);
+      }
+
+      return size;
+   }
+
+   static void encode(long id, byte[][] fields, ByteBuffer buffer) {
+      buffer.putLong(id);
+
+      for (byte[] field : fields) {
+         if (field == null) {
+            buffer.putInt(-1);
+         } else {
+            buffer.putInt(field.length);
+            buffer.put(field);
+         }
+      }
+   }
+
+   /**
+    * @return the client at version 0, as versions are not encoded
+    */
+   static ClientRecord decode(ByteBuffer buffer) {
+      return decode(buffer, 0L);
+   }
+
+   /**
+    * @return the client at the given version, kept by the caller next to the encoding
+    */
+   static ClientRecord decode(ByteBuffer buffer, long version) {
+      return new ClientRecord(buffer.getLong(), string(buffer), string(buffer), string(buffer), string(buffer), 
+            string(buffer), version);
+   }
+
+   private static byte[] bytes(String value) {
+      return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+   }
+
+   private static String string(ByteBuffer buffer) {
+      int length = buffer.getInt();
+      if (length < 0) return null;
+      if (length > buffer.remaining()) throw new BufferUnderflowException(); //not a whole encoding
+
+      if (buffer.hasArray()) {
+         String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+         buffer.position(buffer.position() + length);
+         return value;
+      }
+
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,74 @@
+package com.demo.repository;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * A client as stored by {@link ClientRepo}: one version of the client that never changes.
+ * <p>
+ * A write never modifies the stored record, but stores a new record in its place (copy-on-write). Readers get the
+ * stored record itself, without a copy or a lock, and keep seeing that one version whole however many writes follow.
+ * The setters throw an {@link UnsupportedOperationException}; to change a client, write a {@link #copy()} of it.
+ * {@link com.demo.service.ClientService} only hands out such copies, so its callers can read, modify and update a
+ * client as any other {@link ClientDto}.
+ */
+public final class ClientRecord extends ClientDto {
+   ClientRecord(Long client, String firstName, String lastName, String mobileNumber, String idNumber, String address,
+         long version) {
+      super.setClient(client);
+      super.setFirstName(firstName);
+      super.setLastName(lastName);
+      super.setMobileNumber(mobileNumber);
+      super.setIdNumber(idNumber);
+      super.setAddress(address);
+      super.setVersion(version);
+   }
+
+   /**
+    * @return the fields of the client, at the given version
+    */
+   static ClientRecord of(ClientDto client, long version) {
+      if (client instanceof ClientRecord && client.getVersion() == version) return (ClientRecord) client;
+
+      return new ClientRecord(client.getClient(), client.getFirstName(), client.getLastName(), client.getMobileNumber(),
+            client.getIdNumber(), client.getAddress(), version);
+   }
+
+   @Override
+   public void setClient(Long client) {
+      throw immutable();
+   }
+
+   @Override
+   public void setFirstName(String firstName) {
+      throw immutable();
+   }
+
+   @Override
+   public void setLastName(String lastName) {
+      throw immutable();
+   }
+
+   @Override
+   public void setMobileNumber(String mobileNumber) {
+      throw immutable();
+   }
+
+   @Override
+   public void setIdNumber(String idNumber) {
+      throw immutable();
+   }
+
+   @Override
+   public void setAddress(String address) {
+      throw immutable();
+   }
+
+   @Override
+   public void setVersion(long version) {
+      throw immutable();
+   }
+
+   private UnsupportedOperationException immutable() {
+      return new UnsupportedOperationException("Client " + getClient() + " is a stored record, write a copy of it");
+   }
+}
@@ -1,62 +1,659 @@
 package com.demo.repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.demo.dto.ClientChangeDto;
 import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+import com.demo.error.VersionConflictException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 
 /**
- * In-memory client storage used purely for illustration purposes.
+ * Client storage on top of a pluggable {@link ClientStore} engine, which is volatile and in-memory by default.
+ * <p>
+ * The searchable fields (idNumber, firstName and mobileNumber) are kept in secondary indexes that are maintained on
+ * every write, so searches and uniqueness checks never scan the whole store. The indexes are created by the engine,
+ * which keeps them on the heap or, for engines holding more clients than fit the heap, next to the clients.
+ * <p>
+ * The repository is safe for concurrent use: reads never block, and the writes of one client are serialized by a lock
+ * of its id, so its index entries and changes follow its writes in order. The indexes and the change log are only 
+ * updated once the engine stored the write through {@link ClientStore#compute}: a write the engine fails, such as one 
+ * its log could not make durable, is neither visible in the indexes nor published.
+ * <p>
+ * Clients are stored as immutable {@link ClientRecord}s, one per version: a write stores a copy of the client it is 
+ * given and leaves the record it replaces untouched. Reads, searches and the export return the records themselves, so 
+ * a reader always sees whole versions of clients, however long it holds them, and neither waits for writers nor makes 
+ * them wait. A search only returns clients that still match once their record is read, as a client can change between 
+ * the index lookup and the read. Pages and the export are not a snapshot of the whole store at one instant: each 
+ * client is at the version current when it was read. Writes set the id and version on the client they are given, so 
+ * that client must be a {@link ClientDto#copy()} rather than a record.
+ * <p>
+ * idNumber and mobileNumber are unique: a write reserves its values in the unique indexes before it is applied and
+ * fails with a {@link UniqueConstraintException} when another client already holds one of them.
+ * <p>
+ * Every stored client carries a version, 1 when it is inserted and one more on each update, which lets a caller update
+ * a client only when it still is at the version the caller read. Versions are not persisted by the engines: clients 
+ * recovered after a restart start again at version 0. The {@link #epoch()} tells the versions of one run from those of
+ * another; a replica takes over the epoch of its leader along with its versions.
+ * <p>
+ * When the store is sharded, the firstName postings are partitioned over the same shards, so writers to different shards
+ * do not contend on the postings of a popular name. Searches by firstName then search every shard in parallel on the 
+ * common {@link ForkJoinPool} and merge their pages, unless that pool has a single thread: the shard postings are then 
+ * merged lazily on the calling thread, which visits fewer clients. The unique indexes span all shards.
+ * <p>
+ * Every insert, update and delete is published to the {@link ChangeLog} under the lock of the client id, so the changes
+ * of a client are logged in the order they were applied.
+ * <p>
+ * Operations are timed and the store size is published as the {@code client.store.size} gauge, see {@link RepoMetrics}.
  */
 @Component
 public class ClientRepo {
-   private final Map<Long, ClientDto> clientMap = new HashMap<>();
+   /**
+    * The expected version of an unconditional update.
+    */
+   public static final long ANY_VERSION = -1L;
+   private static final int LOCK_BITS = 10;
+
+   private final ClientStore store;
+   private final AtomicLong sequence = new AtomicLong();
+   private final UniqueIndex idNumberIndex;
+   private final UniqueIndex mobileNumberIndex;
+   private final NameSearch firstNameSearch = new NameSearch();
+   private final FieldIndex[] firstNameIndexes;
+   private final boolean parallelSearch;
+   private final RepoMetrics metrics;
+   private final ChangeLog changes;
+   private final ReentrantLock[] locks = new ReentrantLock[1 << LOCK_BITS];
+   private volatile String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+   public ClientRepo() {
+      this(new MemoryClientStore());
+   }
+
+   /**
+    * Without metrics: the meters of the repository are registered nowhere.
+    */
+   public ClientRepo(ClientStore store) {
+      this(store, new CompositeMeterRegistry(), new ChangeLog(ChangeLog.DEFAULT_CAPACITY));
+   }
+
+   /**
+    * Rebuilds the indexes and the id sequence from the clients already held by the store. The clients recovered by the
+    * store are not published as changes.
+    */
+   @Autowired
+   public ClientRepo(ClientStore store, MeterRegistry registry, ChangeLog changes) {
+      this.store = store;
+      this.changes = changes;
+      this.sequence.set(store.highestId());
+      this.metrics = new RepoMetrics(registry);
+      this.idNumberIndex = store.uniqueIndex("idNumber", ClientDto::getIdNumber, store::get);
+      this.mobileNumberIndex = store.uniqueIndex("mobileNumber", ClientDto::getMobileNumber, store::get);
+      this.firstNameIndexes = new FieldIndex[store.shards()];
+      FieldIndex.Listener firstNames = 
+            firstNameIndexes.length == 1 ? firstNameSearch : FieldIndex.shared(firstNameSearch);
+
+      for (int shard = 0; shard < firstNameIndexes.length; shard++) {
+         firstNameIndexes[shard] = store.fieldIndex(shard, ClientDto::getFirstName, firstNames);
+      }
+      this.parallelSearch = firstNameIndexes.length > 1 && ForkJoinPool.getCommonPoolParallelism() > 1;
+      Gauge.builder("client.store.size", this, ClientRepo::size)
+            .description("Number of stored clients")
+            .register(registry);
+
+      for (int index = 0; index < locks.length; index++) {
+         locks[index] = new ReentrantLock();
+      }
+
+      for (ClientDto client : store.values()) {
+         reserve(client, null);
+         commit(client, null);
+         firstNameIndex(client).add(client);
+         sequence.accumulateAndGet(client.getClient(), Math::max);
+      }
+   }
 
    public boolean delete(Long id) {
-      ClientDto client = clientMap.remove(id);
-      return client != null;
+      long start = System.nanoTime();
+      ReentrantLock lock = lock(id);
+
+      try {
+         ClientDto oldClient = store.get(id);
+         if (oldClient == null) return false;
+
+         write(id, oldClient, null);
+         return true;
+      } finally {
+         lock.unlock();
+         RepoMetrics.record(metrics.delete, start);
+      }
    }
 
    public ClientDto findById(Long id) {
-      return clientMap.get(id);
+      long start = System.nanoTime();
+      ClientDto client = store.get(id);
+      RepoMetrics.record(metrics.find, start);
+      return client;
    }
 
-   public void update(Long id, ClientDto client) {
-      clientMap.put(id, client);
+   /**
+    * Looks up many clients in one pass, timed as a single operation.
+    *
+    * @return per id in the given order the client, or null when no client with the id exists
+    */
+   public List<ClientDto> findAllById(List<Long> ids) {
+      long start = System.nanoTime();
+      List<ClientDto> clients = new ArrayList<>(ids.size());
+
+      for (Long id : ids) {
+         clients.add(store.get(id));
+      }
+
+      RepoMetrics.record(metrics.findAllById, start);
+      return clients;
    }
 
-   public Long insert(ClientDto client) {
-      Long id = nextId();
+   /**
+    * Replaces an existing client.
+    *
+    * @return false when no client with the given id exists (anymore)
+    * @throws UniqueConstraintException when another client holds the idNumber or mobileNumber
+    */
+   public boolean update(Long id, ClientDto client) {
+      return update(id, client, ANY_VERSION);
+   }
+
+   /**
+    * Replaces an existing client when it is at the expected version, checked atomically with the write.
+    *
+    * @param expectedVersion the version the stored client must be at, or {@link #ANY_VERSION}
+    * @return false when no client with the given id exists (anymore)
+    * @throws VersionConflictException when the stored client is at another version
+    * @throws UniqueConstraintException when another client holds the idNumber or mobileNumber
+    */
+   public boolean update(Long id, ClientDto client, long expectedVersion) {
+      long start = System.nanoTime();
       client.setClient(id);
-      clientMap.put(id, client);
-      return id;
+      ReentrantLock lock = lock(id);
+
+      try {
+         ClientDto oldClient = store.get(id);
+         if (oldClient == null) return false;
+         if (expectedVersion != ANY_VERSION && expectedVersion != oldClient.getVersion()) {
+            throw new VersionConflictException(id, oldClient.getVersion());
+         }
+
+         ClientRecord record = ClientRecord.of(client, oldClient.getVersion() + 1L);
+         write(id, oldClient, record);
+         client.setVersion(record.getVersion());
+         return true;
+      } finally {
+         lock.unlock();
+         RepoMetrics.record(metrics.update, start);
+      }
    }
-   
+
+   /**
+    * Stores a client as it is on the leader this instance replicates, at the version it has there, or deletes it. 
+    * <p>
+    * The leader already checked the unique values, so they are taken over from any client still holding them here. 
+    * That happens while the clients are loaded from a weakly consistent export of the leader; the changes replicated 
+    * next release them from the previous holder.
+    *
+    * @param client the client, null to delete it
+    */
+   public void replicate(Long id, ClientDto client) {
+      long start = System.nanoTime();
+
+      if (client == null) {
+         delete(id);
+         return;
+      }
+
+      client.setClient(id);
+      ClientRecord record = ClientRecord.of(client, client.getVersion());
+      ReentrantLock lock = lock(id);
+
+      try {
+         ClientDto oldClient = store.get(id);
+         store.compute(id, (key, stored) -> record);
+         idNumberIndex.take(record);
+         mobileNumberIndex.take(record);
+         if (oldClient != null) {
+            release(oldClient, record);
+         }
+         applied(id, oldClient, record);
+      } finally {
+         lock.unlock();
+      }
+      sequence.accumulateAndGet(id, Math::max);
+
+      RepoMetrics.record(metrics.replicate, start);
+   }
+
+   /**
+    * @throws UniqueConstraintException when another client holds the idNumber or mobileNumber
+    */
+   public Long insert(ClientDto client) {
+      long start = System.nanoTime();
+
+      try {
+         Long id = nextId();
+         store(id, client);
+         return id;
+      } finally {
+         RepoMetrics.record(metrics.insert, start);
+      }
+   }
+
+   /**
+    * Inserts the clients in one pass, taking their ids from the sequence in a single step. Clients are stored in list 
+    * order, so a client that repeats a unique value of an earlier client in the same list is rejected like any other 
+    * duplicate.
+    *
+    * @return per client the unique field that was already taken, or null when the client was stored
+    */
+   public List<String> insertAll(List<ClientDto> clients) {
+      long start = System.nanoTime();
+      long firstId = sequence.getAndAdd(clients.size()) + 1L;
+      List<String> conflicts = new ArrayList<>(clients.size());
+
+      for (int index = 0; index < clients.size(); index++) {
+         ClientDto client = clients.get(index);
+
+         try {
+            store(firstId + index, client);
+            conflicts.add(null);
+         } catch (UniqueConstraintException error) {
+            client.setClient(null);
+            conflicts.add(error.getField());
+         }
+      }
+
+      RepoMetrics.record(metrics.insertAll, start);
+      return conflicts;
+   }
+
+   /**
+    * Finds the clients matching any one of the given field values, ordered by client id.
+    */
    public List<ClientDto> search(String idNumber, String firstName, String mobileNumber) {
-      List<ClientDto> resultList = new ArrayList<>();
-      
-      for (ClientDto client : clientMap.values()) {
-         if (Objects.equals(idNumber, client.getIdNumber())
-               || Objects.equals(firstName, client.getFirstName())
-               || (mobileNumber != null && Objects.equals(mobileNumber, client.getMobileNumber()))) {
-            resultList.add(client);
+      return search(idNumber, firstName, mobileNumber, 0L, Integer.MAX_VALUE);
+   }
+
+   /**
+    * Finds one page of the clients matching any one of the given field values, ordered by client id.
+    * <p>
+    * The index postings are merged lazily, so only the clients on the page are ever visited. On a sharded store, a 
+    * search by firstName may instead search a page in every shard in parallel and keep the lowest ids of their union.
+    *
+    * @param after the client id after which the page starts
+    * @param limit the maximum number of clients on the page
+    */
+   public List<ClientDto> search(String idNumber, String firstName, String mobileNumber, long after, int limit) {
+      long start = System.nanoTime();
+      Page page;
+
+      if (!parallelSearch || firstName == null) { //the unique indexes are not sharded
+         page = searchShard(-1, idNumber, firstName, mobileNumber, after, limit);
+      } else {
+         List<ForkJoinTask<Page>> shardPages = new ArrayList<>(firstNameIndexes.length);
+
+         for (int shard = 0; shard < firstNameIndexes.length; shard++) {
+            int index = shard;
+            shardPages.add(ForkJoinTask.adapt(() -> searchShard(index, idNumber, firstName, mobileNumber, after, limit)));
          }
+
+         ForkJoinTask.invokeAll(shardPages);
+         page = merge(shardPages, limit);
       }
-      
+
+      metrics.exactScanned.record(page.scanned);
+      RepoMetrics.record(metrics.search, start);
+      return page.clients;
+   }
+
+   /**
+    * Finds one page of the clients whose firstName starts with the prefix, ignoring case. Clients are ranked by 
+    * firstName, alphabetically with shorter names before their completions, and then by client id.
+    *
+    * @param offset the number of ranked clients before the page
+    */
+   public List<ClientDto> searchByFirstNamePrefix(String prefix, int offset, int limit) {
+      long start = System.nanoTime();
+      List<ClientDto> resultList = rankedPage(firstNameSearch.withPrefix(prefix), offset, limit, metrics.prefixScanned);
+      RepoMetrics.record(metrics.search, start);
       return resultList;
    }
-   
-   public <T> boolean fieldExists(Function<ClientDto, T> field, T value) {
-      return clientMap.values().stream().map(field).filter(Objects::nonNull).anyMatch(value::equals);
+
+   /**
+    * Finds one page of the clients whose firstName is similar to the given one, tolerating typos. Clients are ranked by 
+    * the similarity of their firstName, and then by client id.
+    *
+    * @param offset the number of ranked clients before the page
+    */
+   public List<ClientDto> searchByFirstNameSimilarTo(String firstName, int offset, int limit) {
+      long start = System.nanoTime();
+      List<ClientDto> resultList = 
+            rankedPage(firstNameSearch.similarTo(firstName).iterator(), offset, limit, metrics.fuzzyScanned);
+      RepoMetrics.record(metrics.search, start);
+      return resultList;
+   }
+
+   /**
+    * Returns a live view of all clients that is iterated lazily and never blocks writers. The iteration is weakly 
+    * consistent: it sees every client that existed when it started and was not deleted before it was reached, and may 
+    * or may not see later writes.
+    */
+   public Iterable<ClientDto> findAll() {
+      return store.values();
+   }
+
+   public boolean existsByIdNumber(String idNumber) {
+      long start = System.nanoTime();
+      boolean exists = idNumberIndex.contains(idNumber);
+      RepoMetrics.record(metrics.exists, start);
+      return exists;
+   }
+
+   public boolean existsByMobileNumber(String mobileNumber) {
+      long start = System.nanoTime();
+      boolean exists = mobileNumberIndex.contains(mobileNumber);
+      RepoMetrics.record(metrics.exists, start);
+      return exists;
+   }
+
+   public int size() {
+      return store.size();
+   }
+
+   public ChangeLog changes() {
+      return changes;
+   }
+
+   /**
+    * @return the epoch the versions of the clients count in: the start of this instance, or the epoch of the leader
+    * once the clients were replicated from it
+    */
+   public String epoch() {
+      return epoch;
+   }
+
+   /**
+    * Takes over the epoch of the leader this instance replicates, once it holds the versions of the leader.
+    */
+   public void replicateEpoch(String epoch) {
+      this.epoch = epoch;
    }
 
    Long nextId() {
-      return clientMap.keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1L;
+      return sequence.incrementAndGet();
+   }
+
+   /**
+    * Searches one page of the clients of a shard, or of all shards when the shard is -1.
+    */
+   private Page searchShard(int shard, String idNumber, String firstName, String mobileNumber, long after, int limit) {
+      MergedIds ids = new MergedIds(List.of(
+            inShard(idNumberIndex.idsAfter(idNumber, after), shard),
+            shard < 0 ? firstNameIdsAfter(firstName, after) : firstNameIndexes[shard].idsAfter(firstName, after),
+            inShard(mobileNumberIndex.idsAfter(mobileNumber, after), shard)));
+      List<ClientDto> clients = new ArrayList<>(Math.min(limit, 16));
+
+      while (clients.size() < limit && ids.hasNext()) {
+         ClientDto client = store.get(ids.next());
+
+         if (matches(client, idNumber, firstName, mobileNumber)) { //skip clients deleted or changed since the lookup
+            clients.add(client);
+         }
+      }
+
+      return new Page(clients, ids.scanned());
+   }
+
+   /**
+    * @return whether the client holds any of the given field values
+    */
+   private static boolean matches(ClientDto client, String idNumber, String firstName, String mobileNumber) {
+      return client != null && (idNumber != null && idNumber.equals(client.getIdNumber())
+            || firstName != null && firstName.equals(client.getFirstName())
+            || mobileNumber != null && mobileNumber.equals(client.getMobileNumber()));
+   }
+
+   /**
+    * Keeps the page of the lowest client ids of the shard pages.
+    */
+   private static Page merge(List<ForkJoinTask<Page>> shardPages, int limit) {
+      List<ClientDto> clients = new ArrayList<>();
+      int scanned = 0;
+
+      for (ForkJoinTask<Page> shardPage : shardPages) {
+         Page page = shardPage.join();
+         clients.addAll(page.clients);
+         scanned += page.scanned;
+      }
+
+      clients.sort(Comparator.comparing(ClientDto::getClient));
+      return new Page(clients.size() > limit ? new ArrayList<>(clients.subList(0, limit)) : clients, scanned);
+   }
+
+   /**
+    * Keeps the ids of a unique index that belong to the shard.
+    */
+   private Iterator<Long> inShard(Iterator<Long> ids, int shard) {
+      if (shard < 0 || !ids.hasNext()) return ids;
+
+      List<Long> inShard = new ArrayList<>(1); //unique indexes hold about one id per value
+      ids.forEachRemaining(id -> {
+         if (shardOf(id) == shard) {
+            inShard.add(id);
+         }
+      });
+      return inShard.iterator();
+   }
+
+   /**
+    * @return the ids holding the firstName in all shards that are greater than {@code after}, in ascending order
+    */
+   private Iterator<Long> firstNameIdsAfter(String firstName, long after) {
+      if (firstNameIndexes.length == 1) return firstNameIndexes[0].idsAfter(firstName, after);
+
+      List<Iterator<Long>> shards = new ArrayList<>(firstNameIndexes.length);
+
+      for (FieldIndex index : firstNameIndexes) {
+         shards.add(index.idsAfter(firstName, after));
+      }
+
+      return new MergedIds(shards);
+   }
+
+   private FieldIndex firstNameIndex(ClientDto client) {
+      return firstNameIndexes[shardOf(client.getClient())];
+   }
+
+   private int shardOf(Long id) {
+      return ShardedClientStore.shardOf(id, firstNameIndexes.length);
+   }
+
+   /**
+    * Expands the ranked names to the clients holding them until the page is filled.
+    */
+   private List<ClientDto> rankedPage(Iterator<String> names, int offset, int limit, DistributionSummary scanned) {
+      List<ClientDto> resultList = new ArrayList<>(Math.min(limit, 16));
+      int skipped = 0;
+      int visited = 0;
+
+      while (names.hasNext() && resultList.size() < limit) {
+         String name = names.next();
+         Iterator<Long> ids = firstNameIdsAfter(name, 0L);
+         visited++;
+
+         while (ids.hasNext() && resultList.size() < limit) {
+            Long id = ids.next();
+            visited++;
+
+            if (skipped < offset) {
+               skipped++;
+               continue;
+            }
+
+            ClientDto client = store.get(id);
+
+            if (client != null && name.equals(client.getFirstName())) { //skip clients deleted or renamed since
+               resultList.add(client);
+            }
+         }
+      }
+
+      scanned.record(visited);
+      return resultList;
+   }
+
+   private void store(Long id, ClientDto client) {
+      client.setClient(id);
+      client.setVersion(1L);
+      ClientRecord record = ClientRecord.of(client, 1L);
+      ReentrantLock lock = lock(id);
+
+      try {
+         write(id, null, record);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Stores the record in place of the old client of the id, either of them null for an insert or a delete. Called
+    * under the lock of the id.
+    * <p>
+    * The unique values the record takes over are reserved before the store is written, and released again when the 
+    * write fails. They are only committed, the indexes only let go of the old client, and the change is only published,
+    * once the store holds the record, so a write the store failed leaves no trace.
+    *
+    * @throws UniqueConstraintException when another client holds the idNumber or mobileNumber of the record
+    */
+   private void write(Long id, ClientDto oldClient, ClientRecord record) {
+      if (record != null) {
+         reserve(record, oldClient);
+      }
+
+      try {
+         store.compute(id, (key, stored) -> record);
+      } catch (RuntimeException | Error e) {
+         if (record != null) {
+            release(record, oldClient);
+         }
+         throw e;
+      }
+
+      if (record != null) {
+         commit(record, oldClient);
+      }
+      if (oldClient != null) {
+         release(oldClient, record);
+      }
+      applied(id, oldClient, record);
+   }
+
+   /**
+    * Moves the firstName posting of the id from the old client to the new one and publishes the change, once the store 
+    * holds the new client. Called under the lock of the id.
+    */
+   private void applied(Long id, ClientDto oldClient, ClientDto client) {
+      if (oldClient == null) {
+         firstNameIndex(client).add(client);
+      } else if (client == null) {
+         firstNameIndex(oldClient).remove(oldClient);
+      } else if (!Objects.equals(oldClient.getFirstName(), client.getFirstName())) {
+         firstNameIndex(client).remove(oldClient);
+         firstNameIndex(client).add(client);
+      }
+
+      ClientChangeDto.Type type = oldClient == null ? ClientChangeDto.Type.CREATED 
+            : client == null ? ClientChangeDto.Type.DELETED : ClientChangeDto.Type.UPDATED;
+      changes.publish(type, id, client, epoch);
+   }
+
+   /**
+    * Reserves the unique field values the client holds and the old client of its id, which may be null, does not, 
+    * undoing its own reservations when one of them is taken.
+    */
+   private void reserve(ClientDto client, ClientDto oldClient) {
+      boolean mobileNumberReserved = 
+            !holds(oldClient, client, ClientDto::getMobileNumber) && mobileNumberIndex.reserve(client);
+
+      try {
+         if (!holds(oldClient, client, ClientDto::getIdNumber)) {
+            idNumberIndex.reserve(client);
+         }
+      } catch (UniqueConstraintException error) {
+         if (mobileNumberReserved) {
+            mobileNumberIndex.release(client);
+         }
+         throw error;
+      }
+   }
+
+   /**
+    * Commits the unique field values the client reserved, once the store holds it.
+    */
+   private void commit(ClientDto client, ClientDto oldClient) {
+      if (!holds(oldClient, client, ClientDto::getMobileNumber)) {
+         mobileNumberIndex.commit(client);
+      }
+      if (!holds(oldClient, client, ClientDto::getIdNumber)) {
+         idNumberIndex.commit(client);
+      }
+   }
+
+   /**
+    * Releases the unique field values the client holds and the other client of its id, which may be null, does not.
+    */
+   private void release(ClientDto client, ClientDto kept) {
+      if (!holds(kept, client, ClientDto::getMobileNumber)) {
+         mobileNumberIndex.release(client);
+      }
+      if (!holds(kept, client, ClientDto::getIdNumber)) {
+         idNumberIndex.release(client);
+      }
+   }
+
+   /**
+    * @return whether the holder, which may be null, holds the same value of the field as the client
+    */
+   private static boolean holds(ClientDto holder, ClientDto client, Function<ClientDto, String> field) {
+      return holder != null && Objects.equals(field.apply(holder), field.apply(client));
+   }
+
+   private ReentrantLock lock(Long id) {
+      ReentrantLock lock = locks[(int) (id ^ id >>> 32) & (locks.length - 1)];
+      lock.lock();
+      return lock;
+   }
+
+   private static final class Page {
+      final List<ClientDto> clients;
+      final int scanned;
+
+      Page(List<ClientDto> clients, int scanned) {
+         this.clients = clients;
+         this.scanned = scanned;
+      }
    }
 }
@@ -0,0 +1,69 @@
+package com.demo.repository;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Primary storage engine behind {@link ClientRepo}, holding the clients by id.
+ * <p>
+ * Implementations must be safe for concurrent use. {@link #compute} is the only write operation and follows the 
+ * contract of {@link java.util.concurrent.ConcurrentMap#compute}: the remapping function is applied atomically per id.
+ * The repository maintains its indexes once compute returned, so an engine that cannot store a write throws instead.
+ * The engine also creates those indexes, which engines holding more clients than fit the heap keep next to them.
+ * <p>
+ * The repository only stores immutable {@link ClientRecord}s; engines that do not keep the record they are given 
+ * return new records from their reads.
+ */
+public interface ClientStore {
+   ClientDto get(Long id);
+
+   /**
+    * Atomically replaces the client stored under the id with the result of the remapping function, removing it when 
+    * the function returns null.
+    *
+    * @return the client stored under the id afterwards, or null when there is none
+    */
+   ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping);
+
+   /**
+    * Returns a weakly consistent view of all clients that never blocks writers.
+    */
+   Iterable<ClientDto> values();
+
+   int size();
+
+   /**
+    * Returns the highest client id the engine has ever stored, including deleted clients, so the id sequence does not 
+    * hand out ids of deleted clients again after a restart. Engines that start empty on every restart return 0.
+    */
+   default long highestId() {
+      return 0L;
+   }
+
+   /**
+    * Returns the number of shards the engine partitions the clients into by id, see {@link ShardedClientStore}.
+    */
+   default int shards() {
+      return 1;
+   }
+
+   /**
+    * Creates the index of a field whose values may be held by one client only, on the heap unless the engine keeps its
+    * indexes next to the clients.
+    *
+    * @param reader reads the client of an id, for indexes that only keep a hash of the values
+    */
+   default UniqueIndex uniqueIndex(String name, Function<ClientDto, String> field, Function<Long, ClientDto> reader) {
+      return new MemoryUniqueIndex(name, field);
+   }
+
+   /**
+    * Creates the index of a field over the clients of one shard, see {@link #shards()}, on the heap unless the engine 
+    * keeps its indexes next to the clients.
+    */
+   default FieldIndex fieldIndex(int shard, Function<ClientDto, String> field, FieldIndex.Listener listener) {
+      return new MemoryFieldIndex(field, listener);
+   }
+}
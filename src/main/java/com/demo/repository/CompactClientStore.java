@@ -0,0 +1,425 @@
+package com.demo.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Memory-compact in-memory client storage that keeps clients as primitive columns instead of objects.
+ * <p>
+ * Clients are partitioned by id over segments, each an open-addressing hash table keyed by the primitive client id
+ * with one array per field (struct of arrays):
+ * <ul>
+ * <li>idNumber and mobileNumber as longs plus their digit count, which keeps leading zeros,</li>
+ * <li>firstName as a code into a shared {@link NameTable}, since first names repeat a lot,</li>
+ * <li>lastName and address, and an idNumber or mobileNumber that is not purely digits, packed as UTF-8 in one byte
+ * array,</li>
+ * <li>the version as a long.</li>
+ * </ul>
+ * A {@link ClientDto} is only created when a client is read. Writes lock the segment of the client id; reads are
+ * optimistic and only fall back to the segment read lock when they overlap a write.
+ */
+public class CompactClientStore implements ClientStore {
+   static final int SEGMENT_BITS = 6;
+   static final int MAX_DIGITS = 18;
+
+   private static final byte NULL = 0;
+   private static final byte TEXT = -1;
+
+   private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+   private final NameTable firstNames = new NameTable();
+   private final AtomicInteger size = new AtomicInteger();
+
+   public CompactClientStore() {
+      for (int index = 0; index < segments.length; index++) {
+         segments[index] = new Segment();
+      }
+   }
+
+   @Override
+   public ClientDto get(Long id) {
+      Segment segment = segment(id);
+      long stamp = segment.lock.tryOptimisticRead();
+
+      if (stamp != 0) {
+         try {
+            ClientDto client = segment.read(id);
+            if (segment.lock.validate(stamp)) return client;
+         } catch (RuntimeException e) { //torn read of a concurrent write, retried below
+         }
+      }
+
+      stamp = segment.lock.readLock();
+      try {
+         return segment.read(id);
+      } finally {
+         segment.lock.unlockRead(stamp);
+      }
+   }
+
+   @Override
+   public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+      Segment segment = segment(id);
+      long stamp = segment.lock.writeLock();
+
+      try {
+         int slot = segment.find(id);
+         ClientDto oldClient = slot < 0 ? null : segment.decode(slot);
+         ClientDto client = remapping.apply(id, oldClient);
+
+         if (client != null) {
+            if (segment.write(id, client)) {
+               size.incrementAndGet();
+            }
+         } else if (oldClient != null) {
+            segment.remove(segment.find(id));
+            size.decrementAndGet();
+         }
+
+         return client;
+      } finally {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Iterates segment by segment, copying the ids of one segment at a time and reading each client when reached.
+    */
+   @Override
+   public Iterable<ClientDto> values() {
+      return () -> new Iterator<>() {
+         private int segmentIndex;
+         private long[] ids = new long[0];
+         private int idIndex;
+         private ClientDto next;
+
+         @Override
+         public boolean hasNext() {
+            while (next == null) {
+               if (idIndex < ids.length) {
+                  next = get(ids[idIndex++]);
+               } else if (segmentIndex < segments.length) {
+                  ids = segments[segmentIndex++].ids();
+                  idIndex = 0;
+               } else {
+                  return false;
+               }
+            }
+            return true;
+         }
+
+         @Override
+         public ClientDto next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            ClientDto client = next;
+            next = null;
+            return client;
+         }
+      };
+   }
+
+   @Override
+   public int size() {
+      return size.get();
+   }
+
+   private Segment segment(long id) {
+      return segments[(int) (hash(id) >>> (Long.SIZE - SEGMENT_BITS))];
+   }
+
+   private static long hash(long id) {
+      return id * 0x9E3779B97F4A7C15L;
+   }
+
+   /**
+    * Number of digits when the value is a non-empty digit string that fits a long, otherwise {@link #TEXT}.
+    */
+   private static byte digits(String value) {
+      if (value == null) return NULL;
+      if (value.isEmpty() || value.length() > MAX_DIGITS) return TEXT;
+
+      for (int index = 0; index < value.length(); index++) {
+         char digit = value.charAt(index);
+         if (digit < '0' || digit > '9') return TEXT;
+      }
+
+      return (byte) value.length();
+   }
+
+   private static String number(long value, byte digits) {
+      if (digits == NULL || digits == TEXT) return null;
+
+      String text = Long.toString(value);
+      if (text.length() == digits) return text;
+
+      char[] padded = new char[digits];
+      Arrays.fill(padded, 0, digits - text.length(), '0');
+      text.getChars(0, text.length(), padded, digits - text.length());
+      return new String(padded);
+   }
+
+   /**
+    * Packs the texts as a varint of (byte length + 1), 0 for null, followed by the UTF-8 bytes.
+    */
+   private static byte[] pack(String... texts) {
+      byte[][] encoded = new byte[texts.length][];
+      int length = 0;
+      boolean empty = true;
+
+      for (int index = 0; index < texts.length; index++) {
+         if (texts[index] == null) {
+            length++;
+            continue;
+         }
+
+         encoded[index] = texts[index].getBytes(StandardCharsets.UTF_8);
+         length += varintSize(encoded[index].length + 1) + encoded[index].length;
+         empty = false;
+      }
+
+      if (empty) return null;
+
+      byte[] packed = new byte[length];
+      int position = 0;
+
+      for (byte[] text : encoded) {
+         int prefix = text == null ? 0 : text.length + 1;
+
+         while ((prefix & ~0x7F) != 0) {
+            packed[position++] = (byte) ((prefix & 0x7F) | 0x80);
+            prefix >>>= 7;
+         }
+         packed[position++] = (byte) prefix;
+
+         if (text != null) {
+            System.arraycopy(text, 0, packed, position, text.length);
+            position += text.length;
+         }
+      }
+
+      return packed;
+   }
+
+   private static String[] unpack(byte[] packed, int count) {
+      String[] texts = new String[count];
+      if (packed == null) return texts;
+
+      int position = 0;
+
+      for (int index = 0; index < count; index++) {
+         int prefix = 0;
+         int shift = 0;
+         byte part;
+
+         do {
+            part = packed[position++];
+            prefix |= (part & 0x7F) << shift;
+            shift += 7;
+         } while (part < 0);
+
+         if (prefix > 0) {
+            texts[index] = new String(packed, position, prefix - 1, StandardCharsets.UTF_8);
+            position += prefix - 1;
+         }
+      }
+
+      return texts;
+   }
+
+   private static int varintSize(int value) {
+      int size = 1;
+
+      while ((value & ~0x7F) != 0) {
+         value >>>= 7;
+         size++;
+      }
+
+      return size;
+   }
+
+   /**
+    * Linear probing hash table with backward-shift deletion, so no tombstones are needed. Id 0 marks a free slot.
+    */
+   private final class Segment {
+      private static final int PACKED_FIELDS = 4; //lastName, address, idNumber text, mobileNumber text
+
+      final StampedLock lock = new StampedLock();
+
+      long[] keys;
+      long[] idNumbers;
+      long[] mobileNumbers;
+      long[] versions;
+      byte[] idNumberDigits;
+      byte[] mobileNumberDigits;
+      int[] firstNameCodes;
+      byte[][] packed;
+      int count;
+
+      Segment() {
+         allocate(16);
+      }
+
+      int find(long id) {
+         long[] table = keys;
+         int mask = table.length - 1;
+
+         for (int slot = (int) hash(id) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (table[slot] == id) return slot;
+         }
+
+         return -1;
+      }
+
+      ClientDto read(long id) {
+         int slot = find(id);
+         return slot < 0 ? null : decode(slot);
+      }
+
+      ClientDto decode(int slot) {
+         String[] texts = unpack(packed[slot], PACKED_FIELDS);
+         byte idDigits = idNumberDigits[slot];
+         byte mobileDigits = mobileNumberDigits[slot];
+
+         return new ClientRecord(keys[slot], firstNames.name(firstNameCodes[slot]), texts[0],
+               mobileDigits == TEXT ? texts[3] : number(mobileNumbers[slot], mobileDigits),
+               idDigits == TEXT ? texts[2] : number(idNumbers[slot], idDigits), texts[1], versions[slot]);
+      }
+
+      /**
+       * @return true when the id was not stored yet
+       */
+      boolean write(long id, ClientDto client) {
+         int slot = find(id);
+         boolean added = slot < 0;
+
+         if (added) {
+            if ((count + 1) * 4 > keys.length * 3) {
+               resize(keys.length * 2);
+            }
+
+            slot = freeSlot(id);
+            count++;
+         }
+
+         byte idDigits = digits(client.getIdNumber());
+         byte mobileDigits = digits(client.getMobileNumber());
+
+         idNumbers[slot] = idDigits > 0 ? Long.parseLong(client.getIdNumber()) : 0L;
+         mobileNumbers[slot] = mobileDigits > 0 ? Long.parseLong(client.getMobileNumber()) : 0L;
+         versions[slot] = client.getVersion();
+         idNumberDigits[slot] = idDigits;
+         mobileNumberDigits[slot] = mobileDigits;
+         firstNameCodes[slot] = firstNames.intern(client.getFirstName());
+         packed[slot] = pack(client.getLastName(), client.getAddress(),
+               idDigits == TEXT ? client.getIdNumber() : null,
+               mobileDigits == TEXT ? client.getMobileNumber() : null);
+         keys[slot] = id; //last, so an optimistic reader never finds the id before its fields
+         return added;
+      }
+
+      void remove(int slot) {
+         int mask = keys.length - 1;
+         int free = slot;
+
+         for (int next = (free + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = (int) hash(keys[next]) & mask;
+            boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+
+            if (movable) {
+               move(next, free);
+               free = next;
+            }
+         }
+
+         keys[free] = 0;
+         packed[free] = null;
+         count--;
+      }
+
+      long[] ids() {
+         long stamp = lock.readLock();
+
+         try {
+            long[] ids = new long[count];
+            int index = 0;
+
+            for (long key : keys) {
+               if (key != 0) {
+                  ids[index++] = key;
+               }
+            }
+
+            return ids;
+         } finally {
+            lock.unlockRead(stamp);
+         }
+      }
+
+      private int freeSlot(long id) {
+         int mask = keys.length - 1;
+         int slot = (int) hash(id) & mask;
+
+         while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+
+         return slot;
+      }
+
+      private void move(int from, int to) {
+         idNumbers[to] = idNumbers[from];
+         mobileNumbers[to] = mobileNumbers[from];
+         versions[to] = versions[from];
+         idNumberDigits[to] = idNumberDigits[from];
+         mobileNumberDigits[to] = mobileNumberDigits[from];
+         firstNameCodes[to] = firstNameCodes[from];
+         packed[to] = packed[from];
+         keys[to] = keys[from];
+      }
+
+      private void resize(int capacity) {
+         long[] oldKeys = keys;
+         long[] oldIdNumbers = idNumbers;
+         long[] oldMobileNumbers = mobileNumbers;
+         long[] oldVersions = versions;
+         byte[] oldIdNumberDigits = idNumberDigits;
+         byte[] oldMobileNumberDigits = mobileNumberDigits;
+         int[] oldFirstNameCodes = firstNameCodes;
+         byte[][] oldPacked = packed;
+
+         allocate(capacity);
+
+         for (int from = 0; from < oldKeys.length; from++) {
+            if (oldKeys[from] == 0) continue;
+
+            int to = freeSlot(oldKeys[from]);
+            idNumbers[to] = oldIdNumbers[from];
+            mobileNumbers[to] = oldMobileNumbers[from];
+            versions[to] = oldVersions[from];
+            idNumberDigits[to] = oldIdNumberDigits[from];
+            mobileNumberDigits[to] = oldMobileNumberDigits[from];
+            firstNameCodes[to] = oldFirstNameCodes[from];
+            packed[to] = oldPacked[from];
+            keys[to] = oldKeys[from];
+         }
+      }
+
+      private void allocate(int capacity) {
+         keys = new long[capacity];
+         idNumbers = new long[capacity];
+         mobileNumbers = new long[capacity];
+         versions = new long[capacity];
+         idNumberDigits = new byte[capacity];
+         mobileNumberDigits = new byte[capacity];
+         firstNameCodes = new int[capacity];
+         packed = new byte[capacity][];
+      }
+   }
+}
@@ -0,0 +1,64 @@
+package com.demo.repository;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Secondary index mapping a client field value to the ids of the clients holding that value, created by the
+ * {@link ClientStore} so engines holding more clients than fit the heap can keep it next to the clients.
+ */
+interface FieldIndex {
+   /**
+    * Follows the distinct values held by the index. Called while the value is locked, so the calls for one value are
+    * never concurrent and always alternate.
+    */
+   interface Listener {
+      void added(String value);
+
+      void removed(String value);
+   }
+
+   /**
+    * Lets the indexes of one field over several shards feed a single listener: a value is only added by the first index
+    * holding it and removed by the last, and the calls for one value stay serialized.
+    */
+   static Listener shared(Listener listener) {
+      Map<String, Integer> holders = new ConcurrentHashMap<>();
+
+      return new Listener() {
+         @Override
+         public void added(String value) {
+            holders.compute(value, (key, count) -> {
+               if (count != null) return count + 1;
+
+               listener.added(key);
+               return 1;
+            });
+         }
+
+         @Override
+         public void removed(String value) {
+            holders.computeIfPresent(value, (key, count) -> {
+               if (count > 1) return count - 1;
+
+               listener.removed(key);
+               return null;
+            });
+         }
+      };
+   }
+
+   void add(ClientDto client);
+
+   void remove(ClientDto client);
+
+   /**
+    * @return the ids holding the value that are greater than {@code after}, in ascending order
+    */
+   Iterator<Long> idsAfter(String value, long after);
+
+   boolean contains(String value);
+}
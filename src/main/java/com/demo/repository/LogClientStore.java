@@ -0,0 +1,342 @@
+package com.demo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.demo.dto.ClientDto;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable client storage: an in-memory engine whose every mutation is first made durable in a {@link WriteAheadLog}.
+ * <p>
+ * A write returns once its log record is fsynced; concurrent writes to other ids share fsyncs through group commit. The
+ * write is only published to the delegate once its record is durable, so a write the log fails is never seen, while
+ * the lock of the id keeps the records of one id in the order of its writes. The log is periodically compacted into a
+ * snapshot holding one record per live client, after which the segments it covers are deleted. On startup the latest
+ * snapshot is read through memory-mapped I/O and only the log segments written since are replayed.
+ */
+@Slf4j
+public class LogClientStore implements ClientStore, Closeable {
+   private static final Pattern SEGMENT = Pattern.compile("wal-(\\d+)\\.log");
+   private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.dat");
+   private static final int LOCK_BITS = 6;
+
+   private final ClientStore delegate;
+   private final Path dir;
+   private final WriteAheadLog wal;
+   private final ScheduledExecutorService snapshots;
+   private final AtomicLong highestId = new AtomicLong();
+   private final ReentrantLock[] locks = new ReentrantLock[1 << LOCK_BITS];
+
+   /**
+    * Recovers the clients found in the directory into the delegate and starts logging to a new segment.
+    *
+    * @param snapshotInterval the time between snapshots, zero or negative to only snapshot on close
+    */
+   public LogClientStore(ClientStore delegate, Path dir, Duration snapshotInterval) throws IOException {
+      this.delegate = delegate;
+      this.dir = Files.createDirectories(dir);
+      for (int index = 0; index < locks.length; index++) {
+         locks[index] = new ReentrantLock();
+      }
+      this.wal = new WriteAheadLog(dir, recover() + 1);
+
+      if (snapshotInterval.isZero() || snapshotInterval.isNegative()) {
+         this.snapshots = null;
+         return;
+      }
+
+      this.snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+         Thread thread = new Thread(task, "client-snapshot");
+         thread.setDaemon(true);
+         return thread;
+      });
+      long interval = snapshotInterval.toMillis();
+      this.snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+   }
+
+   @Override
+   public ClientDto get(Long id) {
+      return delegate.get(id);
+   }
+
+   /**
+    * Applies the remapping under the lock of the id and publishes its result to the delegate once its log record is
+    * durable. The lock is held while the record is made durable, so the record and the publication of a write are
+    * never split by a snapshot rotation, see {@link #snapshot()}.
+    *
+    * @throws IllegalStateException when the log failed or is closed, in which case the write is not applied
+    * @throws java.io.UncheckedIOException when the log fails to make the record durable, nor is the write applied then
+    */
+   @Override
+   public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+      ReentrantLock lock = lock(id);
+
+      lock.lock();
+      try {
+         ClientDto oldClient = delegate.get(id);
+         ClientDto client = remapping.apply(id, oldClient);
+         long ticket = 0;
+
+         if (client != null) {
+            highestId.accumulateAndGet(id, Math::max);
+            ticket = wal.append(WriteAheadLog.put(client));
+         } else if (oldClient != null) {
+            ticket = wal.append(WriteAheadLog.delete(id));
+         }
+         if (ticket > 0) {
+            wal.awaitDurable(ticket);
+         }
+
+         return delegate.compute(id, (key, stored) -> client);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   @Override
+   public Iterable<ClientDto> values() {
+      return delegate.values();
+   }
+
+   @Override
+   public int size() {
+      return delegate.size();
+   }
+
+   @Override
+   public long highestId() {
+      return highestId.get();
+   }
+
+   @Override
+   public int shards() {
+      return delegate.shards();
+   }
+
+   @Override
+   public UniqueIndex uniqueIndex(String name, Function<ClientDto, String> field, Function<Long, ClientDto> reader) {
+      return delegate.uniqueIndex(name, field, reader);
+   }
+
+   @Override
+   public FieldIndex fieldIndex(int shard, Function<ClientDto, String> field, FieldIndex.Listener listener) {
+      return delegate.fieldIndex(shard, field, listener);
+   }
+
+   /**
+    * Compacts the log into a snapshot of the live clients.
+    * <p>
+    * The log is rotated first, so the snapshot covers every segment before the new one. The rotation holds every lock
+    * of the ids, and a write appends and publishes under its lock, so the writes of the records before the rotation are
+    * all seen by the snapshot. Writes made while the snapshot is taken may or may not be in it, but are always in the 
+    * new segment, and replaying that segment over the snapshot yields the same clients since every record holds the 
+    * full client.
+    */
+   public synchronized void snapshot() throws IOException {
+      long segment = rotate();
+      Path snapshot = snapshotPath(segment);
+      Path partial = dir.resolve(snapshot.getFileName() + ".tmp");
+
+      try (FileChannel file = FileChannel.open(partial, 
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+         ByteBuffer buffer = ByteBuffer.allocate(WriteAheadLog.BUFFER_BYTES);
+         buffer.put(WriteAheadLog.sequence(highestId.get()));
+
+         for (ClientDto client : delegate.values()) {
+            byte[] record = WriteAheadLog.put(client);
+
+            if (buffer.remaining() < record.length) {
+               flush(file, buffer);
+            }
+            if (record.length > buffer.capacity()) {
+               write(file, ByteBuffer.wrap(record));
+            } else {
+               buffer.put(record);
+            }
+         }
+
+         flush(file, buffer);
+         file.force(true);
+      }
+
+      Files.move(partial, snapshot, StandardCopyOption.ATOMIC_MOVE);
+      deleteBefore(segment);
+   }
+
+   /**
+    * Takes a final snapshot, so the next startup only has to read that snapshot.
+    */
+   @Override
+   public void close() throws IOException {
+      if (snapshots != null) {
+         snapshots.shutdownNow();
+      }
+
+      snapshot();
+      wal.close();
+   }
+
+   /**
+    * Stops logging without a final snapshot, leaving the directory as a crash would.
+    */
+   void closeLog() throws IOException {
+      if (snapshots != null) {
+         snapshots.shutdownNow();
+      }
+
+      wal.close();
+   }
+
+   long syncCount() {
+      return wal.syncCount();
+   }
+
+   /**
+    * Rotates the log while holding every lock of the ids, in index order, so no write is between its append and its
+    * publication.
+    */
+   private long rotate() throws IOException {
+      int locked = 0;
+
+      try {
+         for (; locked < locks.length; locked++) {
+            locks[locked].lock();
+         }
+         return wal.rotate();
+      } finally {
+         while (locked > 0) {
+            locks[--locked].unlock();
+         }
+      }
+   }
+
+   private ReentrantLock lock(Long id) {
+      return locks[(int) (id ^ id >>> 32) & (locks.length - 1)];
+   }
+
+   /**
+    * @return the number of the last segment found
+    */
+   private long recover() throws IOException {
+      List<Long> snapshotNumbers = numbers(SNAPSHOT);
+      List<Long> segmentNumbers = numbers(SEGMENT);
+      long start = 0;
+
+      if (!snapshotNumbers.isEmpty()) {
+         start = snapshotNumbers.get(snapshotNumbers.size() - 1);
+
+         try (FileChannel file = FileChannel.open(snapshotPath(start), StandardOpenOption.READ)) {
+            WriteAheadLog.read(file, this::replay);
+         }
+      }
+
+      long last = start;
+
+      for (Long segment : segmentNumbers) {
+         if (segment < start) continue;
+
+         try (FileChannel file = FileChannel.open(WriteAheadLog.segmentPath(dir, segment), 
+               StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long valid = WriteAheadLog.read(file, this::replay);
+
+            if (valid < file.size()) { //torn write of the last record before a crash
+               file.truncate(valid);
+            }
+         }
+         last = segment;
+      }
+
+      try (Stream<Path> files = Files.list(dir)) { //snapshots interrupted by a crash
+         for (Path file : (Iterable<Path>) files::iterator) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+               Files.delete(file);
+            }
+         }
+      }
+
+      deleteBefore(start);
+      return last;
+   }
+
+   private void replay(ByteBuffer payload) {
+      byte operation = payload.get();
+
+      if (operation == WriteAheadLog.PUT) {
+         ClientDto client = ClientCodec.decode(payload);
+         highestId.accumulateAndGet(client.getClient(), Math::max);
+         delegate.compute(client.getClient(), (key, oldClient) -> client);
+      } else if (operation == WriteAheadLog.DELETE) {
+         delegate.compute(payload.getLong(), (key, oldClient) -> null);
+      } else {
+         highestId.accumulateAndGet(payload.getLong(), Math::max);
+      }
+   }
+
+   private void scheduledSnapshot() {
+      try {
+         snapshot();
+      } catch (IOException | RuntimeException e) { //keep the schedule alive, the log still holds every write
+         log.error("Client snapshot failed in " + dir, e);
+      }
+   }
+
+   private void deleteBefore(long segment) throws IOException {
+      for (Long number : numbers(SNAPSHOT)) {
+         if (number < segment) {
+            Files.deleteIfExists(snapshotPath(number));
+         }
+      }
+      for (Long number : numbers(SEGMENT)) {
+         if (number < segment) {
+            Files.deleteIfExists(WriteAheadLog.segmentPath(dir, number));
+         }
+      }
+   }
+
+   private List<Long> numbers(Pattern pattern) throws IOException {
+      try (Stream<Path> files = Files.list(dir)) {
+         return files.map(file -> pattern.matcher(file.getFileName().toString()))
+               .filter(Matcher::matches)
+               .map(matcher -> Long.valueOf(matcher.group(1)))
+               .sorted()
+               .collect(Collectors.toList());
+      }
+   }
+
+   private Path snapshotPath(long segment) {
+      return dir.resolve(String.format("snapshot-%016d.dat", segment));
+   }
+
+   private static void flush(FileChannel file, ByteBuffer buffer) throws IOException {
+      buffer.flip();
+      write(file, buffer);
+      buffer.clear();
+   }
+
+   private static void write(FileChannel file, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         file.write(buffer);
+      }
+   }
+}
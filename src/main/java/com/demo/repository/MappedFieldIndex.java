@@ -0,0 +1,201 @@
+package com.demo.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Field index kept in a {@link MappedTable} next to the clients rather than on the heap.
+ * <p>
+ * The ids holding a value form a bitmap trie over the bits of the ids, 6 bits per level: every node is an entry keyed
+ * by the hash of the value and the position of the node, holding the bitmap of its children that hold ids, and the
+ * bitmaps of the leaves hold 64 ids each. Adding or removing an id only climbs the trie while a node turns non-empty or
+ * empty, so most writes change a single entry. The ids of a value are walked in ascending order from any id, at a few
+ * table reads per id. A value is held while the root of its trie is not empty, which is all the listener needs.
+ * <p>
+ * Writes are serialized per index; a walk takes the read lock for one id at a time. Values whose hashes collide share
+ * their trie, so the ids found may hold the other value.
+ */
+class MappedFieldIndex implements FieldIndex {
+   private static final int BITS = 6;
+   private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+   private static final int LEVEL_SHIFT = 58; //above the bits of the node positions of the leaf level
+
+   private final Function<ClientDto, String> field;
+   private final Listener listener;
+   private final MappedTable table;
+   private final StampedLock lock = new StampedLock();
+
+   MappedFieldIndex(Function<ClientDto, String> field, Listener listener, MappedTable table) {
+      this.field = field;
+      this.listener = listener;
+      this.table = table;
+   }
+
+   @Override
+   public void add(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      long hash = MappedTable.hash(value);
+      long id = client.getClient();
+      long stamp = lock.writeLock();
+
+      try {
+         for (int level = 0; level < LEVELS; level++) {
+            long node = node(level, position(id, level));
+            long children = table.get(key(hash, node), node);
+            table.put(key(hash, node), node, children | 1L << digit(id, level));
+
+            if (children != 0) return; //its parents already hold it
+         }
+
+         listener.added(value);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   @Override
+   public void remove(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      long hash = MappedTable.hash(value);
+      long id = client.getClient();
+      long stamp = lock.writeLock();
+
+      try {
+         for (int level = 0; level < LEVELS; level++) {
+            long node = node(level, position(id, level));
+            long children = table.get(key(hash, node), node);
+            long left = children & ~(1L << digit(id, level));
+
+            if (left == children) return; //not held
+            table.put(key(hash, node), node, left);
+            if (left != 0) return; //its parents still hold other ids
+         }
+
+         listener.removed(value);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   @Override
+   public Iterator<Long> idsAfter(String value, long after) {
+      if (value == null) return Collections.emptyIterator();
+
+      long hash = MappedTable.hash(value);
+
+      return new Iterator<>() {
+         private long last = after;
+         private long next = -1L;
+
+         @Override
+         public boolean hasNext() {
+            if (next < 0 && last >= 0) {
+               next = successor(hash, last);
+               last = next < 0 ? -1L : last; //exhausted
+            }
+            return next >= 0;
+         }
+
+         @Override
+         public Long next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            last = next;
+            next = -1L;
+            return last;
+         }
+      };
+   }
+
+   @Override
+   public boolean contains(String value) {
+      if (value == null) return false;
+
+      long root = node(LEVELS - 1, 0L);
+      long stamp = lock.readLock();
+
+      try {
+         return table.get(key(MappedTable.hash(value), root), root) != 0;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Climbs from the leaf of the id after the given one until a node holds a greater id, and descends to the lowest
+    * of those.
+    *
+    * @return the lowest id of the value greater than the given one, -1 when there is none
+    */
+   private long successor(long hash, long after) {
+      if (after == Long.MAX_VALUE) return -1L;
+
+      long id = after + 1;
+      long stamp = lock.readLock();
+
+      try {
+         for (int level = 0; level < LEVELS; level++) {
+            long position = position(id, level);
+            long children = children(hash, level, position) & -1L << digit(id, level);
+
+            if (children != 0) {
+               long found = position << BITS | Long.numberOfTrailingZeros(children);
+
+               for (int below = level - 1; below >= 0; below--) {
+                  found = found << BITS | Long.numberOfTrailingZeros(children(hash, below, found));
+               }
+               return found;
+            }
+
+            if (level + 1 < LEVELS) { //continue from the first id of the next node of the level
+               id = position + 1 << (level + 1) * BITS;
+               if (id < 0) return -1L;
+            }
+         }
+
+         return -1L;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   private long children(long hash, int level, long position) {
+      long node = node(level, position);
+      return table.get(key(hash, node), node);
+   }
+
+   /**
+    * @return the index of the child of its node at the level that holds the id
+    */
+   private static int digit(long id, int level) {
+      return (int) (id >>> level * BITS) & (1 << BITS) - 1;
+   }
+
+   /**
+    * @return the position of the node at the level that holds the id: the bits of the id above those of the level
+    */
+   private static long position(long id, int level) {
+      int shift = (level + 1) * BITS;
+      return shift >= Long.SIZE ? 0L : id >>> shift;
+   }
+
+   private static long node(int level, long position) {
+      return (long) level << LEVEL_SHIFT | position;
+   }
+
+   /**
+    * @return the first table key of the node of the value, which spreads the nodes of a value over the table
+    */
+   private static long key(long hash, long node) {
+      return hash + BloomFilter.mix(node);
+   }
+}
@@ -0,0 +1,233 @@
+package com.demo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hash table of entries of two long keys and a long value, in a file mapped into memory so the entries take no heap.
+ * <p>
+ * It probes linearly with backward-shift deletion like the index of {@link TieredClientStore}, and doubles when half
+ * full. Entries are placed by their first key only, so the entries sharing a first key are all in the run of slots
+ * from its home slot. A value of 0 marks an empty slot, so entries hold other values only.
+ * <p>
+ * The file is deleted when the table is closed, or by the operating system when the process ends. The table is not
+ * safe for concurrent use: its users lock around it.
+ */
+@Slf4j
+final class MappedTable implements Closeable {
+   static final int SLOT_BYTES = 3 * Long.BYTES; //first key, second key and value
+   static final int MIN_SLOTS = 1024;
+   static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES); //the most one mapping holds
+
+   private final Path dir;
+   private final String prefix;
+   private FileChannel file;
+   private MappedByteBuffer slots;
+   private int mask;
+   private int count;
+
+   /**
+    * @param prefix the prefix of the name of the table file
+    */
+   MappedTable(Path dir, String prefix) throws IOException {
+      this.dir = dir;
+      this.prefix = prefix;
+      this.file = open();
+      this.slots = file.map(FileChannel.MapMode.READ_WRITE, 0, (long) MIN_SLOTS * SLOT_BYTES);
+      this.mask = MIN_SLOTS - 1;
+   }
+
+   /**
+    * @return the 64-bit FNV-1a hash of the string, by which the tables hold strings
+    */
+   static long hash(String value) {
+      long hash = 0xCBF29CE484222325L;
+
+      for (int index = 0; index < value.length(); index++) {
+         hash = (hash ^ value.charAt(index)) * 0x100000001B3L;
+      }
+
+      return hash;
+   }
+
+   /**
+    * @return the value of the keys, 0 when there is no such entry
+    */
+   long get(long first, long second) {
+      int slot = find(first, second);
+      return slot < 0 ? 0L : value(slot);
+   }
+
+   /**
+    * @return the second keys of the entries with the first key
+    */
+   long[] seconds(long first) {
+      long[] seconds = new long[0];
+
+      for (int slot = home(first); value(slot) != 0; slot = (slot + 1) & mask) {
+         if (first(slot) == first) {
+            seconds = Arrays.copyOf(seconds, seconds.length + 1); //as many as share a hash, about one
+            seconds[seconds.length - 1] = second(slot);
+         }
+      }
+
+      return seconds;
+   }
+
+   /**
+    * Sets the value of the keys, removing the entry when the value is 0. A table that could not grow stays more than
+    * half full until the next insert grows it.
+    *
+    * @throws IllegalStateException when the table is full
+    */
+   void put(long first, long second, long value) {
+      int slot = find(first, second);
+
+      if (slot >= 0) {
+         if (value == 0) {
+            remove(slot);
+         } else {
+            slots.putLong(slot * SLOT_BYTES + 2 * Long.BYTES, value);
+         }
+         return;
+      }
+      if (value == 0) return;
+
+      if (count + 1 >= mask + 1) { //linear probing needs an empty slot to end its runs
+         throw new IllegalStateException("The table in " + dir + " is full, shard the store to hold more clients");
+      }
+
+      insert(first, second, value);
+
+      if (count * 2L > mask + 1L) {
+         grow();
+      }
+   }
+
+   int slotCount() {
+      return mask + 1;
+   }
+
+   long first(int slot) {
+      return slots.getLong(slot * SLOT_BYTES);
+   }
+
+   long value(int slot) {
+      return slots.getLong(slot * SLOT_BYTES + 2 * Long.BYTES);
+   }
+
+   @Override
+   public void close() throws IOException {
+      file.close();
+   }
+
+   private long second(int slot) {
+      return slots.getLong(slot * SLOT_BYTES + Long.BYTES);
+   }
+
+   /**
+    * @return the slot of the keys, -1 when there is no such entry
+    */
+   private int find(long first, long second) {
+      for (int slot = home(first); value(slot) != 0; slot = (slot + 1) & mask) {
+         if (first(slot) == first && second(slot) == second) return slot;
+      }
+
+      return -1;
+   }
+
+   private void insert(long first, long second, long value) {
+      int slot = home(first);
+
+      while (value(slot) != 0) {
+         slot = (slot + 1) & mask;
+      }
+
+      slots.putLong(slot * SLOT_BYTES, first);
+      slots.putLong(slot * SLOT_BYTES + Long.BYTES, second);
+      slots.putLong(slot * SLOT_BYTES + 2 * Long.BYTES, value);
+      count++;
+   }
+
+   private void remove(int slot) {
+      int free = slot;
+
+      for (int next = (free + 1) & mask; value(next) != 0; next = (next + 1) & mask) {
+         int home = home(first(next));
+         boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+
+         if (movable) {
+            slots.putLong(free * SLOT_BYTES, first(next));
+            slots.putLong(free * SLOT_BYTES + Long.BYTES, second(next));
+            slots.putLong(free * SLOT_BYTES + 2 * Long.BYTES, value(next));
+            free = next;
+         }
+      }
+
+      slots.putLong(free * SLOT_BYTES + 2 * Long.BYTES, 0L);
+      count--;
+   }
+
+   /**
+    * Moves the entries to a new file of twice the slots. When that file cannot be mapped, the entries stay where they
+    * are and the next insert tries again.
+    */
+   private void grow() {
+      if (mask + 1 == MAX_SLOTS) return;
+
+      FileChannel oldFile = file;
+      MappedByteBuffer oldSlots = slots;
+      int oldMask = mask;
+
+      try {
+         FileChannel grownFile = open();
+         try {
+            slots = grownFile.map(FileChannel.MapMode.READ_WRITE, 0, (long) (mask + 1) * 2 * SLOT_BYTES);
+         } catch (IOException e) {
+            grownFile.close();
+            throw e;
+         }
+         file = grownFile;
+      } catch (IOException e) {
+         log.error("The table in " + dir + " could not grow past " + (mask + 1) + " slots", e);
+         return;
+      }
+
+      mask = oldMask * 2 + 1;
+      count = 0;
+
+      for (int slot = 0; slot <= oldMask; slot++) {
+         long value = oldSlots.getLong(slot * SLOT_BYTES + 2 * Long.BYTES);
+
+         if (value != 0) {
+            insert(oldSlots.getLong(slot * SLOT_BYTES), oldSlots.getLong(slot * SLOT_BYTES + Long.BYTES), value);
+         }
+      }
+
+      try {
+         oldFile.close();
+      } catch (IOException e) { //the file is deleted by the operating system at the latest when the process ends
+      }
+   }
+
+   private int home(long first) {
+      return (int) BloomFilter.mix(first) & mask;
+   }
+
+   /**
+    * Opens a new file that is deleted when closed, or right away where the operating system allows it.
+    */
+   private FileChannel open() throws IOException {
+      Path table = Files.createTempFile(dir, prefix, ".cold");
+      return FileChannel.open(table, 
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+   }
+}
@@ -0,0 +1,178 @@
+package com.demo.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+
+/**
+ * Unique index kept in a {@link MappedTable} next to the clients rather than on the heap: the table maps the hash of
+ * every value to the ids holding a value of that hash, and the client read back by id tells which value it holds.
+ * <p>
+ * A value is reserved on the heap until the store holds the client and the reservation is committed to the table, so
+ * the heap only holds the values of the writes in flight, and concurrent writers racing for a value are still resolved
+ * by a single atomic put-if-absent. A value is committed to the table before its reservation is dropped, so it is
+ * always found in one of them.
+ * <p>
+ * A Bloom filter of the hashes in the table answers most lookups of absent values, like the uniqueness check of every
+ * insert, without reading the table or a client. It keeps the hashes of released values until the table grows.
+ */
+class MappedUniqueIndex implements UniqueIndex {
+   private final String name;
+   private final Function<ClientDto, String> field;
+   private final Function<Long, ClientDto> reader;
+   private final MappedTable table;
+   private final StampedLock lock = new StampedLock();
+   private final ConcurrentMap<String, Long> reserved = new ConcurrentHashMap<>();
+   private volatile BloomFilter hashes;
+
+   /**
+    * @param reader reads the client of an id from the store
+    */
+   MappedUniqueIndex(String name, Function<ClientDto, String> field, Function<Long, ClientDto> reader,
+         MappedTable table) {
+      this.name = name;
+      this.field = field;
+      this.reader = reader;
+      this.table = table;
+      this.hashes = new BloomFilter(table.slotCount() * TieredClientStore.FILTER_BITS_PER_SLOT);
+   }
+
+   @Override
+   public boolean reserve(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return false;
+
+      Long id = client.getClient();
+      Long holder = reserved.putIfAbsent(value, id);
+
+      if (holder != null) {
+         if (holder.equals(id)) return false;
+
+         throw new UniqueConstraintException(name);
+      }
+
+      long hash = MappedTable.hash(value);
+      if (!hashes.mightContain(hash)) return true; //reserved after any commit of the value, so its hash would show
+
+      for (long committed : holders(hash)) {
+         if (holds(committed, value)) {
+            reserved.remove(value, id);
+            if (committed == id) return false;
+
+            throw new UniqueConstraintException(name);
+         }
+      }
+
+      return true;
+   }
+
+   @Override
+   public void commit(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      add(MappedTable.hash(value), client.getClient());
+      reserved.remove(value, client.getClient());
+   }
+
+   /**
+    * Adds the id to the holders of the value; the holder it replaces is dropped once its own write releases the value.
+    */
+   @Override
+   public void take(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      add(MappedTable.hash(value), client.getClient());
+   }
+
+   @Override
+   public void release(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null || reserved.remove(value, client.getClient())) return; //a reservation of a failed write
+
+      long stamp = lock.writeLock();
+      try {
+         table.put(MappedTable.hash(value), client.getClient(), 0L);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   @Override
+   public Iterator<Long> idsAfter(String value, long after) {
+      if (value == null) return Collections.emptyIterator();
+
+      return Arrays.stream(holders(MappedTable.hash(value))).filter(id -> id > after).sorted().boxed().iterator();
+   }
+
+   /**
+    * Looks for a reservation first: the reservation of a value is only dropped once the value is committed, and seeing
+    * it dropped also makes the Bloom filter show the committed value.
+    */
+   @Override
+   public boolean contains(String value) {
+      if (value == null) return false;
+      if (reserved.containsKey(value)) return true;
+
+      long hash = MappedTable.hash(value);
+      if (!hashes.mightContain(hash)) return false;
+
+      for (long holder : holders(hash)) {
+         if (holds(holder, value)) return true;
+      }
+
+      return false;
+   }
+
+   private void add(long hash, long id) {
+      long stamp = lock.writeLock();
+
+      try {
+         int slotCount = table.slotCount();
+         table.put(hash, id, 1L); //the entry is all there is to hold
+
+         if (table.slotCount() == slotCount) {
+            hashes.add(hash);
+            return;
+         }
+
+         BloomFilter grown = new BloomFilter(table.slotCount() * TieredClientStore.FILTER_BITS_PER_SLOT);
+
+         for (int slot = 0; slot < table.slotCount(); slot++) {
+            if (table.value(slot) != 0) {
+               grown.add(table.first(slot));
+            }
+         }
+
+         hashes = grown;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * @return the ids committed as holding a value of the hash
+    */
+   private long[] holders(long hash) {
+      long stamp = lock.readLock();
+
+      try {
+         return table.seconds(hash);
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   private boolean holds(long id, String value) {
+      ClientDto client = reader.apply(id);
+      return client != null && value.equals(field.apply(client));
+   }
+}
@@ -0,0 +1,35 @@
+package com.demo.repository;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Volatile in-memory client storage, the default engine.
+ */
+public class MemoryClientStore implements ClientStore {
+   private final ConcurrentMap<Long, ClientDto> clientMap = new ConcurrentHashMap<>();
+
+   @Override
+   public ClientDto get(Long id) {
+      return clientMap.get(id);
+   }
+
+   @Override
+   public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+      return clientMap.compute(id, remapping);
+   }
+
+   @Override
+   public Iterable<ClientDto> values() {
+      return Collections.unmodifiableCollection(clientMap.values());
+   }
+
+   @Override
+   public int size() {
+      return clientMap.size();
+   }
+}
@@ -0,0 +1,84 @@
+package com.demo.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Field index on the heap, a hash map from every value to the sorted set of the ids holding it.
+ * <p>
+ * Lookups are lock-free; writes only lock the hash bin of the value being changed.
+ */
+class MemoryFieldIndex implements FieldIndex {
+   private static final Listener NONE = new Listener() {
+      @Override
+      public void added(String value) {
+      }
+
+      @Override
+      public void removed(String value) {
+      }
+   };
+
+   private final Function<ClientDto, String> field;
+   private final Listener listener;
+   private final Map<String, NavigableSet<Long>> entries = new ConcurrentHashMap<>();
+
+   MemoryFieldIndex(Function<ClientDto, String> field) {
+      this(field, NONE);
+   }
+
+   MemoryFieldIndex(Function<ClientDto, String> field, Listener listener) {
+      this.field = field;
+      this.listener = listener;
+   }
+
+   @Override
+   public void add(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      entries.compute(value, (key, ids) -> {
+         if (ids == null) {
+            listener.added(key);
+         }
+
+         NavigableSet<Long> postings = ids == null ? new ConcurrentSkipListSet<>() : ids;
+         postings.add(client.getClient());
+         return postings;
+      });
+   }
+
+   @Override
+   public void remove(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      entries.computeIfPresent(value, (key, ids) -> {
+         ids.remove(client.getClient());
+         if (!ids.isEmpty()) return ids;
+
+         listener.removed(key);
+         return null;
+      });
+   }
+
+   @Override
+   public Iterator<Long> idsAfter(String value, long after) {
+      if (value == null) return Collections.emptyIterator();
+
+      NavigableSet<Long> ids = entries.get(value);
+      return ids == null ? Collections.emptyIterator() : ids.tailSet(after, false).iterator();
+   }
+
+   @Override
+   public boolean contains(String value) {
+      return value != null && entries.containsKey(value);
+   }
+}
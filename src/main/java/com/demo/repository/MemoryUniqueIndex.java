@@ -0,0 +1,73 @@
+package com.demo.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+
+/**
+ * Unique index on the heap, mapping every value to the id holding it.
+ * <p>
+ * A value is reserved for a client id with a single atomic put-if-absent, so concurrent writers racing for the same
+ * value are resolved without any lock beyond the hash bin of that value. The reservation is the entry itself, so
+ * there is nothing left to commit.
+ */
+class MemoryUniqueIndex implements UniqueIndex {
+   private final String name;
+   private final Function<ClientDto, String> field;
+   private final ConcurrentMap<String, Long> entries = new ConcurrentHashMap<>();
+
+   MemoryUniqueIndex(String name, Function<ClientDto, String> field) {
+      this.name = name;
+      this.field = field;
+   }
+
+   @Override
+   public boolean reserve(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return false;
+
+      Long holder = entries.putIfAbsent(value, client.getClient());
+      if (holder == null) return true;
+      if (holder.equals(client.getClient())) return false;
+
+      throw new UniqueConstraintException(name);
+   }
+
+   @Override
+   public void commit(ClientDto client) {
+   }
+
+   @Override
+   public void take(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      entries.put(value, client.getClient());
+   }
+
+   @Override
+   public void release(ClientDto client) {
+      String value = field.apply(client);
+      if (value == null) return;
+
+      entries.remove(value, client.getClient());
+   }
+
+   @Override
+   public Iterator<Long> idsAfter(String value, long after) {
+      if (value == null) return Collections.emptyIterator();
+
+      Long id = entries.get(value);
+      return id == null || id <= after ? Collections.emptyIterator() : Collections.singleton(id).iterator();
+   }
+
+   @Override
+   public boolean contains(String value) {
+      return value != null && entries.containsKey(value);
+   }
+}
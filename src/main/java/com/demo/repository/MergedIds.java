@@ -0,0 +1,61 @@
+package com.demo.repository;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges ascending streams of client ids into one ascending stream, dropping the ids found in more than one of them.
+ * <p>
+ * The sources are read lazily, one id ahead each, and the ids read from them are counted.
+ */
+class MergedIds implements Iterator<Long> {
+   private final List<Iterator<Long>> sources;
+   private final Long[] heads;
+   private int scanned;
+   private Long next;
+
+   MergedIds(List<Iterator<Long>> sources) {
+      this.sources = sources;
+      this.heads = new Long[sources.size()];
+   }
+
+   @Override
+   public boolean hasNext() {
+      if (next != null) return true;
+
+      for (int index = 0; index < heads.length; index++) {
+         if (heads[index] == null && sources.get(index).hasNext()) {
+            heads[index] = sources.get(index).next();
+            scanned++;
+         }
+         if (heads[index] != null && (next == null || heads[index] < next)) {
+            next = heads[index];
+         }
+      }
+
+      for (int index = 0; index < heads.length && next != null; index++) {
+         if (next.equals(heads[index])) {
+            heads[index] = null; //consumed, also drops the same id found through another source
+         }
+      }
+
+      return next != null;
+   }
+
+   @Override
+   public Long next() {
+      if (!hasNext()) throw new NoSuchElementException();
+
+      Long id = next;
+      next = null;
+      return id;
+   }
+
+   /**
+    * @return the number of ids read from the sources so far
+    */
+   int scanned() {
+      return scanned;
+   }
+}
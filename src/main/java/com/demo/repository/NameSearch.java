@@ -0,0 +1,184 @@
+package com.demo.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Prefix and typo-tolerant lookup of the distinct values of a name field, kept up to date by a {@link FieldIndex}.
+ * <p>
+ * Names are matched case-insensitively. Prefix lookups walk a trie whose children are kept in character order, so 
+ * names come out alphabetically with the shortest completion first, lazily, without collecting all matches. Fuzzy 
+ * lookups use an index of the padded character bigrams of each name and rank the candidates sharing bigrams with the 
+ * query by their Dice coefficient.
+ */
+class NameSearch implements FieldIndex.Listener {
+   static final double MIN_SIMILARITY = 0.5;
+   static final int MAX_FUZZY_NAMES = 100;
+
+   private final Node root = new Node();
+   private final ConcurrentMap<String, Set<String>> bigrams = new ConcurrentHashMap<>();
+   private final ConcurrentMap<String, Integer> bigramCounts = new ConcurrentHashMap<>();
+
+   @Override
+   public void added(String name) {
+      Node node = root;
+
+      for (char letter : normalize(name).toCharArray()) {
+         node = node.children.computeIfAbsent(letter, key -> new Node());
+      }
+      node.names.add(name);
+
+      List<String> nameBigrams = bigrams(name);
+      bigramCounts.put(name, nameBigrams.size());
+
+      for (String bigram : nameBigrams) {
+         bigrams.compute(bigram, (key, names) -> {
+            Set<String> holders = names == null ? ConcurrentHashMap.newKeySet() : names;
+            holders.add(name);
+            return holders;
+         });
+      }
+   }
+
+   @Override
+   public void removed(String name) {
+      Node node = find(normalize(name));
+
+      if (node != null) {
+         node.names.remove(name); //empty nodes are kept, the trie only grows with the distinct names ever seen
+      }
+
+      for (String bigram : bigrams(name)) {
+         bigrams.computeIfPresent(bigram, (key, names) -> {
+            names.remove(name);
+            return names.isEmpty() ? null : names;
+         });
+      }
+      bigramCounts.remove(name);
+   }
+
+   /**
+    * @return the names starting with the prefix, alphabetically with shorter names before their completions
+    */
+   Iterator<String> withPrefix(String prefix) {
+      Node start = find(normalize(prefix));
+      if (start == null) return Collections.emptyIterator();
+
+      Deque<Node> pending = new ArrayDeque<>();
+      pending.push(start);
+
+      return new Iterator<>() {
+         private Iterator<String> names = Collections.emptyIterator();
+
+         @Override
+         public boolean hasNext() {
+            while (!names.hasNext() && !pending.isEmpty()) {
+               Node node = pending.pop();
+               List<Node> children = new ArrayList<>(node.children.values());
+
+               for (int index = children.size() - 1; index >= 0; index--) {
+                  pending.push(children.get(index));
+               }
+               names = node.names.isEmpty() ? Collections.emptyIterator() : sorted(node.names).iterator();
+            }
+            return names.hasNext();
+         }
+
+         @Override
+         public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return names.next();
+         }
+      };
+   }
+
+   /**
+    * @return at most {@link #MAX_FUZZY_NAMES} names similar to the given one, most similar first
+    */
+   List<String> similarTo(String name) {
+      List<String> queryBigrams = bigrams(name);
+      Map<String, Integer> shared = new HashMap<>();
+
+      for (String bigram : queryBigrams) {
+         for (String candidate : bigrams.getOrDefault(bigram, Collections.emptySet())) {
+            shared.merge(candidate, 1, Integer::sum);
+         }
+      }
+
+      Map<String, Double> similarity = new HashMap<>();
+
+      shared.forEach((candidate, count) -> {
+         Integer candidateBigrams = bigramCounts.get(candidate);
+         if (candidateBigrams == null) return; //removed meanwhile
+
+         double dice = 2.0 * count / (queryBigrams.size() + candidateBigrams);
+
+         if (dice >= MIN_SIMILARITY) {
+            similarity.put(candidate, dice);
+         }
+      });
+
+      return similarity.keySet().stream()
+            .sorted(Comparator.comparing((String candidate) -> similarity.get(candidate)).reversed()
+                  .thenComparing(Comparator.naturalOrder()))
+            .limit(MAX_FUZZY_NAMES)
+            .toList();
+   }
+
+   private Node find(String key) {
+      Node node = root;
+
+      for (int index = 0; index < key.length() && node != null; index++) {
+         node = node.children.get(key.charAt(index));
+      }
+
+      return node;
+   }
+
+   /**
+    * @return the distinct bigrams of the name padded with a start and end marker, so a one-letter name has two
+    */
+   static List<String> bigrams(String name) {
+      String padded = "\u0002" + normalize(name) + "\u0003";
+      List<String> bigrams = new ArrayList<>(padded.length() - 1);
+
+      for (int index = 0; index < padded.length() - 1; index++) {
+         String bigram = padded.substring(index, index + 2);
+
+         if (!bigrams.contains(bigram)) {
+            bigrams.add(bigram);
+         }
+      }
+
+      return bigrams;
+   }
+
+   static String normalize(String name) {
+      return name.toLowerCase(Locale.ROOT);
+   }
+
+   private static List<String> sorted(Set<String> names) {
+      List<String> sorted = new ArrayList<>(names);
+      Collections.sort(sorted);
+      return sorted;
+   }
+
+   private static final class Node {
+      final ConcurrentSkipListMap<Character, Node> children = new ConcurrentSkipListMap<>();
+      final Set<String> names = ConcurrentHashMap.newKeySet();
+   }
+}
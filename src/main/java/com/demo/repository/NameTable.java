@@ -0,0 +1,49 @@
+package com.demo.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns repeated text values, such as first names, as int codes so each distinct value is held only once.
+ * <p>
+ * Codes are never released: the table grows with the number of distinct values, not with the number of clients.
+ */
+final class NameTable {
+   private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+   private volatile String[] names = new String[256];
+   private int count;
+
+   /**
+    * @return the code of the value, -1 for null
+    */
+   int intern(String name) {
+      if (name == null) return -1;
+
+      Integer code = codes.get(name);
+      if (code != null) return code;
+
+      synchronized (this) {
+         code = codes.get(name);
+         if (code != null) return code;
+
+         String[] table = names;
+         if (count == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+         }
+
+         table[count] = name;
+         names = table;
+         codes.put(name, count);
+         return count++;
+      }
+   }
+
+   String name(int code) {
+      return code < 0 ? null : names[code];
+   }
+
+   int size() {
+      return codes.size();
+   }
+}
@@ -0,0 +1,67 @@
+package com.demo.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The meters of a {@link ClientRepo}: a {@value #OPERATIONS} timer per operation and a {@value #SCANNED} distribution
+ * per search mode of the index entries a search visited to fill its page.
+ * <p>
+ * Meters are looked up once, so recording only costs reading the clock and updating the meter.
+ */
+class RepoMetrics {
+   static final String OPERATIONS = "client.repo.operations";
+   static final String SCANNED = "client.repo.search.scanned";
+
+   final Timer find;
+   final Timer findAllById;
+   final Timer exists;
+   final Timer insert;
+   final Timer insertAll;
+   final Timer update;
+   final Timer delete;
+   final Timer replicate;
+   final Timer search;
+   final DistributionSummary exactScanned;
+   final DistributionSummary prefixScanned;
+   final DistributionSummary fuzzyScanned;
+
+   RepoMetrics(MeterRegistry registry) {
+      find = timer(registry, "find");
+      findAllById = timer(registry, "findAllById");
+      exists = timer(registry, "exists");
+      insert = timer(registry, "insert");
+      insertAll = timer(registry, "insertAll");
+      update = timer(registry, "update");
+      delete = timer(registry, "delete");
+      replicate = timer(registry, "replicate");
+      search = timer(registry, "search");
+      exactScanned = scanned(registry, "exact");
+      prefixScanned = scanned(registry, "prefix");
+      fuzzyScanned = scanned(registry, "fuzzy");
+   }
+
+   /**
+    * Records the time since {@code start}, as taken from {@link System#nanoTime()}.
+    */
+   static void record(Timer timer, long start) {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+   }
+
+   private static Timer timer(MeterRegistry registry, String operation) {
+      return Timer.builder(OPERATIONS)
+            .description("Client repository operations")
+            .tag("operation", operation)
+            .register(registry);
+   }
+
+   private static DistributionSummary scanned(MeterRegistry registry, String mode) {
+      return DistributionSummary.builder(SCANNED)
+            .description("Index entries visited per search page")
+            .tag("mode", mode)
+            .register(registry);
+   }
+}
@@ -0,0 +1,117 @@
+package com.demo.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * In-memory client storage partitioned by the hash of the client id over independent engines, the shards.
+ * <p>
+ * Every read and write of a client goes to the shard owning its id only, so writers to different shards never share a
+ * lock, a hash table or its resizes. {@link ClientRepo} partitions its firstName postings the same way, and searches
+ * all shards in parallel.
+ */
+public class ShardedClientStore implements ClientStore {
+   private static final long MIX = 0x9E3779B97F4A7C15L; //2^64 divided by the golden ratio
+
+   private final ClientStore[] shards;
+
+   public ShardedClientStore(List<? extends ClientStore> shards) {
+      if (shards.isEmpty()) throw new IllegalArgumentException("No shards");
+
+      this.shards = shards.toArray(new ClientStore[0]);
+   }
+
+   /**
+    * @return the index of the shard owning the client id out of the given number of shards
+    */
+   static int shardOf(Long id, int shards) {
+      //ids are sequential: mix them, so clients inserted in a pattern with the period of the shard count still spread
+      return Math.floorMod(Long.hashCode(id * MIX), shards);
+   }
+
+   @Override
+   public ClientDto get(Long id) {
+      return shard(id).get(id);
+   }
+
+   @Override
+   public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+      return shard(id).compute(id, remapping);
+   }
+
+   /**
+    * Iterates shard by shard, each as weakly consistent as its engine.
+    */
+   @Override
+   public Iterable<ClientDto> values() {
+      return () -> new Iterator<>() {
+         private int shardIndex;
+         private Iterator<ClientDto> clients = Collections.emptyIterator();
+
+         @Override
+         public boolean hasNext() {
+            while (!clients.hasNext() && shardIndex < shards.length) {
+               clients = shards[shardIndex++].values().iterator();
+            }
+            return clients.hasNext();
+         }
+
+         @Override
+         public ClientDto next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return clients.next();
+         }
+      };
+   }
+
+   @Override
+   public int size() {
+      int size = 0;
+
+      for (ClientStore shard : shards) {
+         size += shard.size();
+      }
+
+      return size;
+   }
+
+   @Override
+   public long highestId() {
+      long highestId = 0L;
+
+      for (ClientStore shard : shards) {
+         highestId = Math.max(highestId, shard.highestId());
+      }
+
+      return highestId;
+   }
+
+   @Override
+   public int shards() {
+      return shards.length;
+   }
+
+   /**
+    * Created by the first shard, as the unique indexes span all shards.
+    */
+   @Override
+   public UniqueIndex uniqueIndex(String name, Function<ClientDto, String> field, Function<Long, ClientDto> reader) {
+      return shards[0].uniqueIndex(name, field, reader);
+   }
+
+   @Override
+   public FieldIndex fieldIndex(int shard, Function<ClientDto, String> field, FieldIndex.Listener listener) {
+      return shards[shard].fieldIndex(0, field, listener);
+   }
+
+   private ClientStore shard(Long id) {
+      return shards[shardOf(id, shards.length)];
+   }
+}
@@ -0,0 +1,776 @@
+package com.demo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.demo.dto.ClientDto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client storage for more clients than fit the heap: every client lives in a cold tier on local disk, read through
+ * memory-mapped I/O, and only recently used clients are also kept on the heap, in a hot tier of bounded size.
+ * <p>
+ * The cold tier is two files mapped into memory, so the operating system keeps their used pages in its page cache,
+ * outside the heap:
+ * <ul>
+ * <li>the data file, to which every write appends the new version of the client: an int byte length, the version and
+ * the {@link ClientCodec} encoding,</li>
+ * <li>the index of the data file offset of every id, a linear probing hash table with backward-shift deletion like the
+ * segments of {@link CompactClientStore}.</li>
+ * </ul>
+ * Once the versions left behind in the data file take as much space as the live clients, the live clients are copied to
+ * a new data file and index by a background thread of the store, so the write that found the garbage does not wait
+ * for the copy. The copy takes the read lock for a block of index slots at a time, so reads go on and writes only wait
+ * for one block; the clients written meanwhile are copied again under the write lock, just before the new files
+ * replace the old ones. The files are deleted when the store is closed, or by the operating system when the
+ * process ends: the store is as volatile as the in-memory ones, and is made durable by running it behind a
+ * {@link LogClientStore}.
+ * <p>
+ * A Bloom filter of the ids in the index answers most lookups of absent ids, like the one of every insert, without
+ * reading the index. It keeps the ids of deleted clients until the index is rebuilt, on growth or compaction.
+ * <p>
+ * The secondary indexes of the repository are kept in mapped files next to the cold tier too, see 
+ * {@link MappedUniqueIndex} and {@link MappedFieldIndex}, so the heap taken per client is that of the Bloom filters of
+ * the ids and of the unique values only.
+ * <p>
+ * The hot tier is a direct-mapped table: every id has one slot, and a client read from the cold tier or written
+ * replaces the client of another id in its slot. Hits are a single lock-free array read. Cold reads are optimistic and
+ * only fall back to the read lock when they overlap a write. Writes are serialized per store; shard the store, see
+ * {@link ShardedClientStore}, for concurrent writers.
+ * <p>
+ * Hot tier hits, misses and evictions are counted in the {@code cache.gets} and {@code cache.evictions} meters, tagged
+ * {@code cache=}{@value #NAME}. Reads of the cold tier are timed by {@value #COLD_READS}, and the lookups answered by
+ * the Bloom filter are counted in {@value #FILTERED}.
+ */
+@Slf4j
+public class TieredClientStore implements ClientStore, Closeable {
+   static final String NAME = "clientHot";
+   static final String COLD_READS = "client.store.cold.reads";
+   static final String FILTERED = "client.store.cold.filtered";
+   static final int CHUNK_BITS = 26; //the data file is mapped in chunks of 64 MiB
+   static final int SLOT_BYTES = 2 * Long.BYTES; //id and data offset
+   static final int MIN_SLOTS = 1024;
+   static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES); //the most one mapping holds
+   static final int FILTER_BITS_PER_SLOT = 4; //8 to 16 bits per id, as the index is a quarter to half full
+   static final int BLOCK_SLOTS = 4096; //index slots copied or iterated per hold of the read lock
+
+   private final Path dir;
+   private final int chunkBits;
+   private final StampedLock lock = new StampedLock();
+   private final AtomicReferenceArray<Entry> hot;
+   private final int hotMask;
+   private final AtomicInteger size = new AtomicInteger();
+   private final Counter hits;
+   private final Counter misses;
+   private final Counter evictions;
+   private final Counter filtered;
+   private final Timer coldReads;
+   private final ExecutorService compactions;
+   private final List<MappedTable> tables = new CopyOnWriteArrayList<>();
+
+   //the cold tier, only changed under the write lock
+   private DataFile data;
+   private IndexFile index;
+   private Compaction compaction;
+
+   /**
+    * @param dir the directory of the cold tier files
+    * @param hotCapacity the number of hot tier slots, rounded up to a power of two; 0 keeps no client on the heap
+    */
+   public TieredClientStore(Path dir, int hotCapacity, MeterRegistry registry) throws IOException {
+      this(dir, hotCapacity, CHUNK_BITS, registry);
+   }
+
+   TieredClientStore(Path dir, int hotCapacity, int chunkBits, MeterRegistry registry) throws IOException {
+      this.dir = Files.createDirectories(dir);
+      this.chunkBits = chunkBits;
+      this.hot = new AtomicReferenceArray<>(hotCapacity > 0 ? Integer.highestOneBit(hotCapacity * 2 - 1) : 0);
+      this.hotMask = hot.length() - 1;
+      this.hits = gets(registry, "hit");
+      this.misses = gets(registry, "miss");
+      this.evictions = Counter.builder("cache.evictions")
+            .description("Hot clients replaced by another client")
+            .tag("cache", NAME)
+            .register(registry);
+      this.filtered = Counter.builder(FILTERED)
+            .description("Lookups of absent clients answered by the Bloom filter without reading the cold tier")
+            .register(registry);
+      this.coldReads = Timer.builder(COLD_READS)
+            .description("Reads of clients from the cold tier on disk")
+            .register(registry);
+      this.compactions = Executors.newSingleThreadExecutor(task -> {
+         Thread thread = new Thread(task, "client-tiered-compaction");
+         thread.setDaemon(true);
+         return thread;
+      });
+      this.data = new DataFile();
+      this.index = new IndexFile(MIN_SLOTS);
+   }
+
+   @Override
+   public ClientDto get(Long id) {
+      int slot = hotSlot(id);
+      Entry entry = slot < 0 ? null : hot.get(slot);
+
+      if (entry != null && entry.id == id) {
+         hits.increment();
+         return entry.client;
+      }
+
+      misses.increment();
+      ClientRecord client = readCold(id);
+
+      //a writer of the client replaced the entry read above since, so this cannot cache a replaced version
+      if (client != null && slot >= 0 && hot.compareAndSet(slot, entry, new Entry(id, client)) && entry != null) {
+         evictions.increment();
+      }
+
+      return client;
+   }
+
+   @Override
+   public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+      ClientDto client;
+      long stamp = lock.writeLock();
+
+      try {
+         int slot = index.ids.mightContain(id) ? index.find(id) : -1; //an insert is not in the filter
+         int hotSlot = hotSlot(id);
+         Entry entry = hotSlot < 0 ? null : hot.get(hotSlot);
+         ClientRecord oldClient = entry != null && entry.id == id ? entry.client 
+               : slot < 0 ? null : data.read(index.offset(slot));
+         client = remapping.apply(id, oldClient);
+
+         if (client != null) {
+            ClientRecord record = ClientRecord.of(client, client.getVersion());
+            long offset = data.append(record);
+
+            if (slot < 0) {
+               insert(id, offset);
+               size.incrementAndGet();
+            } else {
+               data.garbage += data.recordBytes(index.offset(slot));
+               index.setOffset(slot, offset);
+            }
+
+            cacheWritten(hotSlot, new Entry(id, record));
+         } else if (slot >= 0) {
+            data.garbage += data.recordBytes(index.offset(slot));
+            index.remove(slot, compaction);
+            size.decrementAndGet();
+            cacheWritten(hotSlot, new Entry(id, null));
+         }
+
+         if (compaction != null) {
+            compaction.written(id);
+         } else if (data.garbage >= Math.max(data.end / 2, 1L << chunkBits)) {
+            startCompaction();
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException("Client " + id + " could not be written to " + dir, e);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+
+      return client;
+   }
+
+   /**
+    * Iterates the ids in the index a block of index slots at a time, taking the read lock once per block like the copy
+    * of a compaction, and reads each client when reached. Clients are read from the hot tier when there, and otherwise 
+    * from the cold tier without caching them, so an iteration does not evict the hot clients.
+    * <p>
+    * The blocks are ranges of the home slots the ids hash to in the index of when the iteration started, rather than of
+    * the slots the ids are in, so an id moved by a delete, a growth or a compaction of the index is still visited
+    * exactly once. Clients written during the iteration may or may not be seen.
+    */
+   @Override
+   public Iterable<ClientDto> values() {
+      return Values::new;
+   }
+
+   @Override
+   public int size() {
+      return size.get();
+   }
+
+   @Override
+   public UniqueIndex uniqueIndex(String name, Function<ClientDto, String> field, Function<Long, ClientDto> reader) {
+      return new MappedUniqueIndex(name, field, reader, table(name + "-"));
+   }
+
+   @Override
+   public FieldIndex fieldIndex(int shard, Function<ClientDto, String> field, FieldIndex.Listener listener) {
+      return new MappedFieldIndex(field, listener, table("postings-"));
+   }
+
+   /**
+    * Deletes the cold tier files, those of the indexes created by the store included, and stops the compaction thread.
+    * The memory they were mapped to is released once the last readers are collected.
+    */
+   @Override
+   public void close() throws IOException {
+      compactions.shutdown(); //a compaction in progress drops its copy at the next block, as it is aborted below
+      long stamp = lock.writeLock();
+
+      try {
+         if (compaction != null) {
+            compaction.aborted = true;
+            compaction.close();
+         }
+
+         data.close();
+         index.close();
+
+         for (MappedTable table : tables) {
+            table.close();
+         }
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   private MappedTable table(String prefix) {
+      try {
+         MappedTable table = new MappedTable(dir, prefix);
+         tables.add(table);
+         return table;
+      } catch (IOException e) {
+         throw new UncheckedIOException("An index could not be created in " + dir, e);
+      }
+   }
+
+   private ClientRecord readCold(long id) {
+      long stamp = lock.tryOptimisticRead();
+
+      if (stamp != 0) {
+         try {
+            ClientRecord client = lookup(id);
+            if (lock.validate(stamp)) return client;
+         } catch (RuntimeException e) { //torn read of a concurrent write, retried below
+         }
+      }
+
+      stamp = lock.readLock();
+      try {
+         return lookup(id);
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   private ClientRecord lookup(long id) {
+      IndexFile index = this.index;
+
+      if (!index.ids.mightContain(id)) {
+         filtered.increment();
+         return null;
+      }
+
+      long start = System.nanoTime();
+      int slot = index.find(id);
+      ClientRecord client = slot < 0 ? null : data.read(index.offset(slot));
+      coldReads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return client;
+   }
+
+   private void insert(long id, long offset) throws IOException {
+      if ((size.get() + 1) * 2L > index.mask + 1L) {
+         if (index.mask + 1 == MAX_SLOTS) {
+            throw new IllegalStateException("The index in " + dir + " is full, shard the store to hold more clients");
+         }
+
+         IndexFile grown = new IndexFile((index.mask + 1) * 2);
+
+         for (int slot = 0; slot <= index.mask; slot++) {
+            long key = index.key(slot);
+
+            if (key != 0) {
+               grown.put(key, index.offset(slot));
+            }
+         }
+
+         index.close();
+         index = grown;
+
+         if (compaction != null) { //the ids moved, so the copy may have passed over some of them
+            compaction.aborted = true;
+         }
+      }
+
+      index.put(id, offset);
+   }
+
+   /**
+    * Called under the write lock, which the compaction thread waits for before it starts the copy. A compaction that 
+    * cannot start is left to the next write.
+    */
+   private void startCompaction() {
+      Compaction started;
+
+      try {
+         started = new Compaction(index.mask + 1);
+      } catch (IOException e) {
+         log.error("Clients could not be compacted in " + dir, e);
+         return;
+      }
+
+      try {
+         compactions.execute(() -> compact(started));
+         compaction = started;
+      } catch (RejectedExecutionException e) { //the store is being closed
+         closeQuietly(started);
+      }
+   }
+
+   /**
+    * Runs on the compaction thread. Copies the live clients to the new data file and index of the compaction, which
+    * also rebuilds the Bloom filter without the deleted ids, and replaces the cold tier with them. When the index grew
+    * in the meantime, or the copy failed, the copy is dropped and the next write starts over.
+    */
+   private void compact(Compaction next) {
+      try {
+         for (int from = 0; ; from += BLOCK_SLOTS) {
+            long stamp = lock.readLock();
+
+            try {
+               if (next.aborted || from > index.mask) break;
+
+               for (int slot = from, to = Math.min(from + BLOCK_SLOTS, index.mask + 1); slot < to; slot++) {
+                  long id = index.key(slot);
+
+                  if (id != 0) {
+                     next.copy(id, data.read(index.offset(slot)));
+                  }
+               }
+            } finally {
+               lock.unlockRead(stamp);
+            }
+         }
+      } catch (IOException | RuntimeException e) {
+         log.error("Clients could not be compacted in " + dir, e);
+         next.aborted = true;
+      }
+
+      long stamp = lock.writeLock();
+
+      try {
+         if (!next.aborted) {
+            next.catchUp();
+         }
+
+         if (next.aborted || next.newIndex.count != size.get()) {
+            next.close();
+         } else {
+            data.close();
+            index.close();
+            data = next.newData;
+            index = next.newIndex;
+         }
+      } catch (IOException | RuntimeException e) {
+         log.error("Clients could not be compacted in " + dir, e);
+         closeQuietly(next);
+      } finally {
+         if (compaction == next) {
+            compaction = null;
+         }
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Opens a new file that is deleted when closed, or right away where the operating system allows it.
+    */
+   private FileChannel open(String prefix) throws IOException {
+      Path file = Files.createTempFile(dir, prefix, ".cold");
+      return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+   }
+
+   private void cacheWritten(int slot, Entry entry) {
+      if (slot < 0) return;
+
+      Entry replaced = hot.getAndSet(slot, entry);
+
+      if (replaced != null && replaced.id != entry.id) {
+         evictions.increment();
+      }
+   }
+
+   /**
+    * @return the hot tier slot of the id, -1 when there is no hot tier
+    */
+   private int hotSlot(long id) {
+      return hotMask < 0 ? -1 : (int) (hash(id) >>> 32) & hotMask;
+   }
+
+   private long chunkMask() {
+      return (1L << chunkBits) - 1;
+   }
+
+   private static long hash(long id) {
+      return id * 0x9E3779B97F4A7C15L;
+   }
+
+   private static void closeQuietly(Compaction compaction) {
+      try {
+         compaction.close();
+      } catch (IOException e) { //the files are deleted by the operating system at the latest when the process ends
+      }
+   }
+
+   private static Counter gets(MeterRegistry registry, String result) {
+      return Counter.builder("cache.gets")
+            .description("Clients looked up in the hot tier")
+            .tag("cache", NAME)
+            .tag("result", result)
+            .register(registry);
+   }
+
+   /**
+    * The data file: every version of a client appended as an int byte length, the version and the {@link ClientCodec}
+    * encoding, mapped in chunks that records do not span.
+    */
+   private final class DataFile {
+      final FileChannel file;
+      MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+      long end;
+      long garbage; //the bytes of replaced versions, of deleted clients and at the ends of chunks
+
+      DataFile() throws IOException {
+         this.file = open("clients-");
+      }
+
+      ClientRecord read(long offset) {
+         ByteBuffer chunk = chunks[(int) (offset >>> chunkBits)];
+         int position = (int) (offset & chunkMask());
+         ByteBuffer record = chunk.slice(position + Integer.BYTES, chunk.getInt(position));
+         long version = record.getLong();
+         return ClientCodec.decode(record, version);
+      }
+
+      int recordBytes(long offset) {
+         return Integer.BYTES + chunks[(int) (offset >>> chunkBits)].getInt((int) (offset & chunkMask()));
+      }
+
+      /**
+       * @return the data file offset of the client
+       */
+      long append(ClientRecord client) throws IOException {
+         byte[][] fields = ClientCodec.fields(client);
+         int length = Long.BYTES + ClientCodec.size(fields);
+         long chunkSize = 1L << chunkBits;
+
+         if (Integer.BYTES + length > chunkSize) {
+            throw new IllegalArgumentException("Client " + client.getClient() + " takes more than " + chunkSize 
+                  + " bytes");
+         }
+         if ((end & chunkMask()) + Integer.BYTES + length > chunkSize) { //records do not span chunks
+            garbage += chunkSize - (end & chunkMask());
+            end = (end | chunkMask()) + 1;
+         }
+
+         int chunk = (int) (end >>> chunkBits);
+
+         if (chunk == chunks.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+            grown[chunk] = file.map(FileChannel.MapMode.READ_WRITE, end, chunkSize);
+            chunks = grown;
+         }
+
+         ByteBuffer buffer = chunks[chunk].duplicate().position((int) (end & chunkMask()));
+         buffer.putInt(length).putLong(client.getVersion());
+         ClientCodec.encode(client.getClient(), fields, buffer);
+
+         long offset = end;
+         end += Integer.BYTES + length;
+         return offset;
+      }
+
+      void close() throws IOException {
+         file.close();
+      }
+   }
+
+   /**
+    * The index of the data file offset of every id, a linear probing hash table with backward-shift deletion like the
+    * segments of {@link CompactClientStore}, with a Bloom filter of the ids added.
+    */
+   private final class IndexFile {
+      final FileChannel file;
+      final MappedByteBuffer slots;
+      final int mask;
+      final BloomFilter ids;
+      int count;
+
+      IndexFile(int slotCount) throws IOException {
+         this.file = open("index-");
+         this.slots = file.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_BYTES);
+         this.mask = slotCount - 1;
+         this.ids = new BloomFilter(slotCount * FILTER_BITS_PER_SLOT);
+      }
+
+      /**
+       * @return the slot of the id, -1 when it is not stored
+       */
+      int find(long id) {
+         for (int slot = (int) hash(id) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            long key = key(slot);
+            if (key == id) return slot;
+            if (key == 0) return -1;
+         }
+
+         return -1;
+      }
+
+      long key(int slot) {
+         return slots.getLong(slot * SLOT_BYTES);
+      }
+
+      long offset(int slot) {
+         return slots.getLong(slot * SLOT_BYTES + Long.BYTES);
+      }
+
+      void setOffset(int slot, long offset) {
+         slots.putLong(slot * SLOT_BYTES + Long.BYTES, offset);
+      }
+
+      /**
+       * Adds an id that is not stored yet.
+       */
+      void put(long id, long offset) {
+         int slot = (int) hash(id) & mask;
+
+         while (key(slot) != 0) {
+            slot = (slot + 1) & mask;
+         }
+
+         setOffset(slot, offset);
+         slots.putLong(slot * SLOT_BYTES, id); //last, so an optimistic reader never finds the id before its offset
+         ids.add(id);
+         count++;
+      }
+
+      /**
+       * @param compaction the compaction in progress, told about the ids moved to an earlier slot, or null
+       */
+      void remove(int slot, Compaction compaction) {
+         int free = slot;
+
+         for (int next = (free + 1) & mask; key(next) != 0; next = (next + 1) & mask) {
+            long key = key(next);
+            int home = (int) hash(key) & mask;
+            boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+
+            if (movable) {
+               setOffset(free, offset(next));
+               slots.putLong(free * SLOT_BYTES, key);
+               free = next;
+
+               if (compaction != null) { //may have moved into a block the copy passed already
+                  compaction.written(key);
+               }
+            }
+         }
+
+         slots.putLong(free * SLOT_BYTES, 0L);
+         count--;
+      }
+
+      void close() throws IOException {
+         file.close();
+      }
+   }
+
+   /**
+    * A compaction in progress: the new data file and index the live clients are copied to, and the ids written or moved
+    * in the index since it started, which are copied again before the new files replace the old ones. Only changed
+    * under the write lock, but for the copy by the compacting thread under the read lock.
+    */
+   private final class Compaction {
+      final DataFile newData;
+      final IndexFile newIndex;
+      long[] written = new long[64];
+      int writtenCount;
+      boolean aborted;
+
+      Compaction(int slotCount) throws IOException {
+         this.newData = new DataFile();
+         this.newIndex = new IndexFile(slotCount);
+      }
+
+      void written(long id) {
+         if (writtenCount == written.length) {
+            written = Arrays.copyOf(written, writtenCount * 2);
+         }
+         written[writtenCount++] = id;
+      }
+
+      void copy(long id, ClientRecord client) throws IOException {
+         long offset = newData.append(client);
+         int slot = newIndex.find(id);
+
+         if (slot < 0) {
+            newIndex.put(id, offset);
+         } else {
+            newData.garbage += newData.recordBytes(newIndex.offset(slot));
+            newIndex.setOffset(slot, offset);
+         }
+      }
+
+      /**
+       * Copies the clients written since the compaction started as they are now in the live cold tier.
+       */
+      void catchUp() throws IOException {
+         for (int position = 0; position < writtenCount; position++) {
+            long id = written[position];
+            int slot = index.find(id);
+
+            if (slot >= 0) {
+               copy(id, data.read(index.offset(slot)));
+               continue;
+            }
+
+            int copied = newIndex.find(id);
+
+            if (copied >= 0) {
+               newData.garbage += newData.recordBytes(newIndex.offset(copied));
+               newIndex.remove(copied, null);
+            }
+         }
+      }
+
+      void close() throws IOException {
+         newData.close();
+         newIndex.close();
+      }
+   }
+
+   /**
+    * An iteration of the clients, see {@link #values()}.
+    */
+   private final class Values implements Iterator<ClientDto> {
+      final int slotCount; //of the index when the iteration started
+      int from;
+      long[] ids = new long[64];
+      int idCount;
+      int position;
+      ClientDto next;
+
+      Values() {
+         long stamp = lock.readLock();
+
+         try {
+            slotCount = index.mask + 1;
+         } finally {
+            lock.unlockRead(stamp);
+         }
+      }
+
+      @Override
+      public boolean hasNext() {
+         while (next == null) {
+            if (position == idCount) {
+               if (from == slotCount) return false;
+
+               int to = Math.min(from + BLOCK_SLOTS, slotCount);
+               collect(from, to);
+               from = to;
+               continue;
+            }
+
+            long id = ids[position++];
+            int slot = hotSlot(id);
+            Entry entry = slot < 0 ? null : hot.get(slot);
+            next = entry != null && entry.id == id ? entry.client : readCold(id);
+         }
+         return true;
+      }
+
+      @Override
+      public ClientDto next() {
+         if (!hasNext()) throw new NoSuchElementException();
+
+         ClientDto client = next;
+         next = null;
+         return client;
+      }
+
+      /**
+       * Collects the ids whose home slot in an index of the slot count of the iteration is in the range. The index only
+       * grows by doubling, so these ids have their home slot in the copy of the range at each multiple of that slot 
+       * count in the index now, and linear probing keeps each of them in the run of occupied slots from its home slot.
+       */
+      void collect(int from, int to) {
+         idCount = 0;
+         position = 0;
+         long stamp = lock.readLock();
+
+         try {
+            IndexFile index = TieredClientStore.this.index;
+
+            for (int low = from; low <= index.mask; low += slotCount) {
+               int high = low + to - from;
+
+               for (int step = 0; step <= index.mask; step++) {
+                  long id = index.key((low + step) & index.mask);
+
+                  if (id == 0) {
+                     if (step >= high - low) break; //the end of the run that holds the ids of the range
+
+                     continue;
+                  }
+
+                  int home = (int) hash(id) & index.mask;
+
+                  if (home >= low && home < high) {
+                     if (idCount == ids.length) {
+                        ids = Arrays.copyOf(ids, idCount * 2);
+                     }
+                     ids[idCount++] = id;
+                  }
+               }
+            }
+         } finally {
+            lock.unlockRead(stamp);
+         }
+      }
+   }
+
+   /**
+    * A client of the hot tier, or an id known to be absent since its client was deleted.
+    */
+   private static final class Entry {
+      final long id;
+      final ClientRecord client;
+
+      Entry(long id, ClientRecord client) {
+         this.id = id;
+         this.client = client;
+      }
+   }
+}
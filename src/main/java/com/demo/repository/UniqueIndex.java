@@ -0,0 +1,42 @@
+package com.demo.repository;
+
+import java.util.Iterator;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+
+/**
+ * Secondary index for a field whose values may be held by one client only, created by the {@link ClientStore} so
+ * engines holding more clients than fit the heap can keep it next to the clients.
+ * <p>
+ * A value is reserved for a client before the client is written, and committed once the store holds the client, so
+ * concurrent writers racing for the same value are resolved before either of them is stored.
+ */
+interface UniqueIndex {
+   /**
+    * Reserves the field value of the client for its id.
+    *
+    * @return true when the value was newly reserved, false when the client already held it or the value is null
+    * @throws UniqueConstraintException when another client holds the value
+    */
+   boolean reserve(ClientDto client);
+
+   /**
+    * Records that the store now holds the client with the value it reserved.
+    */
+   void commit(ClientDto client);
+
+   /**
+    * Assigns the field value of the client to its id, whoever held it before.
+    */
+   void take(ClientDto client);
+
+   void release(ClientDto client);
+
+   /**
+    * @return the ids that may hold the value and are greater than {@code after}, in ascending order
+    */
+   Iterator<Long> idsAfter(String value, long after);
+
+   boolean contains(String value);
+}
@@ -0,0 +1,343 @@
+package com.demo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.demo.dto.ClientDto;
+
+/**
+ * Append-only log of client mutations, split in numbered segment files.
+ * <p>
+ * Records are framed as an int payload length, the CRC32 of the payload and the payload itself: a PUT, DELETE or 
+ * SEQUENCE operation byte followed by the {@link ClientCodec} encoding of the client, its id or the highest id handed 
+ * out.
+ * <p>
+ * Appending only copies the record into a pending buffer. A single writer thread drains everything that is pending 
+ * with one write and one fsync, so concurrent writers waiting in {@link #awaitDurable} share the cost of the fsync 
+ * (group commit). The writer thread also switches to the next segment when asked to, between the records appended 
+ * before and after the request, so a rotation never waits for appends to pause.
+ */
+class WriteAheadLog implements Closeable {
+   static final byte PUT = 1;
+   static final byte DELETE = 2;
+   static final byte SEQUENCE = 3;
+
+   static final int HEADER_BYTES = 2 * Integer.BYTES;
+   static final long MAX_MAPPED_WINDOW = 1L << 30;
+   static final int BUFFER_BYTES = 1 << 20;
+
+   private final Path dir;
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition pendingWrites = lock.newCondition();
+   private final Condition synced = lock.newCondition();
+   private final Thread writer;
+
+   private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+   private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+   private FileChannel channel;
+   private long segment;
+   private int rotatePosition = -1; //where the records of the next segment start in pending, -1 when not rotating
+   private long appendedCount;
+   private long syncedCount;
+   private long syncCount;
+   private boolean closed;
+   private IOException failure;
+
+   WriteAheadLog(Path dir, long segment) throws IOException {
+      this.dir = dir;
+      this.segment = segment;
+      this.channel = open(dir, segment);
+      this.writer = new Thread(this::writeLoop, "client-wal-writer");
+      this.writer.setDaemon(true);
+      this.writer.start();
+   }
+
+   static Path segmentPath(Path dir, long segment) {
+      return dir.resolve(String.format("wal-%016d.log", segment));
+   }
+
+   static byte[] put(ClientDto client) {
+      byte[][] fields = ClientCodec.fields(client);
+      ByteBuffer record = record(1 + ClientCodec.size(fields));
+      record.put(PUT);
+      ClientCodec.encode(client.getClient(), fields, record);
+      return seal(record);
+   }
+
+   static byte[] delete(Long id) {
+      return idRecord(DELETE, id);
+   }
+
+   static byte[] sequence(long highestId) {
+      return idRecord(SEQUENCE, highestId);
+   }
+
+   /**
+    * Queues a record for the next group commit.
+    *
+    * @return the ticket to wait for with {@link #awaitDurable}
+    */
+   long append(byte[] record) {
+      lock.lock();
+      try {
+         if (closed || failure != null) {
+            throw new IllegalStateException("Write-ahead log is closed", failure);
+         }
+         if (pending.remaining() < record.length) {
+            pending = grow(pending, record.length);
+         }
+
+         pending.put(record);
+         pendingWrites.signal();
+         return ++appendedCount;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Blocks until the record with the ticket is on disk.
+    */
+   void awaitDurable(long ticket) {
+      lock.lock();
+      try {
+         while (syncedCount < ticket) {
+            if (failure != null) {
+               throw new UncheckedIOException("Write-ahead log failed", failure);
+            }
+            synced.awaitUninterruptibly();
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Continues the log in a new segment, and waits for the records appended before the call to be on disk in the older
+    * segments. Records appended meanwhile go to the new segment.
+    *
+    * @return the number of the new segment; all records appended before the call are in older segments
+    */
+   long rotate() throws IOException {
+      lock.lock();
+      try {
+         if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed", failure);
+         }
+
+         long next = segment + 1;
+         rotatePosition = pending.position();
+         pendingWrites.signal();
+
+         while (segment < next && failure == null) {
+            synced.awaitUninterruptibly();
+         }
+         if (failure != null) {
+            throw failure;
+         }
+         return next;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   long syncCount() {
+      lock.lock();
+      try {
+         return syncCount;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Refuses further appends and waits for the records appended before to be on disk.
+    */
+   @Override
+   public void close() throws IOException {
+      lock.lock();
+      try {
+         if (closed) return;
+
+         closed = true;
+         pendingWrites.signal();
+      } finally {
+         lock.unlock();
+      }
+
+      try {
+         writer.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      channel.close();
+
+      if (failure != null) {
+         throw failure;
+      }
+   }
+
+   /**
+    * Reads the framed records of a file through memory-mapped windows, passing each payload to the consumer.
+    *
+    * @return the length of the valid prefix of the file; a torn or corrupt record ends the read
+    */
+   static long read(FileChannel file, Consumer<ByteBuffer> consumer) throws IOException {
+      long size = file.size();
+      long position = 0;
+      CRC32 crc = new CRC32();
+
+      while (position < size) {
+         long window = Math.min(size - position, MAX_MAPPED_WINDOW);
+         MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, position, window);
+         int consumed = 0;
+
+         while (window - consumed >= HEADER_BYTES) {
+            int length = buffer.getInt(consumed);
+            if (length <= 0 || consumed + HEADER_BYTES + length > window) break;
+
+            ByteBuffer payload = buffer.slice(consumed + HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(consumed + Integer.BYTES)) {
+               return position + consumed;
+            }
+
+            consumer.accept(payload);
+            consumed += HEADER_BYTES + length;
+         }
+
+         if (consumed == 0) break;
+         position += consumed;
+      }
+
+      return position;
+   }
+
+   private void writeLoop() {
+      while (true) {
+         ByteBuffer batch;
+         FileChannel target;
+         long batchCount;
+         int split;
+         long nextSegment;
+
+         lock.lock();
+         try {
+            while (pending.position() == 0 && rotatePosition < 0 && !closed) {
+               pendingWrites.awaitUninterruptibly();
+            }
+            if (pending.position() == 0 && rotatePosition < 0) return;
+
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            target = channel;
+            batchCount = appendedCount;
+            split = rotatePosition;
+            nextSegment = segment + 1;
+            rotatePosition = -1;
+         } finally {
+            lock.unlock();
+         }
+
+         try {
+            batch.flip();
+
+            if (split >= 0) { //the records before the split belong to the current segment
+               ByteBuffer older = batch.duplicate().limit(split);
+               write(target, older);
+               target.force(false);
+               target.close();
+               target = open(dir, nextSegment);
+               batch.position(split);
+
+               lock.lock();
+               try {
+                  channel = target;
+                  segment = nextSegment;
+               } finally {
+                  lock.unlock();
+               }
+            }
+
+            if (batch.hasRemaining()) {
+               write(target, batch);
+               target.force(false);
+            }
+         } catch (IOException e) {
+            fail(e);
+            return;
+         } finally {
+            batch.clear();
+         }
+
+         lock.lock();
+         try {
+            syncedCount = batchCount;
+            syncCount++;
+            synced.signalAll();
+         } finally {
+            lock.unlock();
+         }
+      }
+   }
+
+   private void fail(IOException error) {
+      lock.lock();
+      try {
+         failure = error;
+         synced.signalAll();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   private static FileChannel open(Path dir, long segment) throws IOException {
+      return FileChannel.open(segmentPath(dir, segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+   }
+
+   private static void write(FileChannel file, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         file.write(buffer);
+      }
+   }
+
+   private static ByteBuffer grow(ByteBuffer buffer, int required) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+      buffer.flip();
+      return grown.put(buffer);
+   }
+
+   private static byte[] idRecord(byte operation, long id) {
+      ByteBuffer record = record(1 + Long.BYTES);
+      record.put(operation);
+      record.putLong(id);
+      return seal(record);
+   }
+
+   private static ByteBuffer record(int payloadLength) {
+      ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payloadLength);
+      record.putInt(payloadLength);
+      record.putInt(0); //crc placeholder
+      return record;
+   }
+
+   private static byte[] seal(ByteBuffer record) {
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), HEADER_BYTES, record.capacity() - HEADER_BYTES);
+      record.putInt(Integer.BYTES, (int) crc.getValue());
+      return record.array();
+   }
+}
@@ -0,0 +1,207 @@
+package com.demo.service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientDto;
+import com.demo.dto.ExportedClientDto;
+import com.demo.repository.ClientRepo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Keeps the clients of a follower instance in step with the leader instance that takes the writes, so the follower can
+ * serve reads from its own repository.
+ * <p>
+ * The follower applies the change stream of the leader ({@code GET /v1/clients/changes}) in order. To start, it opens
+ * the stream and, once the leader sent the first event, loads all clients from the export of the leader: every change
+ * the export may have missed is then still to come on the stream, and replaying a change the export already held is
+ * harmless since every change holds the whole client. Once loaded, the follower takes over the epoch of the versions
+ * of the leader that the first event carried, so both hand out the same ETags. A stream that ended is resumed after the
+ * last change applied.
+ * When the leader lost changes the follower did not read yet, because the follower fell more than the capacity of the
+ * change log behind or the leader restarted, the follower loads the export again and deletes the clients missing from
+ * it.
+ * <p>
+ * The replication lag is the time since the latest point the follower is known to be current with: the time of the
+ * last change applied, or of the last heartbeat the leader sends when there are no changes, as told by the clock of
+ * the leader. It is published as the {@code client.replication.lag} gauge, and while it exceeds the maximum lag, or
+ * before the clients were loaded, the follower reports itself down to the health endpoint so that a load balancer can
+ * stop sending it reads.
+ */
+@Slf4j
+public class ClientFollower implements HealthIndicator, AutoCloseable {
+   static final long NONE = -1L;
+
+   private final ClientRepo repo;
+   private final ClientJsonCache jsonCache;
+   private final WebClient leader;
+   private final Duration maxLag;
+   private final Duration retryInterval;
+   private final Counter resyncs;
+   private final AtomicLong sequence = new AtomicLong(NONE);
+   private final AtomicLong currentAt = new AtomicLong(System.currentTimeMillis());
+   private volatile boolean loaded;
+   private Disposable replication;
+
+   /**
+    * @param leader the client of the leader, with its base URL
+    */
+   public ClientFollower(ClientRepo repo, ClientJsonCache jsonCache, WebClient leader, Duration maxLag,
+         Duration retryInterval, MeterRegistry registry) {
+      this.repo = repo;
+      this.jsonCache = jsonCache;
+      this.leader = leader;
+      this.maxLag = maxLag;
+      this.retryInterval = retryInterval;
+      this.resyncs = Counter.builder("client.replication.resyncs")
+            .description("Reloads of all clients from the leader after changes were lost")
+            .register(registry);
+      Gauge.builder("client.replication.lag", this, follower -> follower.lag().toMillis() / 1000.0)
+            .description("Time since the latest point the follower is known to be current with the leader")
+            .baseUnit("seconds")
+            .register(registry);
+   }
+
+   /**
+    * Starts following the leader in the background, retrying until the follower is closed.
+    */
+   public void start() {
+      replication = Flux.defer(this::follow)
+            .doOnError(error -> log.warn("Replication from the leader failed: " + error))
+            .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, retryInterval))
+            .repeatWhen(ends -> ends.delayElements(retryInterval))
+            .subscribe();
+   }
+
+   @Override
+   public void close() {
+      if (replication != null) {
+         replication.dispose();
+      }
+   }
+
+   /**
+    * @return the time since the latest point the follower is known to be current with the leader
+    */
+   public Duration lag() {
+      return Duration.ofMillis(Math.max(0L, System.currentTimeMillis() - currentAt.get()));
+   }
+
+   /**
+    * @return the sequence of the last change of the leader applied, or {@value #NONE} when the clients still need to
+    * be loaded
+    */
+   public long sequence() {
+      return sequence.get();
+   }
+
+   @Override
+   public Health health() {
+      Duration lag = lag();
+      Health.Builder health = loaded && lag.compareTo(maxLag) <= 0 ? Health.up() : Health.down();
+
+      return health.withDetail("loaded", loaded)
+            .withDetail("sequence", sequence.get())
+            .withDetail("lag", lag.toString())
+            .build();
+   }
+
+   private Flux<ClientChangeDto> follow() {
+      long since = sequence.get();
+
+      if (since != NONE) {
+         return changes(since).doOnNext(this::apply);
+      }
+
+      return changes(null).switchOnFirst((first, changes) ->
+            first.hasValue() ? load(first.get().getEpoch()).thenMany(changes.doOnNext(this::apply)) : changes);
+   }
+
+   /**
+    * @param since the sequence of the last change applied, null to start with the next change of the leader
+    */
+   private Flux<ClientChangeDto> changes(Long since) {
+      return leader.get()
+            .uri(uri -> uri.path("/v1/clients/changes").queryParamIfPresent("since", Optional.ofNullable(since)).build())
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .retrieve()
+            .bodyToFlux(ClientChangeDto.class)
+            .publishOn(Schedulers.boundedElastic()); //a durable store waits for the disk on every write
+   }
+
+   /**
+    * Stores all clients of the export of the leader at their versions there, and deletes the clients it does not hold.
+    *
+    * @param epoch the epoch of the versions of the leader, null when the leader does not tell it
+    */
+   private Mono<Void> load(String epoch) {
+      Set<Long> exported = new HashSet<>();
+
+      return leader.get()
+            .uri("/v1/clients/export")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .retrieve()
+            .bodyToFlux(ExportedClientDto.class)
+            .publishOn(Schedulers.boundedElastic())
+            .doOnNext(exportedClient -> {
+               ClientDto client = exportedClient.getData();
+               client.setVersion(exportedClient.getVersion());
+               exported.add(client.getClient());
+               replicate(client.getClient(), client);
+            })
+            .then(Mono.fromRunnable(() -> {
+               for (ClientDto client : repo.findAll()) {
+                  if (!exported.contains(client.getClient())) {
+                     replicate(client.getClient(), null);
+                  }
+               }
+
+               if (epoch != null) repo.replicateEpoch(epoch);
+               loaded = true;
+               log.info("Loaded " + exported.size() + " clients from the leader");
+            }));
+   }
+
+   private void apply(ClientChangeDto change) {
+      if (change.getType() == ClientChangeDto.Type.RESYNC) {
+         log.warn("Changes of the leader were lost after sequence " + sequence.get() + ", reloading all clients");
+         resyncs.increment();
+         sequence.set(NONE); //the leader ends the stream, the next one starts with a reload
+         return;
+      }
+
+      if (change.getType() == ClientChangeDto.Type.DELETED) {
+         replicate(change.getClient(), null);
+      } else if (change.getType() != ClientChangeDto.Type.HEARTBEAT) {
+         ClientDto client = change.getData();
+         client.setVersion(change.getVersion());
+         replicate(change.getClient(), client);
+      }
+
+      sequence.set(change.getSequence());
+      currentAt.accumulateAndGet(change.getTime(), Math::max);
+   }
+
+   private void replicate(Long id, ClientDto client) {
+      repo.replicate(id, client);
+      jsonCache.invalidate(id);
+   }
+}
@@ -0,0 +1,123 @@
+package com.demo.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.demo.dto.ClientDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bounded cache of the JSON of single clients, so repeated reads of the same client skip serializing it again.
+ * <p>
+ * Entries are keyed by client id and version. A client that was written since its JSON was cached is at another
+ * version and misses, so a cached body is never out of date; {@link #invalidate} only frees the entry early.
+ * <p>
+ * The cache is a direct-mapped table: every id has one slot, and an entry replaces the entry of another id in the same
+ * slot. Lookups and replacements are single lock-free array accesses, and a hit allocates nothing. The hot clients of
+ * skewed reads are cached again right after being replaced, so the table only needs to be a few times larger than the
+ * hot set.
+ * <p>
+ * Hits, misses and evictions are counted in the {@code cache.gets} and {@code cache.evictions} meters, tagged
+ * {@code cache=}{@value #NAME}.
+ */
+@Component
+public class ClientJsonCache {
+   static final String NAME = "clientJson";
+
+   private final ObjectWriter writer;
+   private final AtomicReferenceArray<Entry> entries;
+   private final int mask;
+   private final Counter hits;
+   private final Counter misses;
+   private final Counter evictions;
+
+   /**
+    * @param capacity the number of slots, rounded up to a power of two; 0 disables the cache
+    */
+   public ClientJsonCache(ObjectMapper mapper, MeterRegistry registry,
+         @Value("${client.json-cache.capacity:16384}") int capacity) {
+      this.writer = mapper.writerFor(ClientDto.class);
+      this.entries = new AtomicReferenceArray<>(capacity > 0 ? Integer.highestOneBit(capacity * 2 - 1) : 0);
+      this.mask = entries.length() - 1;
+      this.hits = gets(registry, "hit");
+      this.misses = gets(registry, "miss");
+      this.evictions = Counter.builder("cache.evictions")
+            .description("Cached client JSON bodies replaced by the body of another client")
+            .tag("cache", NAME)
+            .register(registry);
+   }
+
+   /**
+    * @return the JSON of the client, from the cache when it holds this version of the client
+    */
+   public byte[] json(ClientDto client) throws JsonProcessingException {
+      long id = client.getClient();
+      int slot = slot(id);
+      Entry entry = slot < 0 ? null : entries.get(slot);
+
+      if (entry != null && entry.id == id && entry.version == client.getVersion()) {
+         hits.increment();
+         return entry.json;
+      }
+
+      misses.increment();
+      byte[] json = writer.writeValueAsBytes(client);
+      if (slot < 0) return json;
+
+      Entry replaced = entries.getAndSet(slot, new Entry(id, client.getVersion(), json));
+
+      if (replaced != null && replaced.id != id) {
+         evictions.increment();
+      }
+
+      return json;
+   }
+
+   /**
+    * Drops the cached JSON of the client, after it was updated or removed.
+    */
+   public void invalidate(Long id) {
+      int slot = slot(id);
+      if (slot < 0) return;
+
+      Entry entry = entries.get(slot);
+
+      if (entry != null && entry.id == id) {
+         entries.compareAndSet(slot, entry, null); //a newer entry stored meanwhile is left alone
+      }
+   }
+
+   /**
+    * @return the slot of the id, -1 when the cache is disabled
+    */
+   private int slot(long id) {
+      return mask < 0 ? -1 : (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+   }
+
+   private static Counter gets(MeterRegistry registry, String result) {
+      return Counter.builder("cache.gets")
+            .description("Client JSON bodies looked up in the cache")
+            .tag("cache", NAME)
+            .tag("result", result)
+            .register(registry);
+   }
+
+   private static final class Entry {
+      final long id;
+      final long version;
+      final byte[] json;
+
+      Entry(long id, long version, byte[] json) {
+         this.id = id;
+         this.version = version;
+         this.json = json;
+      }
+   }
+}
@@ -1,23 +1,54 @@
 package com.demo.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.stereotype.Service;
 
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
 import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.dto.ValidationFailureDto;
+import com.demo.error.ChangesLostException;
 import com.demo.error.DataNotFoundException;
+import com.demo.error.UniqueConstraintException;
+import com.demo.error.ValidationCode;
 import com.demo.error.ValidationException;
+import com.demo.error.VersionConflictException;
+import com.demo.repository.ChangeLog;
 import com.demo.repository.ClientRepo;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
 public class ClientService {
+   public static final int MAX_PAGE_SIZE = 1000;
+   public static final int MAX_BATCH_SIZE = 10_000;
+   public static final int CHANGE_BATCH_SIZE = 256;
+   public static final Duration CHANGE_POLL_INTERVAL = Duration.ofMillis(100);
+   public static final Duration CHANGE_HEARTBEAT_INTERVAL = Duration.ofSeconds(1);
+   
+   static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+   static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+   
    private final ClientRepo clientRepo;
+   private final ClientJsonCache jsonCache;
 
+   /**
+    * @return a copy of the stored client, which the caller can modify and pass to {@link #update}
+    */
    public ClientDto find(Long id) {
       ClientDto client = clientRepo.findById(id);
       
@@ -25,104 +56,308 @@ public class ClientService {
          throw new DataNotFoundException("Client id: " + id);
       }
       
-      return client;
+      return client.copy();
+   }
+
+   /**
+    * Finds many clients at once, reading them from the repository in one pass. Repeated ids are looked up once, and 
+    * ids no client exists for are reported as missing instead of failing the request.
+    */
+   public MultiGetResultDto findAllById(List<Long> ids) {
+      if (ids.size() > MAX_BATCH_SIZE) {
+         throw new ValidationException("Too many ids: " + ids.size() + ", at most " + MAX_BATCH_SIZE);
+      }
+      if (ids.stream().anyMatch(Objects::isNull)) {
+         throw new ValidationException("Invalid id: null");
+      }
+      
+      List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+      List<ClientDto> found = clientRepo.findAllById(distinctIds);
+      List<ClientDto> clients = new ArrayList<>(found.size());
+      List<Long> missing = new ArrayList<>();
+      
+      for (int index = 0; index < found.size(); index++) {
+         if (found.get(index) != null) {
+            clients.add(found.get(index).copy());
+         } else {
+            missing.add(distinctIds.get(index));
+         }
+      }
+      
+      return new MultiGetResultDto(clients, missing);
    }
 
    public Long create(ClientDto client) {
       validateNonTransient(client);
-      String mobileNumber = client.getMobileNumber();
       
       //check transient errors - error which may not occur in subsequent requests when the data changes.
-      if (mobileNumber != null && clientRepo.fieldExists(ClientDto::getMobileNumber, mobileNumber)) {
-         throw new ValidationException("Client creation failed: Existing mobileNumber");
-      }
-      if (clientRepo.fieldExists(ClientDto::getIdNumber, client.getIdNumber())) {
-         throw new ValidationException("Client creation failed: Existing idNumber");
+      try {
+         return clientRepo.insert(client);
+      } catch (UniqueConstraintException error) {
+         throw new ValidationException("Client creation failed: Existing " + error.getField());
       }
-      
-      return clientRepo.insert(client);
    }
 
    public void remove(Long id) {
       if (!clientRepo.delete(id)) {
          throw new DataNotFoundException("Client removal failed for id: " + id);
       }
+      
+      jsonCache.invalidate(id);
    }
 
    public ClientDto update(Long id, ClientDto client) {
+      return update(id, client, null);
+   }
+
+   /**
+    * Updates the client only when it is still at the expected version. The given client is left as it is.
+    *
+    * @param expectedVersion the version the stored client must be at, or null to update any version
+    * @return the client as stored, with its id and new version
+    * @throws VersionConflictException when the client was changed since the expected version
+    */
+   public ClientDto update(Long id, ClientDto client, Long expectedVersion) {
       validateNonTransient(client);
-      ClientDto oldClient = find(id);
-      String mobileNumber = client.getMobileNumber();
+      ClientDto updated = client.copy();
       
       //check transient errors - error which may not occur in subsequent requests when the data changes.
-      if (!Objects.equals(oldClient.getMobileNumber(), mobileNumber)
-            && mobileNumber != null && clientRepo.fieldExists(ClientDto::getMobileNumber, mobileNumber)) {
-         throw new ValidationException("Client update failed: Existing mobileNumber");
-      }
-      if (!Objects.equals(oldClient.getIdNumber(), client.getIdNumber())
-            && clientRepo.fieldExists(ClientDto::getIdNumber, client.getIdNumber())) {
-         throw new ValidationException("Client creation failed: Existing idNumber");
+      try {
+         if (!clientRepo.update(id, updated, expectedVersion == null ? ClientRepo.ANY_VERSION : expectedVersion)) {
+            throw new DataNotFoundException("Client id: " + id);
+         }
+         
+         jsonCache.invalidate(id);
+      } catch (UniqueConstraintException error) {
+         throw new ValidationException("Client update failed: Existing " + error.getField());
       }
       
-      client.setClient(id);
-      clientRepo.update(id, client);
-      return client;
+      return updated;
    }
 
-   public List<ClientDto> search(String idNumber, String firstName, String mobileNumber) {
-      return clientRepo.search(idNumber, firstName, mobileNumber);
+   /**
+    * @param cursor the opaque cursor of the page to return, null for the first page
+    * @param limit the maximum number of clients on the page, capped at {@value #MAX_PAGE_SIZE}
+    */
+   public ClientPage search(String idNumber, String firstName, String mobileNumber, String cursor, int limit) {
+      return search(idNumber, firstName, mobileNumber, null, null, cursor, limit);
    }
    
-   void validateNonTransient(ClientDto client) {
-      List<String> reasons = new ArrayList<>();
+   /**
+    * Searches either by exact field values, or by one of the ranked firstName modes: {@code firstNamePrefix} or the 
+    * typo-tolerant {@code firstNameFuzzy}. Exact results are ordered by client id, ranked results by relevance.
+    *
+    * @param cursor the opaque cursor of the page to return, null for the first page
+    * @param limit the maximum number of clients on the page, capped at {@value #MAX_PAGE_SIZE}
+    */
+   public ClientPage search(String idNumber, String firstName, String mobileNumber, 
+         String firstNamePrefix, String firstNameFuzzy, String cursor, int limit) {
+      if (limit < 1) {
+         throw new ValidationException("Invalid limit: " + limit);
+      }
+      
+      int pageSize = Math.min(limit, MAX_PAGE_SIZE);
       
-      if (client.getFirstName() == null) {
-         reasons.add("Mandatory firstName is not submitted");
+      if (firstNamePrefix == null && firstNameFuzzy == null) {
+         List<ClientDto> clients = clientRepo.search(idNumber, firstName, mobileNumber, decodeCursor(cursor), pageSize + 1);
+         return page(clients, pageSize, clients.size() > pageSize ? clients.get(pageSize - 1).getClient() : 0L);
       }
-      if (client.getLastName() == null) {
-         reasons.add("Mandatory lastName is not submitted");
+      
+      if (idNumber != null || firstName != null || mobileNumber != null || (firstNamePrefix != null && firstNameFuzzy != null)) {
+         throw new ValidationException("Search by firstNamePrefix or firstNameFuzzy cannot be combined with other fields");
       }
-      if (client.getIdNumber() == null) {
-         reasons.add("Mandatory idNumber is not submitted");
-      } else if (!validateIdNumber(client.getIdNumber())) {
-         reasons.add("Invalid idNumber: " + client.getIdNumber());
+      
+      //ranked results are paged by offset
+      long offset = decodeCursor(cursor);
+      if (offset > Integer.MAX_VALUE) {
+         throw new ValidationException("Invalid cursor: " + cursor);
       }
-      if (!validateMobileNumber(client.getMobileNumber())) {
-         reasons.add("Invalid mobileNumber: " + client.getMobileNumber());
+      
+      List<ClientDto> clients = firstNamePrefix != null
+            ? clientRepo.searchByFirstNamePrefix(firstNamePrefix, (int) offset, pageSize + 1)
+            : clientRepo.searchByFirstNameSimilarTo(firstNameFuzzy, (int) offset, pageSize + 1);
+      return page(clients, pageSize, offset + pageSize);
+   }
+   
+   /**
+    * @param clients up to one client more than fits the page, which tells whether a next page exists
+    * @param next the cursor position of the next page
+    */
+   ClientPage page(List<ClientDto> clients, int pageSize, long next) {
+      if (clients.size() <= pageSize) {
+         return new ClientPage(copies(clients), null);
       }
       
-      if (!reasons.isEmpty()) {
-         throw new ValidationException(reasons);
+      return new ClientPage(copies(clients.subList(0, pageSize)), encodeCursor(next));
+   }
+   
+   /**
+    * Creates the clients without an id and updates the clients with one, applying and reporting them in list order. 
+    * Consecutive new clients are inserted in bulk, before the next update is applied, so a later client in the list 
+    * always sees the values taken by the earlier ones.
+    */
+   public List<BatchResultDto> batch(List<ClientDto> clients) {
+      if (clients.size() > MAX_BATCH_SIZE) {
+         throw new ValidationException("Batch too large: " + clients.size() + " clients, at most " + MAX_BATCH_SIZE);
       }
+      
+      List<BatchResultDto> results = new ArrayList<>(clients.size());
+      List<ClientDto> inserts = new ArrayList<>();
+      List<BatchResultDto> insertResults = new ArrayList<>();
+      
+      for (ClientDto client : clients) {
+         BatchResultDto result = new BatchResultDto();
+         results.add(result);
+         
+         if (client == null) {
+            result.setFailure(new ValidationFailureDto(List.of("Mandatory client is not submitted")));
+            continue;
+         }
+         
+         int codes = ClientValidator.validate(client);
+         
+         if (codes != 0) {
+            result.setFailure(new ValidationFailureDto(ValidationCode.reasons(codes, client)));
+         } else if (client.getClient() == null) {
+            inserts.add(client);
+            insertResults.add(result);
+         } else {
+            batchInsert(inserts, insertResults);
+            batchUpdate(client, result);
+         }
+      }
+      
+      batchInsert(inserts, insertResults);
+      return results;
    }
    
-   boolean validateIdNumber(String idNumber) {
-      if (idNumber == null || idNumber.length() < 13) return false;
+   /**
+    * @return the epoch the versions of the clients count in, which tells them from the versions of an earlier run
+    */
+   public String epoch() {
+      return clientRepo.epoch();
+   }
+   
+   /**
+    * @return the clients, copied one by one as they are iterated
+    */
+   public Iterable<ClientDto> findAll() {
+      Iterable<ClientDto> clients = clientRepo.findAll();
       
-      int checksum = 0;
+      return () -> new Iterator<>() {
+         private final Iterator<ClientDto> records = clients.iterator();
+         
+         @Override
+         public boolean hasNext() {
+            return records.hasNext();
+         }
+         
+         @Override
+         public ClientDto next() {
+            return records.next().copy();
+         }
+      };
+   }
+   
+   /**
+    * Follows the change log from a sequence. The stream reads the log at its own pace, in batches of up to 
+    * {@value #CHANGE_BATCH_SIZE} changes, and looks again every {@link #CHANGE_POLL_INTERVAL} once it caught up, so 
+    * writers never wait for a consumer. When changes were lost before they were read, the stream ends with a 
+    * {@link ClientChangeDto.Type#RESYNC} change.
+    * <p>
+    * A caught up stream starts with a {@link ClientChangeDto.Type#HEARTBEAT}, and sends another one after every 
+    * {@link #CHANGE_HEARTBEAT_INTERVAL} without changes, which tells the consumer how current it is.
+    *
+    * @param since the sequence of the last change the consumer has seen, null to only follow new changes
+    */
+   public Flux<ClientChangeDto> changes(Long since) {
+      ChangeLog changeLog = clientRepo.changes();
+      AtomicLong cursor = new AtomicLong(since == null ? changeLog.lastSequence() : since);
+      AtomicLong lastSent = new AtomicLong(); //epoch millis of the last change or heartbeat sent
       
-      for (int index = 12; index >= 0; index--) {
-         int digit = Character.getNumericValue(idNumber.charAt(index));
-
-         if ((index % 2) == 0) {
-            checksum += digit;
+      return Flux.defer(() -> {
+               List<ClientChangeDto> changes = changeLog.read(cursor.get(), CHANGE_BATCH_SIZE);
+               long now = System.currentTimeMillis();
+               
+               if (!changes.isEmpty()) {
+                  lastSent.set(now);
+                  return Flux.fromIterable(changes);
+               }
+               if (now - lastSent.get() < CHANGE_HEARTBEAT_INTERVAL.toMillis()) return Flux.empty();
+               
+               lastSent.set(now);
+               return Flux.just(ClientChangeDto.heartbeat(cursor.get(), now, clientRepo.epoch()));
+            })
+            .doOnNext(change -> cursor.set(change.getSequence()))
+            .repeatWhen(rounds -> rounds.concatMap(read -> read == 0 ? Mono.delay(CHANGE_POLL_INTERVAL) : Mono.just(read)))
+            .onErrorResume(ChangesLostException.class, lost -> Mono.just(ClientChangeDto.resync(lost.getLastSequence())));
+   }
+   
+   /**
+    * Inserts the pending new clients in bulk and clears them.
+    */
+   void batchInsert(List<ClientDto> inserts, List<BatchResultDto> insertResults) {
+      if (inserts.isEmpty()) return;
+      
+      List<String> conflicts = clientRepo.insertAll(inserts);
+      
+      for (int index = 0; index < inserts.size(); index++) {
+         if (conflicts.get(index) == null) {
+            insertResults.get(index).setClient(inserts.get(index).getClient());
          } else {
-            checksum += digit < 5 ? digit * 2 : digit * 2 - 9;
+            insertResults.get(index).setFailure(
+                  new ValidationFailureDto(List.of("Client creation failed: Existing " + conflicts.get(index))));
          }
       }
       
-      return (checksum % 10) == 0;
+      inserts.clear();
+      insertResults.clear();
    }
    
-   boolean validateMobileNumber(String mobileNumber) {
-      if (mobileNumber == null) return true;
+   void batchUpdate(ClientDto client, BatchResultDto result) {
+      Long id = client.getClient();
       
       try {
-         Long.parseLong(mobileNumber);
-         return true;
-      } catch (Exception e) {
+         if (clientRepo.update(id, client)) {
+            jsonCache.invalidate(id);
+            result.setClient(id);
+         } else {
+            result.setFailure(new ValidationFailureDto(List.of("Data not found - Client id: " + id)));
+         }
+      } catch (UniqueConstraintException error) {
+         result.setFailure(new ValidationFailureDto(List.of("Client update failed: Existing " + error.getField())));
       }
+   }
+   
+   static List<ClientDto> copies(List<ClientDto> clients) {
+      List<ClientDto> copies = new ArrayList<>(clients.size());
+      
+      for (ClientDto client : clients) {
+         copies.add(client.copy());
+      }
+      
+      return copies;
+   }
+   
+   String encodeCursor(Long after) {
+      return CURSOR_ENCODER.encodeToString(after.toString().getBytes(StandardCharsets.US_ASCII));
+   }
+   
+   long decodeCursor(String cursor) {
+      if (cursor == null) return 0L;
+      
+      try {
+         return Long.parseLong(new String(CURSOR_DECODER.decode(cursor), StandardCharsets.US_ASCII));
+      } catch (IllegalArgumentException e) {
+         throw new ValidationException("Invalid cursor: " + cursor);
+      }
+   }
+   
+   void validateNonTransient(ClientDto client) {
+      int codes = ClientValidator.validate(client);
       
-      return false;
+      if (codes != 0) {
+         throw new ValidationException(client, codes);
+      }
    }
 }
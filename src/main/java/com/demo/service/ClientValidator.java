@@ -0,0 +1,105 @@
+package com.demo.service;
+
+import static com.demo.error.ValidationCode.*;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.ValidationCode;
+
+/**
+ * Validates the fields of a client that do not depend on other clients.
+ * <p>
+ * Values are checked by scanning their characters, and failures are collected as a bit mask of {@link ValidationCode}s,
+ * so validating a client allocates nothing. The reason texts are only built from the mask when a failure is reported.
+ */
+public final class ClientValidator {
+   static final int ID_NUMBER_LENGTH = 13;
+
+   private static final String MAX_LONG = Long.toString(Long.MAX_VALUE);
+   private static final String MIN_LONG = Long.toString(Long.MIN_VALUE).substring(1);
+
+   private ClientValidator() {
+   }
+
+   /**
+    * @return the bit mask of the {@link ValidationCode}s the client fails, 0 when it is valid
+    */
+   public static int validate(ClientDto client) {
+      int codes = 0;
+
+      if (client.getFirstName() == null) {
+         codes |= FIRST_NAME_MISSING.bit();
+      }
+      if (client.getLastName() == null) {
+         codes |= LAST_NAME_MISSING.bit();
+      }
+      if (client.getIdNumber() == null) {
+         codes |= ID_NUMBER_MISSING.bit();
+      } else if (!isIdNumber(client.getIdNumber())) {
+         codes |= ID_NUMBER_INVALID.bit();
+      }
+      if (!isMobileNumber(client.getMobileNumber())) {
+         codes |= MOBILE_NUMBER_INVALID.bit();
+      }
+
+      return codes;
+   }
+
+   /**
+    * A South African ID number: 13 digits of which the last is a Luhn check digit.
+    */
+   public static boolean isIdNumber(String idNumber) {
+      if (idNumber == null || idNumber.length() != ID_NUMBER_LENGTH) return false;
+
+      int checksum = 0;
+
+      for (int index = ID_NUMBER_LENGTH - 1; index >= 0; index--) {
+         int digit = idNumber.charAt(index) - '0';
+         if (digit < 0 || digit > 9) return false;
+
+         if ((index % 2) == 0) {
+            checksum += digit;
+         } else {
+            checksum += digit < 5 ? digit * 2 : digit * 2 - 9;
+         }
+      }
+
+      return (checksum % 10) == 0;
+   }
+
+   /**
+    * An optional mobile number: absent, or digits with an optional sign that fit a long.
+    */
+   public static boolean isMobileNumber(String mobileNumber) {
+      if (mobileNumber == null) return true;
+
+      int length = mobileNumber.length();
+      int start = length > 0 && (mobileNumber.charAt(0) == '+' || mobileNumber.charAt(0) == '-') ? 1 : 0;
+      if (start == length) return false;
+
+      for (int index = start; index < length; index++) {
+         char digit = mobileNumber.charAt(index);
+         if (digit < '0' || digit > '9') return false;
+      }
+
+      return fitsLong(mobileNumber, start, mobileNumber.charAt(0) == '-' ? MIN_LONG : MAX_LONG);
+   }
+
+   /**
+    * @param limit the digits of the largest magnitude allowed
+    */
+   private static boolean fitsLong(String number, int start, String limit) {
+      while (start < number.length() - 1 && number.charAt(start) == '0') {
+         start++;
+      }
+
+      int digits = number.length() - start;
+      if (digits != limit.length()) return digits < limit.length();
+
+      for (int index = 0; index < digits; index++) {
+         int difference = number.charAt(start + index) - limit.charAt(index);
+         if (difference != 0) return difference < 0;
+      }
+
+      return true;
+   }
+}
@@ -0,0 +1,156 @@
+package com.demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * An adaptive limit on the number of requests of one budget served at the same time. Requests past the limit are
+ * rejected at once instead of queueing behind the others, so the requests admitted keep their latency while the
+ * instance is overloaded.
+ * <p>
+ * The limit follows the latency gradient of the requests: every window, the average latency of the window is compared
+ * to the long-term average. While the window stays within {@code tolerance} times the long-term latency, the limit grows
+ * by its square root; beyond it, the limit shrinks in proportion, down to half per window. The limit only grows while
+ * the requests use at least half of it, so it does not drift up while the load is light. The long-term average follows
+ * the window slowly, so it absorbs a lasting change of the latency of the requests themselves.
+ * <p>
+ * Admission and release are lock-free; the limit is recalculated by the first request released after each window.
+ * <p>
+ * The limit, the requests in flight and the long-term latency are published as the {@code client.admission.limit},
+ * {@code client.admission.in.flight} and {@code client.admission.latency} gauges, and the rejected requests as the
+ * {@code client.admission.shed} counter, tagged with the {@code budget}.
+ */
+public class ConcurrencyLimit {
+   static final double SMOOTHING = 0.2;
+   static final int LONG_TERM_WINDOWS = 600;
+
+   private final int minLimit;
+   private final int maxLimit;
+   private final double tolerance;
+   private final long window;
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private final AtomicInteger peakInFlight = new AtomicInteger();
+   private final LongAdder latencies = new LongAdder();
+   private final LongAdder samples = new LongAdder();
+   private final AtomicLong nextUpdate;
+   private final Counter shed;
+   private volatile int limit;
+   private double estimate;
+   private volatile double longTermLatency;
+
+   /**
+    * @param budget the name of the requests limited
+    * @param tolerance the ratio to the long-term latency that the latency of a window may reach before the limit shrinks
+    * @param window the time between recalculations of the limit
+    */
+   public ConcurrencyLimit(String budget, int initialLimit, int minLimit, int maxLimit, double tolerance, Duration window,
+         MeterRegistry registry) {
+      if (minLimit < 1 || minLimit > maxLimit) {
+         throw new IllegalArgumentException("Limits of " + budget + " must be 1 <= min <= max: " + minLimit + ", " + maxLimit);
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      this.tolerance = tolerance;
+      this.window = window.toNanos();
+      this.estimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+      this.limit = (int) estimate;
+      this.nextUpdate = new AtomicLong(System.nanoTime() + this.window);
+      this.shed = Counter.builder("client.admission.shed")
+            .description("Client API requests rejected because the limit of their budget was reached")
+            .tag("budget", budget)
+            .register(registry);
+      Gauge.builder("client.admission.limit", this, ConcurrencyLimit::limit)
+            .description("Client API requests of the budget admitted at the same time")
+            .tag("budget", budget)
+            .register(registry);
+      Gauge.builder("client.admission.in.flight", this, ConcurrencyLimit::inFlight)
+            .description("Client API requests of the budget being served")
+            .tag("budget", budget)
+            .register(registry);
+      Gauge.builder("client.admission.latency", this, budgetLimit -> budgetLimit.longTermLatency / 1e9)
+            .description("Long-term average latency of the client API requests of the budget")
+            .tag("budget", budget)
+            .baseUnit("seconds")
+            .register(registry);
+   }
+
+   /**
+    * @return whether the request is admitted, in which case it must be {@link #release released} when done
+    */
+   public boolean tryAcquire() {
+      int current;
+
+      do {
+         current = inFlight.get();
+
+         if (current >= limit) {
+            shed.increment();
+            return false;
+         }
+      } while (!inFlight.compareAndSet(current, current + 1));
+
+      peakInFlight.accumulateAndGet(current + 1, Math::max);
+      return true;
+   }
+
+   /**
+    * Ends an admitted request.
+    *
+    * @param latency the nanoseconds the request took
+    */
+   public void release(long latency) {
+      inFlight.decrementAndGet();
+      latencies.add(latency);
+      samples.increment();
+
+      long now = System.nanoTime();
+      long next = nextUpdate.get();
+
+      if (now - next >= 0 && nextUpdate.compareAndSet(next, now + window)) {
+         update();
+      }
+   }
+
+   public int limit() {
+      return limit;
+   }
+
+   public int inFlight() {
+      return inFlight.get();
+   }
+
+   public long shed() {
+      return (long) shed.count();
+   }
+
+   private synchronized void update() {
+      long count = samples.sumThenReset();
+      double latency = (double) latencies.sumThenReset() / Math.max(1, count);
+      int peak = peakInFlight.getAndSet(inFlight.get());
+      if (count == 0) return;
+
+      if (longTermLatency == 0) {
+         longTermLatency = latency;
+      } else {
+         longTermLatency += (latency - longTermLatency) / LONG_TERM_WINDOWS;
+      }
+
+      if (longTermLatency > latency * 2) {
+         longTermLatency = latency * 2; //the load dropped, recover from the latency of the overload quickly
+      }
+
+      if (peak < estimate / 2) return; //too light a load to tell whether more requests would be served as fast
+
+      double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermLatency / latency));
+      double target = estimate * gradient + Math.sqrt(estimate);
+
+      estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+      limit = (int) estimate;
+   }
+}
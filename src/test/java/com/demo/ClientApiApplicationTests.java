@@ -1,12 +1,70 @@
 package com.demo;
 
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.demo.config.SwaggerConfig;
+import com.demo.controller.ApiDocs;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 @SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
 class ClientApiApplicationTests {
+	static final ObjectMapper MAPPER = new ObjectMapper();
+	static final Path API_DOCS = Path.of("src/main/resources", ApiDocs.RESOURCE);
+
+	@Autowired
+	private MockMvc mockMvc;
 
 	@Test
 	void contextLoads() {
 	}
+
+	@Test
+	void testPrometheus() throws Exception {
+		mockMvc.perform(get("/v1/clients/{id}", 1));
+
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("client_store_size ")))
+				.andExpect(content().string(containsString("client_repo_operations_seconds_bucket{operation=\"find\"")))
+				.andExpect(content().string(containsString("client_api_errors_total{exception=\"DataNotFoundException\",status=\"404\",}")))
+				.andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+				.andExpect(content().string(matchesRegex("(?s).*http_server_requests_seconds_bucket\\{[^}]*uri=\"/v1/clients/\\{id}\",le=\"[^\"]+\",}.*")))
+				.andExpect(content().string(not(containsString("quantile="))));
+	}
+
+	/**
+	 * The pre-generated description served by the fast-startup profile must be the one springfox generates. Run with
+	 * {@code -Dapi-docs.write=true} to write it after changing the API.
+	 */
+	@Test
+	void testApiDocs() throws Exception {
+		String body = mockMvc.perform(get(SwaggerConfig.API_DOCS))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		ObjectNode generated = (ObjectNode) MAPPER.readTree(body);
+		generated.remove("host"); //of the request, which the served description leaves to the reader
+
+		if (Boolean.getBoolean("api-docs.write")) {
+			MAPPER.writerWithDefaultPrettyPrinter().writeValue(API_DOCS.toFile(), generated);
+		}
+
+		assertEquals(generated, MAPPER.readTree(Files.readString(API_DOCS)),
+				API_DOCS + " is out of date, run the test with -Dapi-docs.write=true");
+	}
 }
@@ -0,0 +1,51 @@
+package com.demo;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.demo.config.SwaggerConfig;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("fast-startup")
+class FastStartupTests {
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private ConfigurableListableBeanFactory beanFactory;
+
+	@Test
+	void testLazyInitialization() throws Exception {
+		assertTrue(beanFactory.containsSingleton("clientRepo"));
+		assertTrue(beanFactory.containsSingleton("memoryClientStore"));
+		assertFalse(beanFactory.containsSingleton("clientService"));
+
+		mockMvc.perform(get("/v1/clients/{id}", 1))
+				.andExpect(status().isNotFound());
+
+		assertTrue(beanFactory.containsSingleton("clientService"));
+	}
+
+	@Test
+	void testApiDocs() throws Exception {
+		assertFalse(beanFactory.containsBean("api"), "springfox is off");
+
+		mockMvc.perform(get(SwaggerConfig.API_DOCS))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.swagger", is("2.0")))
+				.andExpect(jsonPath("$.paths['/v1/clients/{id}'].get").exists())
+				.andExpect(jsonPath("$.host").doesNotExist());
+	}
+}
@@ -8,25 +8,42 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
 import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.dto.ValidationFailureDto;
 import com.demo.error.DataNotFoundException;
 import com.demo.error.ValidationException;
+import com.demo.error.VersionConflictException;
 import com.demo.service.ClientService;
+import com.demo.service.ConcurrencyLimit;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
 
 @SpringBootTest
 @SpringJUnitWebConfig
@@ -35,11 +52,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 class ClientApiTest {
    static final Random RANDOM = new Random();
    static final ObjectMapper MAPPER = new ObjectMapper();
+   static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+   static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+   static final String EPOCH = "lq0c2x3k";
    
    @Autowired
    private MockMvc mockMvc;
    @MockBean
    private ClientService service;
+   @Autowired
+   private MeterRegistry registry;
+   @Autowired
+   @Qualifier("operationLimit")
+   private ConcurrencyLimit operationLimit;
    
    private Long id;
    private ClientDto client;
@@ -52,6 +77,7 @@ class ClientApiTest {
       client.setFirstName("Dewald");
       client.setLastName("Pretorius");
       client.setMobileNumber(String.valueOf(Math.abs(RANDOM.nextLong())));
+      when(service.epoch()).thenReturn(EPOCH);
    }
    
    @Test
@@ -66,13 +92,96 @@ class ClientApiTest {
             .andExpect(jsonPath("$.mobileNumber", is(client.getMobileNumber())));
    }
    
+   @Test
+   void testFindNotModified() throws Exception {
+      client.setVersion(3L);
+      when(service.find(id)).thenReturn(client);
+      String etag = ClientETags.of(EPOCH, client);
+
+      mockMvc.perform(get("/v1/clients/{id}", id))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(jsonPath("$.version").doesNotExist());
+
+      double gets = cacheGets("hit") + cacheGets("miss");
+
+      mockMvc.perform(get("/v1/clients/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andExpect(content().string(""));
+      assertEquals(gets, cacheGets("hit") + cacheGets("miss"), "no JSON is looked up or written for a 304");
+
+      client.setVersion(4L);
+
+      mockMvc.perform(get("/v1/clients/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, ClientETags.of(EPOCH, client)));
+   }
+   
+   @Test
+   void testFindCached() throws Exception {
+      client.setVersion(1L);
+      when(service.find(id)).thenReturn(client);
+      double hits = cacheGets("hit");
+      double misses = cacheGets("miss");
+
+      for (int request = 0; request < 3; request++) {
+         mockMvc.perform(get("/v1/clients/{id}", id))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(content().json(MAPPER.writeValueAsString(client), true));
+      }
+
+      assertEquals(misses + 1, cacheGets("miss"));
+      assertEquals(hits + 2, cacheGets("hit"));
+   }
+   
+   @Test
+   void testFindBinary() throws Exception {
+      client.setVersion(2L);
+      when(service.find(id)).thenReturn(client);
+
+      MvcResult cbor = mockMvc.perform(get("/v1/clients/{id}", id).accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + EPOCH + "-2-cbor\""))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn();
+      assertEquals(client, CBOR.readValue(cbor.getResponse().getContentAsByteArray(), ClientDto.class));
+
+      MvcResult smile = mockMvc.perform(get("/v1/clients/{id}", id)
+               .header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/x-jackson-smile"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(ClientFormats.SMILE))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + EPOCH + "-2-smile\""))
+            .andReturn();
+      assertEquals(client, SMILE.readValue(smile.getResponse().getContentAsByteArray(), ClientDto.class));
+
+      mockMvc.perform(get("/v1/clients/{id}", id) //the JSON tag does not validate the CBOR representation
+               .accept(MediaType.APPLICATION_CBOR)
+               .header(HttpHeaders.IF_NONE_MATCH, ClientETags.of(EPOCH, client)))
+            .andExpect(status().isOk());
+
+      mockMvc.perform(get("/v1/clients/{id}", id).accept(MediaType.ALL))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+
+      mockMvc.perform(get("/v1/clients/{id}", id).accept(MediaType.APPLICATION_XML))
+            .andExpect(status().isNotAcceptable());
+   }
+   
    @Test
    void testNotFound() throws Exception {
       when(service.find(anyLong())).thenThrow(new DataNotFoundException("Test"));
+      double notFound = errors("404");
       
       mockMvc.perform(get("/v1/clients/{id}", id))
             .andExpect(status().isNotFound())
-            .andExpect(content().string(containsString("Data not found -")));
+            .andExpect(content().contentType("text/plain;charset=UTF-8"))
+            .andExpect(content().string("Data not found - Test"));
+      
+      assertEquals(notFound + 1, errors("404"));
    }
 
    @Test
@@ -80,8 +189,8 @@ class ClientApiTest {
       String firstName = Long.toHexString(RANDOM.nextLong());
       String expectedResponse = MAPPER.writeValueAsString(List.of(client, client, client));
       
-      when(service.search(null, firstName, null))
-            .thenReturn(List.of(client, client, client));
+      when(service.search(null, firstName, null, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client, client, client), null));
       
       mockMvc.perform(get("/v1/clients")
                .queryParam("firstName", firstName)
@@ -90,13 +199,30 @@ class ClientApiTest {
             .andExpect(content().string(expectedResponse));
    }
    
+   @Test
+   void testSearchCbor() throws Exception {
+      when(service.search(null, "Dewald", null, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client, client), null));
+      
+      MvcResult result = mockMvc.perform(get("/v1/clients")
+               .queryParam("firstName", "Dewald")
+               .accept(MediaType.APPLICATION_CBOR)
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andReturn();
+      
+      assertEquals(List.of(client, client), 
+            CBOR.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<List<ClientDto>>() {}));
+   }
+   
    @Test
    void testSearchByIdNumber() throws Exception {
       String idNumber = Long.toHexString(RANDOM.nextLong());
       String expectedResponse = MAPPER.writeValueAsString(List.of(client, client, client));
       
-      when(service.search(idNumber, null, null))
-            .thenReturn(List.of(client, client, client));
+      when(service.search(idNumber, null, null, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client, client, client), null));
       
       mockMvc.perform(get("/v1/clients")
                .queryParam("idNumber", idNumber)
@@ -110,8 +236,8 @@ class ClientApiTest {
       String mobileNumber = Long.toHexString(RANDOM.nextLong());
       String expectedResponse = MAPPER.writeValueAsString(List.of(client, client, client));
       
-      when(service.search(null, null, mobileNumber))
-            .thenReturn(List.of(client, client, client));
+      when(service.search(null, null, mobileNumber, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client, client, client), null));
       
       mockMvc.perform(get("/v1/clients")
                .queryParam("mobileNumber", mobileNumber)
@@ -120,6 +246,133 @@ class ClientApiTest {
             .andExpect(content().string(expectedResponse));
    }
 
+   @Test
+   void testSearchNextPage() throws Exception {
+      String expectedResponse = MAPPER.writeValueAsString(List.of(client, client));
+      
+      when(service.search(null, "Dewald", null, null, null, "Mg", 2))
+            .thenReturn(new ClientPage(List.of(client, client), "NA"));
+      
+      mockMvc.perform(get("/v1/clients")
+               .queryParam("firstName", "Dewald")
+               .queryParam("limit", "2")
+               .queryParam("cursor", "Mg")
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", 
+                  "<http://localhost/v1/clients?firstName=Dewald&limit=2&cursor=NA>;rel=\"next\""))
+            .andExpect(content().string(expectedResponse));
+   }
+   
+   @Test
+   void testSearchLastPage() throws Exception {
+      when(service.search(null, "Dewald", null, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client), null));
+      
+      mockMvc.perform(get("/v1/clients")
+               .queryParam("firstName", "Dewald")
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Link"));
+   }
+
+   @Test
+   void testSearchByFirstNamePrefix() throws Exception {
+      when(service.search(null, null, null, "Dew", null, null, 1))
+            .thenReturn(new ClientPage(List.of(client), "MQ"));
+      
+      mockMvc.perform(get("/v1/clients")
+               .queryParam("firstNamePrefix", "Dew")
+               .queryParam("limit", "1")
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", 
+                  "<http://localhost/v1/clients?firstNamePrefix=Dew&limit=1&cursor=MQ>;rel=\"next\""))
+            .andExpect(jsonPath("$[0].firstName", is("Dewald")));
+   }
+   
+   @Test
+   void testSearchByFirstNameFuzzy() throws Exception {
+      when(service.search(null, null, null, null, "Dewlad", null, 100))
+            .thenReturn(new ClientPage(List.of(client), null));
+      
+      mockMvc.perform(get("/v1/clients")
+               .queryParam("firstNameFuzzy", "Dewlad")
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].firstName", is("Dewald")));
+   }
+   
+   @Test
+   void testChanges() throws Exception {
+      ClientChangeDto deleted = new ClientChangeDto(12L, ClientChangeDto.Type.DELETED, id, null, null, 1L, EPOCH);
+      when(service.changes(11L)).thenReturn(Flux.just(deleted, ClientChangeDto.resync(20L)));
+      
+      MvcResult result = mockMvc.perform(get("/v1/clients/changes").queryParam("since", "11"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      assertEquals(-1, result.getRequest().getAsyncContext().getTimeout(), "the stream never times out");
+      
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(content().string("id:12\nevent:deleted\ndata:" + MAPPER.writeValueAsString(deleted) + "\n\n"
+                  + "id:20\nevent:resync\ndata:{\"sequence\":20,\"type\":\"RESYNC\"}\n\n"));
+   }
+   
+   @Test
+   void testChangesAfterLastEventId() throws Exception {
+      when(service.changes(11L)).thenReturn(Flux.empty());
+      
+      MvcResult result = mockMvc.perform(get("/v1/clients/changes").header("Last-Event-ID", "11"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+      verify(service).changes(11L);
+   }
+   
+   @Test
+   void testMultiGet() throws Exception {
+      when(service.findAllById(List.of(id, 7L))).thenReturn(new MultiGetResultDto(List.of(client), List.of(7L)));
+      
+      mockMvc.perform(get("/v1/clients/_mget").queryParam("ids", id + ",7"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.clients[0].client", is(id)))
+            .andExpect(jsonPath("$.missing[0]", is(7)));
+      
+      mockMvc.perform(post("/v1/clients/_mget")
+               .contentType(MediaType.APPLICATION_JSON)
+               .content("[" + id + ",7]")
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.clients[0].firstName", is("Dewald")))
+            .andExpect(jsonPath("$.missing[0]", is(7)));
+   }
+   
+   @Test
+   void testExport() throws Exception {
+      ClientDto other = new ClientDto();
+      other.setClient(id + 1);
+      other.setFirstName("Jan");
+      client.setVersion(3L);
+      String expectedResponse = MAPPER.writeValueAsString(client).replace("}", ",\"version\":3}") + "\n" 
+            + MAPPER.writeValueAsString(other).replace("}", ",\"version\":0}") + "\n";
+      
+      when(service.findAll()).thenReturn(List.of(client, other));
+      
+      MvcResult result = mockMvc.perform(get("/v1/clients/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      assertEquals(TimeUnit.MINUTES.toMillis(30), result.getRequest().getAsyncContext().getTimeout());
+      
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(expectedResponse));
+   }
+
    @Test
    void testCreate() throws Exception {
       when(service.create(client)).thenReturn(id);
@@ -136,20 +389,60 @@ class ClientApiTest {
    void testCreateValidationFailure() throws Exception {
       List<String> reasons = List.of("Reason-1", "Reason-2", "Reason-3");
       when(service.create(client)).thenThrow(new ValidationException(reasons));
+      double validationFailures = errors("400");
 
       mockMvc.perform(post("/v1/clients")
                .contentType(MediaType.APPLICATION_JSON)
                .content(MAPPER.writeValueAsString(client))
             )
             .andExpect(status().is4xxClientError())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
             .andExpect(jsonPath("$.reasons[0]", is("Reason-1")))
             .andExpect(jsonPath("$.reasons[1]", is("Reason-2")))
             .andExpect(jsonPath("$.reasons[2]", is("Reason-3")));
+      
+      assertEquals(validationFailures + 1, errors("400"));
+   }
+
+   @Test
+   void testBatch() throws Exception {
+      List<BatchResultDto> results = List.of(
+            new BatchResultDto(id, null), 
+            new BatchResultDto(null, new ValidationFailureDto(List.of("Reason-1"))));
+      
+      when(service.batch(List.of(client, client))).thenReturn(results);
+      
+      mockMvc.perform(post("/v1/clients/batch")
+               .contentType(MediaType.APPLICATION_JSON)
+               .content(MAPPER.writeValueAsString(List.of(client, client)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].client", is(id)))
+            .andExpect(jsonPath("$[0].failure").doesNotExist())
+            .andExpect(jsonPath("$[1].client").doesNotExist())
+            .andExpect(jsonPath("$[1].failure.reasons[0]", is("Reason-1")));
+   }
+
+   @Test
+   void testBatchSmile() throws Exception {
+      when(service.batch(List.of(client, client))).thenReturn(List.of(new BatchResultDto(id, null)));
+      
+      MvcResult result = mockMvc.perform(post("/v1/clients/batch")
+               .contentType(ClientFormats.SMILE)
+               .accept(ClientFormats.SMILE)
+               .content(SMILE.writeValueAsBytes(List.of(client, client)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(ClientFormats.SMILE))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + EPOCH + "-2-smile\""))
+            .andReturn();
+      
+      assertEquals(id, SMILE.readTree(result.getResponse().getContentAsByteArray()).get(0).get("client").asLong());
    }
 
    @Test
    void testUpdate() throws Exception {
-      when(service.update(id, client)).thenReturn(client);
+      when(service.update(id, client, null)).thenReturn(client);
       
       mockMvc.perform(put("/v1/clients/{id}", id)
                .contentType(MediaType.APPLICATION_JSON)
@@ -162,9 +455,61 @@ class ClientApiTest {
             .andExpect(jsonPath("$.mobileNumber", is(client.getMobileNumber())));
    }
    
+   @Test
+   void testUpdateIfMatch() throws Exception {
+      client.setVersion(3L);
+      String etag = ClientETags.of(EPOCH, client);
+      when(service.update(id, client, 3L)).thenAnswer(invocation -> {
+         ClientDto updated = invocation.getArgument(1);
+         updated.setVersion(4L);
+         return updated;
+      });
+      
+      mockMvc.perform(put("/v1/clients/{id}", id)
+               .header(HttpHeaders.IF_MATCH, etag)
+               .contentType(MediaType.APPLICATION_JSON)
+               .content(MAPPER.writeValueAsString(client))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + EPOCH + "-4\""))
+            .andExpect(jsonPath("$.client", is(id)));
+   }
+   
+   @Test
+   void testUpdatePreconditionFailed() throws Exception {
+      when(service.update(id, client, 3L)).thenThrow(new VersionConflictException(id, 4L));
+      double preconditionFailed = errors("412");
+      
+      mockMvc.perform(put("/v1/clients/{id}", id)
+               .header(HttpHeaders.IF_MATCH, "\"" + EPOCH + "-3\"")
+               .contentType(MediaType.APPLICATION_JSON)
+               .content(MAPPER.writeValueAsString(client))
+            )
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(content().string("Precondition failed - Client id: " + id + " is at version 4"));
+      
+      assertEquals(preconditionFailed + 1, errors("412"));
+   }
+   
+   @Test
+   void testExpectedVersion() {
+      assertNull(ClientETags.expectedVersion(EPOCH, null));
+      assertNull(ClientETags.expectedVersion(EPOCH, " * "));
+      assertEquals(7L, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "-7\""));
+      assertEquals(7L, ClientETags.expectedVersion(EPOCH, "\"other\", \"" + EPOCH + "-7\""));
+      assertEquals(7L, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "-7-cbor\""));
+      assertEquals(7L, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "-7-smile\""));
+      //weak, negative, of an earlier run, or not ours at all
+      assertEquals(ClientETags.NO_VERSION, ClientETags.expectedVersion(EPOCH, "W/\"" + EPOCH + "-7\""));
+      assertEquals(ClientETags.NO_VERSION, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "--1\""));
+      assertEquals(ClientETags.NO_VERSION, ClientETags.expectedVersion(EPOCH, "\"0-7\""));
+      assertEquals(ClientETags.NO_VERSION, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "-x\""));
+      assertEquals(ClientETags.NO_VERSION, ClientETags.expectedVersion(EPOCH, "\"" + EPOCH + "-7-xml\""));
+   }
+   
    @Test
    void testUpdateNotFound() throws Exception {
-      when(service.update(id, client)).thenThrow(new DataNotFoundException("Client id: " + id));
+      when(service.update(id, client, null)).thenThrow(new DataNotFoundException("Client id: " + id));
       
       mockMvc.perform(put("/v1/clients/{id}", id)
                .contentType(MediaType.APPLICATION_JSON)
@@ -177,7 +522,7 @@ class ClientApiTest {
    @Test
    void testUpdateValidationFailure() throws Exception {
       List<String> reasons = List.of("Reason-1", "Reason-2", "Reason-3");
-      when(service.update(id, client)).thenThrow(new ValidationException(reasons));
+      when(service.update(id, client, null)).thenThrow(new ValidationException(reasons));
       
       mockMvc.perform(put("/v1/clients/{id}", id)
                .contentType(MediaType.APPLICATION_JSON)
@@ -203,4 +548,44 @@ class ClientApiTest {
             .andExpect(status().isNotFound())
             .andExpect(content().string(containsString("Data not found -")));
    }
+   
+   @Test
+   void testShedWhenBusy() throws Exception {
+      when(service.find(id)).thenReturn(client);
+      int taken = takeAll(operationLimit);
+      long shed = operationLimit.shed();
+
+      try {
+         mockMvc.perform(get("/v1/clients").param("firstName", "Dewald"))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+         mockMvc.perform(get("/v1/clients/{id}", id))
+               .andExpect(status().isOk()); //point reads have their own budget
+      } finally {
+         for (int i = 0; i < taken; i++) {
+            operationLimit.release(0);
+         }
+      }
+
+      assertEquals(shed + 1, operationLimit.shed());
+      verify(service, never()).search(any(), any(), any(), any(), any(), any(), anyInt());
+   }
+   
+   static int takeAll(ConcurrencyLimit limit) {
+      int taken = 0;
+
+      while (limit.tryAcquire()) {
+         taken++;
+      }
+
+      return taken;
+   }
+
+   private double cacheGets(String result) {
+      return registry.get("cache.gets").tag("cache", "clientJson").tag("result", result).counter().count();
+   }
+
+   private double errors(String status) {
+      return registry.get("client.api.errors").tag("status", status).counter().count();
+   }
 }
@@ -0,0 +1,340 @@
+package com.demo.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.error.DataNotFoundException;
+import com.demo.error.ValidationException;
+import com.demo.error.VersionConflictException;
+import com.demo.service.ClientService;
+import com.demo.service.ConcurrencyLimit;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+class ReactiveClientApiTest {
+   static final Random RANDOM = new Random();
+   static final ObjectMapper MAPPER = new ObjectMapper();
+   static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+   static final String EPOCH = "lq0c2x3k";
+
+   @Autowired
+   private WebTestClient webClient;
+   @MockBean
+   private ClientService service;
+   @Autowired
+   private MeterRegistry registry;
+   @Autowired
+   @Qualifier("pointReadLimit")
+   private ConcurrencyLimit pointReadLimit;
+
+   private Long id;
+   private ClientDto client;
+
+   @BeforeEach
+   public void setup() {
+      id = Math.abs(RANDOM.nextLong());
+      client = new ClientDto();
+      client.setClient(id);
+      client.setFirstName("Dewald");
+      client.setLastName("Pretorius");
+      client.setMobileNumber(String.valueOf(Math.abs(RANDOM.nextLong())));
+      client.setVersion(3L);
+      when(service.epoch()).thenReturn(EPOCH);
+   }
+
+   @Test
+   void testFind() throws Exception {
+      when(service.find(id)).thenReturn(client);
+      String etag = ClientETags.of(EPOCH, client);
+
+      webClient.get().uri("/v1/clients/{id}", id)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+            .expectBody().json(MAPPER.writeValueAsString(client), true);
+
+      webClient.get().uri("/v1/clients/{id}", id)
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .exchange()
+            .expectStatus().isNotModified()
+            .expectBody().isEmpty();
+   }
+
+   @Test
+   void testFindCbor() throws Exception {
+      when(service.find(id)).thenReturn(client);
+
+      byte[] body = webClient.get().uri("/v1/clients/{id}", id)
+            .accept(MediaType.APPLICATION_CBOR)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+            .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + EPOCH + "-" + client.getVersion() + "-cbor\"")
+            .expectBody().returnResult().getResponseBody();
+
+      assertEquals(client, CBOR.readValue(body, ClientDto.class));
+   }
+
+   @Test
+   void testNotFound() {
+      when(service.find(anyLong())).thenThrow(new DataNotFoundException("Test"));
+      double notFound = errors("404");
+
+      webClient.get().uri("/v1/clients/{id}", id)
+            .exchange()
+            .expectStatus().isNotFound()
+            .expectHeader().contentType("text/plain;charset=UTF-8")
+            .expectBody(String.class).isEqualTo("Data not found - Test");
+
+      assertEquals(notFound + 1, errors("404"));
+   }
+
+   @Test
+   void testSearchNextPage() throws Exception {
+      when(service.search(null, "Dewald", null, null, null, "Mg", 2))
+            .thenReturn(new ClientPage(List.of(client, client), "NA"));
+
+      webClient.get().uri("/v1/clients?firstName=Dewald&limit=2&cursor=Mg")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueMatches(HttpHeaders.LINK, //the mock exchange has no host, a running server adds it
+                  "<(http://localhost)?/v1/clients\\?firstName=Dewald&limit=2&cursor=NA>;rel=\"next\"")
+            .expectBody().json(MAPPER.writeValueAsString(List.of(client, client)), true);
+   }
+
+   @Test
+   void testSearchLastPage() throws Exception {
+      when(service.search(null, null, null, "Dew", null, null, 100))
+            .thenReturn(new ClientPage(List.of(client), null));
+
+      webClient.get().uri("/v1/clients?firstNamePrefix=Dew")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist(HttpHeaders.LINK)
+            .expectBody().json(MAPPER.writeValueAsString(List.of(client)), true);
+   }
+
+   @Test
+   void testSearchCbor() throws Exception {
+      when(service.search(null, "Dewald", null, null, null, null, 100))
+            .thenReturn(new ClientPage(List.of(client, client), null));
+
+      byte[] body = webClient.get().uri("/v1/clients?firstName=Dewald")
+            .accept(MediaType.APPLICATION_CBOR)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+            .expectBody().returnResult().getResponseBody();
+
+      assertEquals(List.of(client, client), CBOR.readValue(body, new TypeReference<List<ClientDto>>() {}));
+   }
+
+   @Test
+   void testMultiGet() {
+      when(service.findAllById(List.of(id, 7L))).thenReturn(new MultiGetResultDto(List.of(client), List.of(7L)));
+
+      webClient.post().uri("/v1/clients/_mget")
+            .bodyValue(List.of(id, 7L))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.clients[0].client").isEqualTo(id)
+            .jsonPath("$.missing[0]").isEqualTo(7);
+
+      webClient.get().uri("/v1/clients/_mget?ids={ids}", id + ",7")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.missing[0]").isEqualTo(7);
+   }
+
+   @Test
+   void testExport() throws Exception {
+      ClientDto other = new ClientDto();
+      other.setClient(id + 1);
+      other.setFirstName("Jan");
+
+      when(service.findAll()).thenReturn(List.of(client, other));
+
+      webClient.get().uri("/v1/clients/export")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class)
+            .isEqualTo(MAPPER.writeValueAsString(client).replace("}", ",\"version\":3}") + "\n" 
+                  + MAPPER.writeValueAsString(other).replace("}", ",\"version\":0}") + "\n");
+   }
+
+   @Test
+   void testChanges() throws Exception {
+      ClientChangeDto deleted = new ClientChangeDto(12L, ClientChangeDto.Type.DELETED, id, null, null, 1L, EPOCH);
+      when(service.changes(11L)).thenReturn(Flux.just(deleted, ClientChangeDto.resync(20L)));
+
+      webClient.get().uri("/v1/clients/changes?since=11")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+            .expectBody(String.class)
+            .isEqualTo("id:12\nevent:deleted\ndata:" + MAPPER.writeValueAsString(deleted) + "\n\n"
+                  + "id:20\nevent:resync\ndata:{\"sequence\":20,\"type\":\"RESYNC\"}\n\n");
+   }
+
+   @Test
+   void testCreate() {
+      when(service.create(client)).thenReturn(id);
+
+      webClient.post().uri("/v1/clients")
+            .bodyValue(client)
+            .exchange()
+            .expectStatus().isCreated()
+            .expectBody(Long.class).isEqualTo(id);
+   }
+
+   @Test
+   void testCreateValidationFailure() {
+      when(service.create(client)).thenThrow(new ValidationException(List.of("Reason-1", "Reason-2")));
+      double validationFailed = errors("400");
+
+      webClient.post().uri("/v1/clients")
+            .bodyValue(client)
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody()
+            .jsonPath("$.reasons[0]").isEqualTo("Reason-1")
+            .jsonPath("$.reasons[1]").isEqualTo("Reason-2");
+
+      assertEquals(validationFailed + 1, errors("400"));
+   }
+
+   @Test
+   void testBatch() {
+      BatchResultDto created = new BatchResultDto();
+      created.setClient(id);
+      when(service.batch(List.of(client))).thenReturn(List.of(created));
+
+      webClient.post().uri("/v1/clients/batch")
+            .bodyValue(List.of(client))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$[0].client").isEqualTo(id);
+   }
+
+   @Test
+   void testBatchCbor() throws Exception {
+      BatchResultDto created = new BatchResultDto();
+      created.setClient(id);
+      when(service.batch(List.of(client, client))).thenReturn(List.of(created));
+
+      webClient.post().uri("/v1/clients/batch")
+            .contentType(MediaType.APPLICATION_CBOR)
+            .bodyValue(CBOR.writeValueAsBytes(List.of(client, client)))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$[0].client").isEqualTo(id);
+   }
+
+   @Test
+   void testUpdate() {
+      when(service.update(id, client, 3L)).thenAnswer(invocation -> {
+         ClientDto updated = invocation.getArgument(1);
+         updated.setVersion(4L);
+         return updated;
+      });
+
+      webClient.put().uri("/v1/clients/{id}", id)
+            .header(HttpHeaders.IF_MATCH, ClientETags.of(EPOCH, client))
+            .bodyValue(client)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + EPOCH + "-4\"")
+            .expectBody()
+            .jsonPath("$.client").isEqualTo(id);
+   }
+
+   @Test
+   void testUpdatePreconditionFailed() {
+      when(service.update(id, client, null)).thenThrow(new VersionConflictException(id, 4L));
+
+      webClient.put().uri("/v1/clients/{id}", id)
+            .bodyValue(client)
+            .exchange()
+            .expectStatus().isEqualTo(412)
+            .expectBody(String.class).isEqualTo("Precondition failed - Client id: " + id + " is at version 4");
+   }
+
+   @Test
+   void testRemove() {
+      webClient.delete().uri("/v1/clients/{id}", id)
+            .exchange()
+            .expectStatus().isNoContent();
+
+      verify(service).remove(id);
+   }
+
+   @Test
+   void testRemoveNotFound() {
+      doThrow(new DataNotFoundException("Client removal failed for id: " + id)).when(service).remove(id);
+
+      webClient.delete().uri("/v1/clients/{id}", id)
+            .exchange()
+            .expectStatus().isNotFound()
+            .expectBody(String.class).isEqualTo("Data not found - Client removal failed for id: " + id);
+   }
+
+   @Test
+   void testShedWhenBusy() {
+      int taken = ClientApiTest.takeAll(pointReadLimit);
+      long shed = pointReadLimit.shed();
+
+      try {
+         webClient.get().uri("/v1/clients/{id}", id)
+               .exchange()
+               .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+               .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+         webClient.delete().uri("/v1/clients/{id}", id)
+               .exchange()
+               .expectStatus().isNoContent(); //writes have their own budget
+      } finally {
+         for (int i = 0; i < taken; i++) {
+            pointReadLimit.release(0);
+         }
+      }
+
+      assertEquals(shed + 1, pointReadLimit.shed());
+      verify(service, never()).find(id);
+   }
+
+   private double errors(String status) {
+      return registry.get("client.api.errors").tag("status", status).counter().count();
+   }
+}
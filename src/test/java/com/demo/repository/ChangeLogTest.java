@@ -0,0 +1,74 @@
+package com.demo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientChangeDto.Type;
+import com.demo.dto.ClientDto;
+import com.demo.error.ChangesLostException;
+
+class ChangeLogTest {
+
+   @Test
+   void testRead() {
+      ChangeLog log = new ChangeLog(8);
+      long start = log.lastSequence();
+      ClientDto client = new ClientDto();
+      client.setVersion(2L);
+
+      assertTrue(log.read(start, 10).isEmpty());
+
+      log.publish(Type.CREATED, 1L, client, "e");
+      log.publish(Type.UPDATED, 1L, client, "e");
+      log.publish(Type.DELETED, 1L, null, "e");
+
+      List<ClientChangeDto> changes = log.read(start, 10);
+      assertEquals(List.of(start + 1, start + 2, start + 3), sequences(changes));
+      assertEquals(List.of(Type.CREATED, Type.UPDATED, Type.DELETED), 
+            changes.stream().map(ClientChangeDto::getType).toList());
+      assertEquals(2L, changes.get(0).getVersion());
+      assertSame(client, changes.get(1).getData());
+      assertNull(changes.get(2).getData());
+      assertEquals("e", changes.get(2).getEpoch());
+
+      assertEquals(List.of(start + 2), sequences(log.read(start + 1, 1)));
+      assertTrue(log.read(start + 3, 10).isEmpty());
+      assertEquals(start + 3, log.lastSequence());
+   }
+
+   @Test
+   void testReaderFallsBehind() {
+      ChangeLog log = new ChangeLog(6); //8 slots
+      long start = log.lastSequence();
+
+      for (long id = 1; id <= 8; id++) {
+         log.publish(Type.CREATED, id, new ClientDto(), "e");
+      }
+      assertEquals(8, log.read(start, 10).size());
+
+      log.publish(Type.CREATED, 9L, new ClientDto(), "e"); //overwrites the first change
+
+      ChangesLostException error = assertThrows(ChangesLostException.class, () -> log.read(start, 10));
+      assertEquals(start + 9, error.getLastSequence());
+      assertEquals(0, error.getStackTrace().length);
+      assertEquals(8, log.read(start + 1, 10).size());
+   }
+
+   @Test
+   void testUnknownSequences() {
+      ChangeLog log = new ChangeLog(8);
+      long start = log.lastSequence();
+
+      assertThrows(ChangesLostException.class, () -> log.read(start - 1, 10)); //an earlier run
+      assertThrows(ChangesLostException.class, () -> log.read(start + 1, 10)); //not logged yet
+      assertThrows(ChangesLostException.class, () -> log.read(0L, 10));
+   }
+
+   private static List<Long> sequences(List<ClientChangeDto> changes) {
+      return changes.stream().map(ClientChangeDto::getSequence).toList();
+   }
+}
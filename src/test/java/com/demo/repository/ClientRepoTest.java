@@ -0,0 +1,663 @@
+package com.demo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.demo.dto.ClientChangeDto;
+import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+import com.demo.error.VersionConflictException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ClientRepoTest {
+   static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+   
+   private ClientRepo repo;
+
+   @BeforeEach
+   public void setup() {
+      repo = new ClientRepo();
+   }
+
+   @Test
+   void testInsert() {
+      Long first = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long second = repo.insert(client("Jan", "7711145800087", null));
+
+      assertEquals(1L, first);
+      assertEquals(2L, second);
+      assertEquals("Dewald", repo.findById(first).getFirstName());
+      assertTrue(repo.existsByIdNumber("9607104800084"));
+      assertTrue(repo.existsByMobileNumber("0821234567"));
+      assertFalse(repo.existsByMobileNumber(null));
+   }
+
+   @Test
+   void testFindAllById() {
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", null));
+      repo.delete(dewald);
+
+      List<ClientDto> clients = repo.findAllById(List.of(jan, dewald, 99L));
+
+      assertEquals(3, clients.size());
+      assertEquals("Jan", clients.get(0).getFirstName());
+      assertNull(clients.get(1));
+      assertNull(clients.get(2));
+   }
+
+   @Test
+   void testSearch() {
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", "0831234567"));
+      Long otherDewald = repo.insert(client("Dewald", "8001015009087", null));
+
+      assertEquals(List.of(dewald, otherDewald), ids(repo.search(null, "Dewald", null)));
+      assertEquals(List.of(jan), ids(repo.search("7711145800087", null, null)));
+      assertEquals(List.of(jan), ids(repo.search(null, null, "0831234567")));
+      assertEquals(List.of(dewald, jan, otherDewald), ids(repo.search("7711145800087", "Dewald", null)));
+      assertTrue(repo.search(null, null, null).isEmpty());
+   }
+
+   @Test
+   void testSearchPage() {
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", "0831234567"));
+      Long otherDewald = repo.insert(client("Dewald", "8001015009087", null));
+      Long lastDewald = repo.insert(client("Dewald", "8001015009088", null));
+      
+      assertEquals(List.of(dewald, jan), ids(repo.search(null, "Dewald", "0831234567", 0L, 2)));
+      assertEquals(List.of(otherDewald, lastDewald), ids(repo.search(null, "Dewald", "0831234567", jan, 2)));
+      assertTrue(repo.search(null, "Dewald", "0831234567", lastDewald, 2).isEmpty());
+      assertEquals(List.of(dewald), ids(repo.search("9607104800084", "Dewald", "0821234567", 0L, 1)));
+   }
+   
+   @Test
+   void testFindAllDoesNotBlockWriters() {
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      repo.insert(client("Jan", "7711145800087", "0831234567"));
+      int visited = 0;
+      
+      for (ClientDto client : repo.findAll()) {
+         visited++;
+         repo.insert(client("Visited-" + visited, "id-" + visited, null)); //no ConcurrentModificationException
+         repo.delete(dewald);
+      }
+      
+      assertTrue(visited >= 1);
+      assertEquals(1 + visited, repo.size());
+   }
+   
+   @Test
+   void testMetrics() {
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      ClientRepo repo = new ClientRepo(new MemoryClientStore(), registry, new ChangeLog(16));
+      
+      Long first = repo.insert(client("Dewald", "1", null));
+      repo.insert(client("Dewald", "2", null));
+      repo.insert(client("Jan", "3", null));
+      repo.update(first, client("Dewald", "1", "0821234567"));
+      repo.findById(first);
+      repo.existsByIdNumber("1");
+      repo.search(null, "Dewald", null, 0L, 1);
+      repo.searchByFirstNamePrefix("De", 0, 10);
+      
+      assertEquals(3, registry.get("client.store.size").gauge().value());
+      assertEquals(3, registry.get(RepoMetrics.OPERATIONS).tag("operation", "insert").timer().count());
+      assertEquals(1, registry.get(RepoMetrics.OPERATIONS).tag("operation", "update").timer().count());
+      assertEquals(2, registry.get(RepoMetrics.OPERATIONS).tag("operation", "search").timer().count());
+      assertEquals(1, registry.get(RepoMetrics.SCANNED).tag("mode", "exact").summary().totalAmount());
+      assertEquals(3, registry.get(RepoMetrics.SCANNED).tag("mode", "prefix").summary().totalAmount());
+   }
+   
+   @Test
+   void testSearchByFirstNamePrefix() {
+      Long dewald = repo.insert(client("Dewald", "1", null));
+      Long dewaldLower = repo.insert(client("dewald", "2", null));
+      Long dew = repo.insert(client("Dew", "3", null));
+      Long deon = repo.insert(client("Deon", "4", null));
+      Long otherDew = repo.insert(client("Dew", "5", null));
+      repo.insert(client("Jan", "6", null));
+      
+      assertEquals(List.of(deon, dew, otherDew, dewald, dewaldLower), ids(repo.searchByFirstNamePrefix("de", 0, 10)));
+      assertEquals(List.of(otherDew, dewald), ids(repo.searchByFirstNamePrefix("DE", 2, 2)));
+      assertEquals(List.of(dewald, dewaldLower), ids(repo.searchByFirstNamePrefix("Dewa", 0, 10)));
+      assertTrue(repo.searchByFirstNamePrefix("X", 0, 10).isEmpty());
+      
+      repo.update(deon, client("Jan", "4", null));
+      repo.delete(dew);
+      
+      assertEquals(List.of(otherDew, dewald, dewaldLower), ids(repo.searchByFirstNamePrefix("de", 0, 10)));
+   }
+   
+   @Test
+   void testSearchByFirstNameSimilarTo() {
+      Long dewald = repo.insert(client("Dewald", "1", null));
+      Long dewalt = repo.insert(client("Dewalt", "2", null));
+      Long jan = repo.insert(client("Jan", "3", null));
+      repo.insert(client("Thandi", "4", null));
+      
+      assertEquals(List.of(dewald, dewalt), ids(repo.searchByFirstNameSimilarTo("Dewal", 0, 10)));
+      assertEquals(List.of(dewalt, dewald), ids(repo.searchByFirstNameSimilarTo("dewalt", 0, 10)));
+      assertEquals(List.of(dewald), ids(repo.searchByFirstNameSimilarTo("Dewlad", 0, 10)));
+      assertEquals(List.of(jan), ids(repo.searchByFirstNameSimilarTo("Jann", 0, 10)));
+      assertEquals(List.of(dewalt), ids(repo.searchByFirstNameSimilarTo("Dewal", 1, 10)));
+      
+      repo.delete(dewald);
+      
+      assertEquals(List.of(dewalt), ids(repo.searchByFirstNameSimilarTo("Dewal", 0, 10)));
+   }
+   
+   @Test
+   void testUpdateReindexes() {
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+
+      repo.update(id, client("Jan", "7711145800087", null));
+
+      assertFalse(repo.existsByIdNumber("9607104800084"));
+      assertFalse(repo.existsByMobileNumber("0821234567"));
+      assertTrue(repo.existsByIdNumber("7711145800087"));
+      assertTrue(repo.search(null, "Dewald", null).isEmpty());
+      assertEquals(List.of(id), ids(repo.search(null, "Jan", null)));
+   }
+
+   @Test
+   void testConditionalUpdate() {
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      assertEquals(1L, repo.findById(id).getVersion());
+
+      assertTrue(repo.update(id, client("Dewald", "9607104800084", "0831234567"), 1L));
+      assertEquals(2L, repo.findById(id).getVersion());
+
+      VersionConflictException error = assertThrows(VersionConflictException.class, 
+            () -> repo.update(id, client("Jan", "9607104800084", "0841234567"), 1L));
+      assertEquals(2L, error.getVersion());
+      assertEquals("0831234567", repo.findById(id).getMobileNumber());
+      assertFalse(repo.existsByMobileNumber("0841234567")); //nothing reserved
+
+      assertTrue(repo.update(id, client("Jan", "9607104800084", "0841234567")));
+      assertEquals(3L, repo.findById(id).getVersion());
+      assertFalse(repo.update(id + 1, client("Jan", null, null), 1L));
+   }
+
+   @Test
+   void testFailedWriteLeavesNoTrace() {
+      AtomicBoolean failing = new AtomicBoolean();
+      MemoryClientStore memory = new MemoryClientStore();
+      ClientStore store = new ClientStore() {
+         public ClientDto get(Long id) {
+            return memory.get(id);
+         }
+
+         public ClientDto compute(Long id, BiFunction<Long, ClientDto, ClientDto> remapping) {
+            if (failing.get()) {
+               throw new UncheckedIOException(new IOException("disk full"));
+            }
+            return memory.compute(id, remapping);
+         }
+
+         public Iterable<ClientDto> values() {
+            return memory.values();
+         }
+
+         public int size() {
+            return memory.size();
+         }
+      };
+      ChangeLog changes = new ChangeLog(16);
+      ClientRepo repo = new ClientRepo(store, new SimpleMeterRegistry(), changes);
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      long sequence = changes.lastSequence();
+
+      failing.set(true);
+      assertThrows(UncheckedIOException.class, () -> repo.insert(client("Jan", "7711145800087", "0831234567")));
+      assertThrows(UncheckedIOException.class, () -> repo.update(id, client("Jan", "9607104800084", "0841234567")));
+      assertThrows(UncheckedIOException.class, () -> repo.delete(id));
+      failing.set(false);
+
+      assertEquals(sequence, changes.lastSequence());
+      assertFalse(repo.existsByIdNumber("7711145800087"));
+      assertFalse(repo.existsByMobileNumber("0841234567"));
+      assertTrue(repo.existsByMobileNumber("0821234567"));
+      assertEquals(List.of(id), ids(repo.search(null, "Dewald", null)));
+      repo.insert(client("Jan", "7711145800087", "0831234567")); //the failed insert released its values
+   }
+
+   @Test
+   void testConcurrentConditionalUpdatesLoseNothing() throws Exception {
+      int perThread = 200;
+      Long id = repo.insert(client("0", "9607104800084", null));
+      
+      runConcurrently(THREADS, thread -> {
+         for (int count = 0; count < perThread; count++) {
+            while (true) { //read, increment and write back until no other thread came in between
+               ClientDto read = repo.findById(id);
+               ClientDto incremented = client(String.valueOf(Integer.parseInt(read.getFirstName()) + 1), 
+                     read.getIdNumber(), null);
+               
+               try {
+                  repo.update(id, incremented, read.getVersion());
+                  break;
+               } catch (VersionConflictException retry) {
+               }
+            }
+         }
+      });
+      
+      ClientDto client = repo.findById(id);
+      assertEquals(String.valueOf(THREADS * perThread), client.getFirstName());
+      assertEquals(THREADS * perThread + 1L, client.getVersion());
+   }
+
+   @Test
+   void testShardedSearch() {
+      ClientRepo repo = new ClientRepo(sharded(4));
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", "0831234567"));
+      Long otherDewald = repo.insert(client("Dewald", "8001015009087", null));
+      Long lastDewald = repo.insert(client("Dewald", "8001015009088", null));
+      Long dewalt = repo.insert(client("Dewalt", "8001015009089", null));
+      
+      assertEquals(List.of(dewald, otherDewald, lastDewald), ids(repo.search(null, "Dewald", null)));
+      assertEquals(List.of(dewald, jan), ids(repo.search(null, "Dewald", "0831234567", 0L, 2)));
+      assertEquals(List.of(otherDewald, lastDewald), ids(repo.search(null, "Dewald", "0831234567", jan, 2)));
+      assertEquals(List.of(jan), ids(repo.search("7711145800087", null, null)));
+      assertEquals(List.of(dewald, otherDewald, lastDewald, dewalt), ids(repo.searchByFirstNamePrefix("dew", 0, 10)));
+      assertEquals(List.of(lastDewald, dewalt), ids(repo.searchByFirstNamePrefix("dew", 2, 10)));
+      assertEquals(List.of(dewalt, dewald, otherDewald, lastDewald), 
+            ids(repo.searchByFirstNameSimilarTo("dewalt", 0, 10)));
+      
+      repo.delete(dewald); //the name stays searchable while another shard holds it
+      repo.update(dewalt, client("Jan", "8001015009089", null));
+      
+      assertEquals(List.of(otherDewald, lastDewald), ids(repo.searchByFirstNamePrefix("dew", 0, 10)));
+      assertEquals(List.of(jan, dewalt), ids(repo.search(null, "Jan", null)));
+      assertEquals(4, repo.size());
+      assertEquals(Set.of(jan, otherDewald, lastDewald, dewalt), new HashSet<>(ids(toList(repo.findAll()))));
+   }
+   
+   @Test
+   void testShardedConcurrentInserts() throws Exception {
+      ClientRepo repo = new ClientRepo(sharded(THREADS));
+      int perThread = 500;
+      
+      runConcurrently(THREADS, thread -> {
+         for (int count = 0; count < perThread; count++) {
+            repo.insert(client("Dewald", thread + "-" + count, null));
+         }
+      });
+      
+      List<Long> ids = ids(repo.search(null, "Dewald", null));
+      assertEquals(THREADS * perThread, ids.size());
+      assertEquals(ids.stream().sorted().toList(), ids);
+      assertEquals(ids.subList(100, 200), ids(repo.search(null, "Dewald", null, ids.get(99), 100)));
+   }
+
+   @Test
+   void testReplicate() {
+      ClientDto leaderClient = client("Dewald", "9607104800084", "0821234567");
+      leaderClient.setVersion(7L);
+      repo.replicate(5L, leaderClient);
+      
+      assertEquals(7L, repo.findById(5L).getVersion());
+      assertEquals(List.of(5L), ids(repo.search(null, "Dewald", null)));
+      assertEquals(6L, repo.nextId()); //ids of the leader are never handed out again
+      
+      repo.replicate(3L, client("Jan", "9607104800084", null)); //takes over the idNumber, as from a stale export
+      assertEquals(List.of(3L), ids(repo.search("9607104800084", null, null)));
+      
+      ClientDto updated = client("Dewalt", "8001015009087", "0821234567");
+      updated.setVersion(8L);
+      repo.replicate(5L, updated);
+      repo.replicate(3L, null);
+      
+      assertEquals(8L, repo.findById(5L).getVersion());
+      assertNull(repo.findById(3L));
+      assertFalse(repo.existsByIdNumber("9607104800084"));
+      assertTrue(repo.existsByMobileNumber("0821234567"));
+      assertEquals(List.of(5L), ids(repo.searchByFirstNamePrefix("Dew", 0, 10)));
+   }
+
+   @Test
+   void testChanges() {
+      long start = repo.changes().lastSequence();
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      repo.update(id, client("Jan", "9607104800084", "0821234567"));
+      
+      assertThrows(UniqueConstraintException.class, () -> repo.insert(client("Jan", "9607104800084", null)));
+      assertThrows(VersionConflictException.class, () -> repo.update(id, client("Jan", "9607104800084", null), 1L));
+      assertFalse(repo.update(id + 1, client("Jan", null, null)));
+      
+      repo.delete(id);
+      repo.insertAll(List.of(client("Piet", "7711145800087", null)));
+      
+      List<ClientChangeDto> changes = repo.changes().read(start, 10);
+      assertEquals(List.of(ClientChangeDto.Type.CREATED, ClientChangeDto.Type.UPDATED, ClientChangeDto.Type.DELETED, 
+            ClientChangeDto.Type.CREATED), changes.stream().map(ClientChangeDto::getType).toList());
+      Long piet = repo.search("7711145800087", null, null).get(0).getClient();
+      assertEquals(List.of(id, id, id, piet), 
+            changes.stream().map(ClientChangeDto::getClient).toList());
+      assertEquals("Jan", changes.get(1).getData().getFirstName());
+      assertEquals(2L, changes.get(1).getVersion());
+   }
+
+   @Test
+   void testDeleteUnindexes() {
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+
+      assertTrue(repo.delete(id));
+      assertFalse(repo.delete(id));
+
+      assertNull(repo.findById(id));
+      assertFalse(repo.existsByIdNumber("9607104800084"));
+      assertFalse(repo.existsByMobileNumber("0821234567"));
+      assertTrue(repo.search("9607104800084", "Dewald", "0821234567").isEmpty());
+   }
+
+   @Test
+   void testInsertDuplicates() {
+      Long id = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      
+      UniqueConstraintException idNumberError = assertThrows(UniqueConstraintException.class, 
+            () -> repo.insert(client("Jan", "9607104800084", null)));
+      UniqueConstraintException mobileNumberError = assertThrows(UniqueConstraintException.class, 
+            () -> repo.insert(client("Jan", "7711145800087", "0821234567")));
+      
+      assertEquals("idNumber", idNumberError.getField());
+      assertEquals("mobileNumber", mobileNumberError.getField());
+      assertEquals(1, repo.size());
+      assertFalse(repo.existsByIdNumber("7711145800087")); //reservation rolled back
+      assertEquals(List.of(id), ids(repo.search("9607104800084", "Jan", "0821234567")));
+   }
+   
+   @Test
+   void testUpdateDuplicates() {
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", "0831234567"));
+      
+      assertThrows(UniqueConstraintException.class, 
+            () -> repo.update(jan, client("Jan", "9607104800084", "0841234567")));
+      assertFalse(repo.existsByMobileNumber("0841234567")); //reservation rolled back
+      assertEquals("0831234567", repo.findById(jan).getMobileNumber());
+      
+      assertTrue(repo.update(dewald, client("Dewald", "9607104800084", "0841234567"))); //keeps own idNumber
+      assertTrue(repo.update(jan, client("Jan", "7711145800087", "0821234567"))); //takes released mobileNumber
+      assertEquals(List.of(jan), ids(repo.search(null, null, "0821234567")));
+   }
+   
+   @Test
+   void testInsertAll() {
+      Long existing = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      ClientDto first = client("Jan", "7711145800087", "0831234567");
+      ClientDto taken = client("Jan", "9607104800084", null);
+      ClientDto repeated = client("Jan", "8001015009087", "0831234567");
+      ClientDto last = client("Jan", "8001015009088", null);
+      
+      List<String> conflicts = repo.insertAll(List.of(first, taken, repeated, last));
+      
+      assertEquals(Arrays.asList(null, "idNumber", "mobileNumber", null), conflicts);
+      assertNull(taken.getClient());
+      assertNull(repeated.getClient());
+      assertTrue(first.getClient() > existing);
+      assertTrue(last.getClient() > first.getClient());
+      assertEquals(List.of(first.getClient(), last.getClient()), ids(repo.search(null, "Jan", null)));
+      assertFalse(repo.existsByIdNumber("8001015009087"));
+   }
+   
+   @Test
+   void testConcurrentDuplicateInserts() throws Exception {
+      ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+      ConcurrentLinkedQueue<String> rejected = new ConcurrentLinkedQueue<>();
+      
+      runConcurrently(THREADS, thread -> {
+         for (int index = 0; index < 1_000; index++) {
+            try {
+               ids.add(repo.insert(client("Retry", "id-" + index, "mobile-" + (index + thread) % 1_000)));
+            } catch (UniqueConstraintException error) {
+               rejected.add(error.getField());
+            }
+         }
+      });
+      
+      assertEquals(repo.size(), ids.size());
+      assertEquals(THREADS * 1_000, ids.size() + rejected.size());
+      assertTrue(repo.size() <= 1_000);
+      
+      for (int index = 0; index < 1_000; index++) {
+         assertTrue(repo.search("id-" + index, null, null).size() <= 1);
+         assertTrue(repo.search(null, null, "mobile-" + index).size() <= 1);
+      }
+   }
+   
+   @Test
+   void testConcurrentInserts() throws Exception {
+      int perThread = 5_000;
+      ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+      
+      runConcurrently(THREADS, thread -> {
+         for (int index = 0; index < perThread; index++) {
+            ids.add(repo.insert(client("Stress", thread + "-" + index, null)));
+         }
+      });
+      
+      int total = THREADS * perThread;
+      Set<Long> uniqueIds = new HashSet<>(ids);
+      
+      assertEquals(total, repo.size());
+      assertEquals(total, uniqueIds.size());
+      assertTrue(uniqueIds.stream().allMatch(id -> id >= 1 && id <= total));
+      assertEquals(total, repo.search(null, "Stress", null).size());
+      assertTrue(repo.existsByIdNumber((THREADS - 1) + "-" + (perThread - 1)));
+   }
+   
+   @Test
+   void testConcurrentUpdatesLoseNothing() throws Exception {
+      int perThread = 200;
+      int rounds = 50;
+      List<Long> ids = new ArrayList<>();
+      
+      for (int index = 0; index < THREADS * perThread; index++) {
+         ids.add(repo.insert(client("Round-0", "id-" + index, "mobile-" + index)));
+      }
+      
+      runConcurrently(THREADS, thread -> {
+         for (int round = 1; round <= rounds; round++) {
+            for (int index = thread * perThread; index < (thread + 1) * perThread; index++) {
+               assertTrue(repo.update(ids.get(index), client("Round-" + round, "id-" + index, "mobile-" + round + "-" + index)));
+            }
+         }
+      });
+      
+      for (int index = 0; index < ids.size(); index++) {
+         ClientDto client = repo.findById(ids.get(index));
+         
+         assertEquals("Round-" + rounds, client.getFirstName());
+         assertEquals("mobile-" + rounds + "-" + index, client.getMobileNumber());
+         assertFalse(repo.existsByMobileNumber("mobile-" + index));
+      }
+      assertEquals(ids.size(), repo.search(null, "Round-" + rounds, null).size());
+      assertTrue(repo.search(null, "Round-0", null).isEmpty());
+   }
+   
+   @Test
+   void testConcurrentUpdateAndDelete() throws Exception {
+      List<Long> ids = new ArrayList<>();
+      
+      for (int index = 0; index < 10_000; index++) {
+         ids.add(repo.insert(client("Racer", "id-" + index, null)));
+      }
+      
+      runConcurrently(THREADS, thread -> {
+         for (Long id : ids) {
+            if (thread % 2 == 0) {
+               repo.delete(id);
+            } else {
+               repo.update(id, client("Racer", "updated-" + id, null));
+            }
+         }
+      });
+      
+      assertEquals(0, repo.size());
+      assertTrue(repo.search(null, "Racer", null).isEmpty());
+      assertFalse(repo.existsByIdNumber("id-1"));
+      assertFalse(repo.existsByIdNumber("updated-1"));
+   }
+   
+   @Test
+   void testStoredRecordsAreImmutable() {
+      ClientDto written = client("Dewald", "9607104800084", "0821234567");
+      Long id = repo.insert(written);
+      written.setFirstName("Changed"); //the caller's object is not the stored one
+
+      ClientDto read = repo.findById(id);
+      assertEquals("Dewald", read.getFirstName());
+      assertThrows(UnsupportedOperationException.class, () -> read.setFirstName("Changed"));
+      assertThrows(UnsupportedOperationException.class, () -> repo.search(null, "Dewald", null).get(0).setVersion(9L));
+
+      repo.update(id, client("Jan", "9607104800084", "0821234567"));
+
+      assertEquals("Dewald", read.getFirstName()); //a held version stays whole
+      assertEquals(1L, read.getVersion());
+      assertEquals("Jan", repo.findById(id).getFirstName());
+      assertTrue(repo.search(null, "Dewald", null).isEmpty());
+   }
+
+   @Test
+   void testReadsUnderWriteLoad() throws Exception {
+      int clients = 1000;
+      List<Long> ids = new ArrayList<>();
+
+      for (int index = 0; index < clients; index++) {
+         ids.add(repo.insert(versioned(0, index)));
+      }
+
+      AtomicBoolean writing = new AtomicBoolean(true);
+      AtomicLong writes = new AtomicLong();
+      ExecutorService writers = Executors.newFixedThreadPool(THREADS);
+
+      try {
+         for (int thread = 0; thread < THREADS; thread++) {
+            writers.submit(() -> {
+               for (int round = 1; writing.get(); round++) {
+                  int index = ThreadLocalRandom.current().nextInt(clients);
+                  repo.update(ids.get(index), versioned(round, index));
+                  writes.incrementAndGet();
+               }
+            });
+         }
+
+         long writesBefore = writes.get();
+         readWhole(ids, 20_000);
+
+         for (ClientDto client : repo.findAll()) { //a long scan sees every client whole
+            assertEquals(client.getFirstName(), client.getLastName());
+         }
+         assertTrue(writes.get() > writesBefore, "writers made no progress while the readers read");
+      } finally {
+         writing.set(false);
+         writers.shutdown();
+         assertTrue(writers.awaitTermination(10, TimeUnit.SECONDS));
+      }
+   }
+
+   /**
+    * Reads random clients by id and by firstName, checking that every client read is one whole version.
+    */
+   private void readWhole(List<Long> ids, int reads) {
+      for (int read = 0; read < reads; read++) {
+         Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+         ClientDto client = repo.findById(id);
+
+         assertEquals(client.getFirstName(), client.getLastName());
+         for (ClientDto named : repo.search(null, client.getFirstName(), null, 0L, 10)) {
+            assertEquals(client.getFirstName(), named.getFirstName());
+         }
+      }
+   }
+
+   /**
+    * A client whose firstName and lastName are written together, so a reader can tell a torn version apart.
+    */
+   static ClientDto versioned(int round, int index) {
+      ClientDto client = client("V" + round + "-" + index, "id-" + index, null);
+      client.setLastName(client.getFirstName());
+      return client;
+   }
+
+   static void runConcurrently(int threads, IntConsumer task) throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      CountDownLatch startGate = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      
+      try {
+         for (int thread = 0; thread < threads; thread++) {
+            int threadIndex = thread;
+            
+            futures.add(executor.submit(() -> {
+               startGate.await();
+               task.accept(threadIndex);
+               return null;
+            }));
+         }
+         
+         startGate.countDown();
+         
+         for (Future<?> future : futures) {
+            future.get();
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   static ShardedClientStore sharded(int shards) {
+      List<ClientStore> stores = new ArrayList<>();
+
+      for (int shard = 0; shard < shards; shard++) {
+         stores.add(shard % 2 == 0 ? new MemoryClientStore() : new CompactClientStore());
+      }
+
+      return new ShardedClientStore(stores);
+   }
+
+   static List<ClientDto> toList(Iterable<ClientDto> clients) {
+      List<ClientDto> list = new ArrayList<>();
+      clients.forEach(list::add);
+      return list;
+   }
+
+   static ClientDto client(String firstName, String idNumber, String mobileNumber) {
+      ClientDto client = new ClientDto();
+      client.setFirstName(firstName);
+      client.setLastName("Pretorius");
+      client.setIdNumber(idNumber);
+      client.setMobileNumber(mobileNumber);
+      return client;
+   }
+
+   static List<Long> ids(List<ClientDto> clients) {
+      return clients.stream().map(ClientDto::getClient).toList();
+   }
+}
@@ -0,0 +1,145 @@
+package com.demo.repository;
+
+import static com.demo.repository.ClientRepoTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.demo.dto.ClientDto;
+
+class CompactClientStoreTest {
+   static final String[] FIRST_NAMES = { "Dewald", "Jan", "Piet", "Sarel", "Anna", "Marie", "Thandi", "Sipho" };
+
+   private final CompactClientStore store = new CompactClientStore();
+
+   @Test
+   void testRoundTrip() {
+      ClientDto numeric = full(1L, "Dewald", "0607104800084", "0821234567", "12 Long Street, Cape Town");
+      ClientDto text = full(2L, "Jan", "96071O48OOO84", "+27821234567", null);
+      ClientDto sparse = full(3L, null, null, null, null);
+      sparse.setLastName(null);
+      ClientDto unicode = full(4L, "Zoë", "9607104800084", "", "Straße 1, Ümlaut");
+
+      numeric.setVersion(Long.MAX_VALUE);
+      text.setVersion(1L);
+
+      for (ClientDto client : new ClientDto[] { numeric, text, sparse, unicode }) {
+         store.compute(client.getClient(), (key, oldClient) -> client);
+         assertEquals(client, store.get(client.getClient()));
+         assertEquals(client.getVersion(), store.get(client.getClient()).getVersion());
+         assertNotSame(client, store.get(client.getClient()));
+      }
+
+      assertEquals(4, store.size());
+   }
+
+   @Test
+   void testUpdateAndDelete() {
+      for (long id = 1; id <= 10_000; id++) {
+         store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+      }
+
+      store.compute(5L, (key, oldClient) -> {
+         assertEquals("5", oldClient.getIdNumber());
+         return full(key, "Jan", "7711145800087", "0821234567", null);
+      });
+
+      for (long id = 1; id <= 10_000; id += 2) {
+         store.compute(id, (key, oldClient) -> null);
+      }
+
+      assertEquals(5_000, store.size());
+      assertNull(store.get(5L));
+      assertNull(store.get(10_001L));
+
+      Set<Long> ids = new HashSet<>();
+      for (ClientDto client : store.values()) {
+         assertEquals(0, client.getClient() % 2);
+         assertEquals(String.valueOf(client.getClient()), client.getIdNumber());
+         ids.add(client.getClient());
+      }
+      assertEquals(5_000, ids.size());
+   }
+
+   @Test
+   void testBehindClientRepo() throws Exception {
+      ClientRepo repo = new ClientRepo(store);
+
+      runConcurrently(THREADS, thread -> {
+         for (int index = 0; index < 2_000; index++) {
+            Long id = repo.insert(client(FIRST_NAMES[index % FIRST_NAMES.length], thread + "-" + index, null));
+            repo.update(id, client("Updated", thread + "-" + index, String.valueOf(id)));
+
+            if (index % 4 == 0) {
+               repo.delete(id);
+            }
+         }
+      });
+
+      assertEquals(THREADS * 1_500, repo.size());
+      assertEquals(THREADS * 1_500, repo.search(null, "Updated", null).size());
+      assertTrue(repo.search(null, "Dewald", null).isEmpty());
+   }
+
+   @Test
+   @Tag("footprint")
+   void testHeapFootprint() {
+      int count = 200_000;
+      bytesPerClient(count / 10, MemoryClientStore::new); //leave out the one-off allocations of the first run
+      bytesPerClient(count / 10, CompactClientStore::new);
+      long objects = bytesPerClient(count, MemoryClientStore::new);
+      long compact = bytesPerClient(count, CompactClientStore::new);
+
+      assertTrue(compact * 2 < objects, "compact " + compact + " vs objects " + objects);
+   }
+
+   static long bytesPerClient(int count, Supplier<ClientStore> engine) {
+      return bytesPerClient(count, engine, clients -> clients);
+   }
+
+   /**
+    * @param holder builds what holds on to the filled store, which counts towards the heap taken, such as a repository
+    */
+   static long bytesPerClient(int count, Supplier<ClientStore> engine, Function<ClientStore, Object> holder) {
+      Random random = new Random(count);
+      long before = usedHeap();
+      ClientStore clients = engine.get();
+
+      for (long id = 1; id <= count; id++) { //unique idNumbers and mobileNumbers, so a repository can index them
+         ClientDto client = full(id, new String(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]),
+               String.format("%013d", id * 7_919 + random.nextInt(7_919)),
+               String.format("0%09d", id * 4_000 + random.nextInt(4_000)),
+               random.nextInt(1_000) + " Long Street, Cape Town");
+         clients.compute(id, (key, oldClient) -> client);
+      }
+
+      Object held = holder.apply(clients);
+      long after = usedHeap();
+      Reference.reachabilityFence(held);
+      return (after - before) / count;
+   }
+
+   static long usedHeap() {
+      for (int attempt = 0; attempt < 3; attempt++) {
+         System.gc();
+      }
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+   }
+
+   static ClientDto full(Long id, String firstName, String idNumber, String mobileNumber, String address) {
+      ClientDto client = client(firstName, idNumber, mobileNumber);
+      client.setClient(id);
+      client.setLastName(new String("Pretorius"));
+      client.setAddress(address);
+      return client;
+   }
+}
@@ -0,0 +1,190 @@
+package com.demo.repository;
+
+import static com.demo.repository.ClientRepoTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.demo.dto.ClientDto;
+
+class LogClientStoreTest {
+   @TempDir
+   Path dir;
+
+   @Test
+   void testRecoverFromLog() throws Exception {
+      LogClientStore store = open();
+      ClientRepo repo = new ClientRepo(store);
+      Long dewald = repo.insert(client("Dewald", "9607104800084", "0821234567"));
+      Long jan = repo.insert(client("Jan", "7711145800087", null));
+      Long removed = repo.insert(client("Piet", "8001015009087", "0831234567"));
+      repo.update(jan, client("Jan", "7711145800087", "0841234567"));
+      repo.delete(removed);
+      store.closeLog(); //crash: no snapshot
+      
+      ClientRepo recovered = new ClientRepo(open());
+      
+      assertEquals(2, recovered.size());
+      assertEquals(repo.findById(dewald), recovered.findById(dewald));
+      assertEquals("0841234567", recovered.findById(jan).getMobileNumber());
+      assertNull(recovered.findById(removed));
+      assertTrue(recovered.existsByMobileNumber("0841234567"));
+      assertFalse(recovered.existsByIdNumber("8001015009087"));
+      assertEquals(removed + 1, recovered.insert(client("Sarel", "8001015009088", null))); //sequence restored
+   }
+   
+   @Test
+   void testRecoverFromSnapshotAndLog() throws Exception {
+      LogClientStore store = open();
+      ClientRepo repo = new ClientRepo(store);
+      Long dewald = repo.insert(client("Dewald", "9607104800084", null));
+      Long jan = repo.insert(client("Jan", "7711145800087", null));
+      store.snapshot();
+      repo.delete(dewald);
+      Long piet = repo.insert(client("Piet", "8001015009087", null));
+      store.closeLog();
+      
+      assertEquals(1, files("snapshot-").size());
+      
+      ClientRepo recovered = new ClientRepo(open());
+      
+      assertNull(recovered.findById(dewald));
+      assertEquals("Jan", recovered.findById(jan).getFirstName());
+      assertEquals("Piet", recovered.findById(piet).getFirstName());
+   }
+   
+   @Test
+   void testCloseCompactsIntoSnapshot() throws Exception {
+      LogClientStore store = open();
+      ClientRepo repo = new ClientRepo(store);
+      
+      for (int index = 0; index < 100; index++) {
+         Long id = repo.insert(client("Dewald", "id-" + index, null));
+         repo.update(id, client("Jan", "id-" + index, null));
+      }
+      store.close();
+      
+      assertEquals(1, files("snapshot-").size());
+      assertEquals(1, files("wal-").size());
+      assertEquals(0, Files.size(files("wal-").get(0)));
+      assertEquals(100, new ClientRepo(open()).search(null, "Jan", null).size());
+   }
+   
+   @Test
+   void testTornRecordIsTruncated() throws Exception {
+      LogClientStore store = open();
+      Long id = store.compute(1L, (key, oldClient) -> withId(client("Dewald", "9607104800084", null), key)).getClient();
+      store.closeLog();
+      
+      Path segment = files("wal-").get(0);
+      long validSize = Files.size(segment);
+      byte[] torn = WriteAheadLog.put(withId(client("Jan", "7711145800087", null), 2L));
+      
+      try (FileChannel file = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+         file.write(ByteBuffer.wrap(torn, 0, torn.length - 3));
+      }
+      
+      LogClientStore recovered = open();
+      
+      assertEquals(1, recovered.size());
+      assertEquals("Dewald", recovered.get(id).getFirstName());
+      assertEquals(validSize, Files.size(segment));
+   }
+   
+   @Test
+   void testWriteTheLogRejectsIsNotApplied() throws Exception {
+      LogClientStore store = open();
+      store.compute(1L, (key, oldClient) -> withId(client("Dewald", "1", null), key));
+      store.closeLog();
+      
+      assertThrows(IllegalStateException.class, 
+            () -> store.compute(1L, (key, oldClient) -> withId(client("Jan", "1", null), key)));
+      assertThrows(IllegalStateException.class, 
+            () -> store.compute(2L, (key, oldClient) -> withId(client("Jan", "2", null), key)));
+      assertThrows(IllegalStateException.class, () -> store.compute(1L, (key, oldClient) -> null));
+      
+      assertEquals("Dewald", store.get(1L).getFirstName());
+      assertNull(store.get(2L));
+      assertEquals(1, store.size());
+   }
+   
+   @Test
+   void testConcurrentWritesShareFsyncs() throws Exception {
+      LogClientStore store = open();
+      ClientRepo repo = new ClientRepo(store);
+      int perThread = 500;
+      
+      runConcurrently(THREADS, thread -> {
+         for (int index = 0; index < perThread; index++) {
+            repo.insert(client("Group", thread + "-" + index, null));
+         }
+      });
+      
+      int writes = THREADS * perThread;
+      assertTrue(store.syncCount() <= writes);
+      store.closeLog();
+      
+      assertEquals(writes, new ClientRepo(open()).size());
+   }
+   
+   @Test
+   void testSnapshotsUnderWriteLoad() throws Exception {
+      LogClientStore store = open();
+      ClientRepo repo = new ClientRepo(store);
+      AtomicBoolean writing = new AtomicBoolean(true);
+      AtomicInteger writes = new AtomicInteger();
+      
+      runConcurrently(THREADS + 1, thread -> {
+         if (thread > 0) {
+            for (int index = 0; writing.get(); index++) {
+               repo.insert(client("Load", thread + "-" + index, null));
+               writes.incrementAndGet();
+            }
+            return;
+         }
+         
+         try {
+            for (int snapshot = 0; snapshot < 5; snapshot++) { //never waits for the writers to pause
+               store.snapshot();
+            }
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         } finally {
+            writing.set(false);
+         }
+      });
+      store.closeLog(); //crash: every acknowledged write is in the last snapshot or the segments after it
+      
+      assertEquals(1, files("snapshot-").size());
+      assertEquals(writes.get(), new ClientRepo(open()).size());
+   }
+   
+   LogClientStore open() throws IOException {
+      return new LogClientStore(new MemoryClientStore(), dir, Duration.ZERO);
+   }
+   
+   List<Path> files(String prefix) throws IOException {
+      try (Stream<Path> files = Files.list(dir)) {
+         return files.filter(file -> file.getFileName().toString().startsWith(prefix)).toList();
+      }
+   }
+   
+   static ClientDto withId(ClientDto client, Long id) {
+      client.setClient(id);
+      return client;
+   }
+}
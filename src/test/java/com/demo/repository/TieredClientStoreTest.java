@@ -0,0 +1,321 @@
+package com.demo.repository;
+
+import static com.demo.repository.ClientRepoTest.*;
+import static com.demo.repository.CompactClientStoreTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.UniqueConstraintException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TieredClientStoreTest {
+   @TempDir
+   Path dir;
+
+   private MeterRegistry registry;
+   private TieredClientStore store;
+
+   @BeforeEach
+   public void setup() throws IOException {
+      registry = new SimpleMeterRegistry();
+      store = new TieredClientStore(dir, 64, 16, registry); //64 KiB chunks, so the tests fill and compact several
+   }
+
+   @AfterEach
+   public void teardown() throws IOException {
+      store.close();
+   }
+
+   @Test
+   void testRoundTrip() throws IOException {
+      ClientDto numeric = full(1L, "Dewald", "0607104800084", "0821234567", "12 Long Street, Cape Town");
+      ClientDto sparse = full(2L, null, null, null, null);
+      sparse.setLastName(null);
+      ClientDto unicode = full(3L, "Zoë", "9607104800084", "", "Straße 1, Ümlaut");
+      numeric.setVersion(Long.MAX_VALUE);
+
+      try (TieredClientStore cold = new TieredClientStore(dir, 0, registry)) { //every read decodes the file
+         for (ClientDto client : new ClientDto[] { numeric, sparse, unicode }) {
+            cold.compute(client.getClient(), (key, oldClient) -> client);
+            assertEquals(client, cold.get(client.getClient()));
+            assertEquals(client.getVersion(), cold.get(client.getClient()).getVersion());
+            assertNotSame(client, cold.get(client.getClient()));
+         }
+
+         assertEquals(3, cold.size());
+      }
+
+      try (Stream<Path> files = Files.list(dir)) {
+         assertEquals(0, files.count(), "files are unlinked once open, so a crash leaves none behind");
+      }
+   }
+
+   @Test
+   void testUpdateAndDelete() {
+      for (long id = 1; id <= 10_000; id++) {
+         store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+      }
+
+      for (int round = 0; round < 5; round++) { //leaves versions behind to compact
+         for (long id = 1; id <= 10_000; id++) {
+            store.compute(id, (key, oldClient) -> {
+               ClientDto client = full(key, "Jan", oldClient.getIdNumber(), null, "Round " + oldClient.getVersion());
+               client.setVersion(oldClient.getVersion() + 1);
+               return client;
+            });
+         }
+      }
+
+      for (long id = 1; id <= 10_000; id += 2) {
+         store.compute(id, (key, oldClient) -> null);
+      }
+
+      assertEquals(5_000, store.size());
+      assertNull(store.get(5L));
+      assertNull(store.get(10_001L));
+      assertEquals("Round 4", store.get(10L).getAddress());
+      assertEquals(5, store.get(10L).getVersion());
+
+      Set<Long> ids = new HashSet<>();
+      for (ClientDto client : store.values()) {
+         assertEquals(0, client.getClient() % 2);
+         assertEquals(String.valueOf(client.getClient()), client.getIdNumber());
+         assertEquals(5, client.getVersion());
+         ids.add(client.getClient());
+      }
+      assertEquals(5_000, ids.size());
+   }
+
+   @Test
+   void testHotTier() {
+      for (long id = 1; id <= 1_000; id++) {
+         store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+      }
+
+      for (int read = 0; read < 1_000; read++) { //a hot set that fits the hot tier
+         assertEquals(String.valueOf(read % 8 + 1), store.get(read % 8 + 1L).getIdNumber());
+      }
+
+      assertTrue(gets("hit") >= 990, "hits " + gets("hit"));
+      assertTrue(gets("miss") <= 10, "misses " + gets("miss"));
+      assertTrue(registry.get("cache.evictions").tag("cache", TieredClientStore.NAME).counter().count() > 900);
+      assertEquals(gets("miss"), registry.get(TieredClientStore.COLD_READS).timer().count());
+      assertTrue(registry.get(TieredClientStore.COLD_READS).timer().totalTime(TimeUnit.NANOSECONDS) > 0);
+
+      store.compute(3L, (key, oldClient) -> null);
+      assertNull(store.get(3L));
+   }
+
+   @Test
+   void testBloomFilter() {
+      for (long id = 1; id <= 10_000; id++) {
+         store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+      }
+
+      for (long id = 10_001; id <= 20_000; id++) {
+         assertNull(store.get(id));
+      }
+
+      double filtered = registry.get(TieredClientStore.FILTERED).counter().count();
+      assertTrue(filtered > 10_000 * 0.95, "filtered " + filtered); //and all inserts but the false positives
+   }
+
+   @Test
+   void testCompactionUnderConcurrentWrites() throws Exception {
+      int perThread = 2_000;
+
+      runConcurrently(THREADS, thread -> {
+         long first = (long) thread * perThread + 1;
+
+         for (long id = first; id < first + perThread; id++) {
+            store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+         }
+
+         for (int round = 0; round < 5; round++) { //compacts while the other threads write and read
+            for (long id = first; id < first + perThread; id++) {
+               store.compute(id, (key, oldClient) -> {
+                  ClientDto client = full(key, "Jan", oldClient.getIdNumber(), null, "Round " + oldClient.getVersion());
+                  client.setVersion(oldClient.getVersion() + 1);
+                  return client;
+               });
+               assertEquals(String.valueOf(id), store.get(id).getIdNumber());
+            }
+         }
+
+         for (long id = first; id < first + perThread; id += 2) {
+            store.compute(id, (key, oldClient) -> null);
+         }
+      });
+
+      assertEquals(THREADS * perThread / 2, store.size());
+      int count = 0;
+      for (ClientDto client : store.values()) {
+         assertEquals(0, client.getClient() % 2);
+         assertEquals("Round 4", client.getAddress());
+         assertEquals(5, client.getVersion());
+         count++;
+      }
+      assertEquals(THREADS * perThread / 2, count);
+   }
+
+   @Test
+   void testValuesWhileTheIndexChanges() {
+      for (long id = 1; id <= 5_000; id++) {
+         store.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+      }
+
+      List<Long> visited = new ArrayList<>();
+      long inserted = 5_000;
+
+      for (ClientDto client : store.values()) {
+         visited.add(client.getClient());
+
+         for (int count = 0; count < 10; count++) { //grows the index several times over and moves ids in it
+            long id = ++inserted;
+            store.compute(id, (key, oldClient) -> full(key, "Jan", String.valueOf(key), null, null));
+            if (count % 2 == 1) {
+               store.compute(id - 1, (key, oldClient) -> null);
+            }
+         }
+      }
+
+      Set<Long> ids = new HashSet<>(visited);
+      assertEquals(visited.size(), ids.size(), "no client is visited twice");
+      for (long id = 1; id <= 5_000; id++) {
+         assertTrue(ids.contains(id), "client " + id);
+      }
+   }
+
+   @Test
+   void testValuesOfShards() throws IOException {
+      List<TieredClientStore> shards = new ArrayList<>();
+      for (int shard = 0; shard < 4; shard++) {
+         shards.add(new TieredClientStore(dir, 64, 16, registry));
+      }
+
+      try {
+         ClientStore sharded = new ShardedClientStore(shards);
+         for (long id = 1; id <= 1_000; id++) {
+            sharded.compute(id, (key, oldClient) -> full(key, "Dewald", String.valueOf(key), null, null));
+         }
+         double filtered = registry.get(TieredClientStore.FILTERED).counter().count();
+
+         Set<Long> ids = new HashSet<>();
+         for (ClientDto client : sharded.values()) {
+            ids.add(client.getClient());
+         }
+
+         assertEquals(1_000, ids.size());
+         assertEquals(filtered, registry.get(TieredClientStore.FILTERED).counter().count(), 
+               "each shard reads its own ids");
+      } finally {
+         for (TieredClientStore shard : shards) {
+            shard.close();
+         }
+      }
+   }
+
+   @Test
+   void testBehindClientRepo() throws Exception {
+      ClientRepo repo = new ClientRepo(store);
+
+      runConcurrently(THREADS, thread -> {
+         for (int index = 0; index < 2_000; index++) {
+            Long id = repo.insert(client(FIRST_NAMES[index % FIRST_NAMES.length], thread + "-" + index, null));
+            repo.update(id, client("Updated", thread + "-" + index, String.valueOf(id)));
+
+            if (index % 4 == 0) {
+               repo.delete(id);
+            }
+         }
+      });
+
+      assertEquals(THREADS * 1_500, repo.size());
+      assertEquals(THREADS * 1_500, repo.search(null, "Updated", null).size());
+      assertTrue(repo.search(null, "Dewald", null).isEmpty());
+      assertEquals(THREADS * 1_500, toList(repo.findAll()).size());
+   }
+
+   @Test
+   void testIndexesNextToTheClients() {
+      ClientRepo repo = new ClientRepo(store);
+      List<Long> dewalds = new ArrayList<>();
+
+      for (int index = 0; index < 5_000; index++) {
+         Long id = repo.insert(client(index % 3 == 0 ? "Dewald" : "Jan", "id-" + index, "mobile-" + index));
+         if (index % 3 == 0) {
+            dewalds.add(id);
+         }
+      }
+      long far = 1L << 40;
+      long last = 1L << 62;
+      repo.replicate(far, client("Dewald", "id-far", null)); //ids far apart share no node below the root
+      repo.replicate(last, client("Dewald", "id-last", null));
+      dewalds.addAll(List.of(far, last));
+
+      assertThrows(UniqueConstraintException.class, () -> repo.insert(client("Piet", "id-7", null)));
+      assertThrows(UniqueConstraintException.class, () -> repo.insert(client("Piet", "id-new", "mobile-8")));
+      assertTrue(repo.existsByIdNumber("id-4999"));
+      assertTrue(repo.existsByIdNumber("id-last"));
+      assertFalse(repo.existsByIdNumber("id-5000"));
+      assertTrue(repo.existsByMobileNumber("mobile-0"));
+      assertEquals(dewalds, ids(repo.search(null, "Dewald", null)));
+      assertEquals(dewalds.subList(10, 20), ids(repo.search(null, "Dewald", null, dewalds.get(9), 10)));
+      assertEquals(List.of(last), ids(repo.search(null, "Dewald", null, far, 10)));
+
+      Long first = dewalds.get(0);
+      repo.update(first, client("Piet", "id-0", "mobile-moved"));
+      repo.insert(client("Sarel", "id-new", "mobile-0")); //released by the update
+
+      assertEquals(1, repo.search("id-7", null, null).size());
+      assertEquals(List.of(first), ids(repo.searchByFirstNamePrefix("Pi", 0, 10)));
+      assertEquals(dewalds.subList(1, dewalds.size()), ids(repo.search(null, "Dewald", null)));
+
+      repo.delete(first);
+
+      assertTrue(repo.searchByFirstNamePrefix("Pi", 0, 10).isEmpty());
+      assertFalse(repo.existsByIdNumber("id-0"));
+      assertFalse(repo.existsByMobileNumber("mobile-moved"));
+   }
+
+   @Test
+   @Tag("footprint")
+   void testHeapFootprint() {
+      int count = 200_000;
+      bytesPerClient(count / 10, this::tiered, ClientRepo::new); //leave out the one-off allocations of the first run
+      long tiered = bytesPerClient(count, this::tiered, ClientRepo::new); //the indexes of the repository included
+
+      assertTrue(tiered < 20, "tiered " + tiered);
+   }
+
+   private ClientStore tiered() {
+      try {
+         return new TieredClientStore(dir, 1024, registry);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private double gets(String result) {
+      return registry.get("cache.gets").tag("cache", TieredClientStore.NAME).tag("result", result).counter().count();
+   }
+}
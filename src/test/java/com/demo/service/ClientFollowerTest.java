@@ -0,0 +1,188 @@
+package com.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.demo.ClientApiApplication;
+
+/**
+ * A leader and a follower instance on localhost.
+ */
+class ClientFollowerTest {
+   static final HttpClient HTTP = HttpClient.newHttpClient();
+   static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+   private ConfigurableApplicationContext leader;
+   private ConfigurableApplicationContext follower;
+
+   @BeforeEach
+   public void setup() {
+      leader = start(0);
+   }
+
+   @AfterEach
+   public void teardown() {
+      if (follower != null) follower.close();
+      if (leader != null) leader.close();
+   }
+
+   @Test
+   void testFollowsTheLeader() throws Exception {
+      String dewald = create(leader, "Dewald", "9607104800084");
+      follower = startFollower();
+      await(() -> status(follower, "/v1/clients/" + dewald) == 200); //loaded from the export
+
+      String jan = create(leader, "Jan", "7711145800087");
+      await(() -> status(follower, "/v1/clients/" + jan) == 200); //followed from the changes
+
+      send(leader, "PUT", "/v1/clients/" + dewald, client("Dewalt", "9607104800084"));
+      send(leader, "DELETE", "/v1/clients/" + jan, null);
+
+      await(() -> status(follower, "/v1/clients/" + jan) == 404);
+      await(() -> get(follower, "/v1/clients?firstName=Dewalt").body().contains("\"client\":" + dewald));
+      await(() -> status(follower, "/actuator/health") == 200);
+
+      ClientFollower replication = follower.getBean(ClientFollower.class);
+      assertTrue(replication.lag().compareTo(Duration.ofSeconds(5)) < 0, "lag " + replication.lag());
+      assertEquals(leader.getBean(ClientService.class).find(Long.valueOf(dewald)).getVersion(),
+            follower.getBean(ClientService.class).find(Long.valueOf(dewald)).getVersion());
+
+      //an ETag read from the follower matches on the leader
+      String eTag = get(follower, "/v1/clients/" + dewald).headers().firstValue("ETag").orElseThrow();
+      assertEquals(get(leader, "/v1/clients/" + dewald).headers().firstValue("ETag").orElseThrow(), eTag);
+      HttpRequest update = HttpRequest.newBuilder(URI.create(url(leader, "/v1/clients/" + dewald)))
+            .header("Content-Type", "application/json")
+            .header("If-Match", eTag)
+            .PUT(HttpRequest.BodyPublishers.ofString(client("Dewald", "9607104800084")))
+            .build();
+      assertEquals(200, HTTP.send(update, HttpResponse.BodyHandlers.ofString()).statusCode());
+   }
+
+   @Test
+   void testHandsOutTheETagsOfTheLeader() throws Exception {
+      String dewald = create(leader, "Dewald", "9607104800084");
+      send(leader, "PUT", "/v1/clients/" + dewald, client("Dewalt", "9607104800084")); //at version 2 before the load
+      follower = startFollower();
+      await(() -> status(follower, "/actuator/health") == 200); //loaded from the export, not changed since
+
+      String eTag = get(follower, "/v1/clients/" + dewald).headers().firstValue("ETag").orElseThrow();
+      assertEquals(get(leader, "/v1/clients/" + dewald).headers().firstValue("ETag").orElseThrow(), eTag);
+      HttpRequest update = HttpRequest.newBuilder(URI.create(url(leader, "/v1/clients/" + dewald)))
+            .header("Content-Type", "application/json")
+            .header("If-Match", eTag)
+            .PUT(HttpRequest.BodyPublishers.ofString(client("Dewald", "9607104800084")))
+            .build();
+      assertEquals(200, HTTP.send(update, HttpResponse.BodyHandlers.ofString()).statusCode());
+   }
+
+   @Test
+   void testRedirectsWrites() throws Exception {
+      follower = startFollower();
+
+      HttpResponse<String> response = send(follower, "POST", "/v1/clients", client("Dewald", "9607104800084"));
+
+      assertEquals(307, response.statusCode());
+      assertEquals(url(leader, "/v1/clients"), response.headers().firstValue("Location").orElse(null));
+      assertEquals(200, status(follower, "/v1/clients?firstName=Dewald"));
+      assertEquals(200, send(follower, "POST", "/v1/clients/_mget", "[1]").statusCode()); //a read
+   }
+
+   @Test
+   void testReactiveFollowerRedirectsWrites() throws Exception {
+      String dewald = create(leader, "Dewald", "9607104800084");
+      follower = startFollower("--spring.profiles.active=reactive");
+      await(() -> status(follower, "/v1/clients/" + dewald) == 200);
+
+      HttpResponse<String> response = send(follower, "DELETE", "/v1/clients/" + dewald + "?reason=test", null);
+
+      assertEquals(307, response.statusCode());
+      assertEquals(url(leader, "/v1/clients/" + dewald + "?reason=test"), response.headers().firstValue("Location").orElse(null));
+   }
+
+   @Test
+   void testReloadsAfterTheLeaderRestarted() throws Exception {
+      int port = port(leader);
+      String dewald = create(leader, "Dewald", "9607104800084");
+      follower = startFollower();
+      await(() -> status(follower, "/v1/clients/" + dewald) == 200);
+
+      leader.close(); //the clients of the in-memory leader are gone
+      leader = start(port);
+      String jan = create(leader, "Jan", "7711145800087");
+
+      await(() -> get(follower, "/v1/clients?idNumber=7711145800087").body().contains("\"client\":" + jan));
+      await(() -> !get(follower, "/v1/clients?idNumber=9607104800084").body().contains("Dewald"));
+      assertTrue(follower.getBean(ClientFollower.class).sequence() > 0);
+   }
+
+   private ConfigurableApplicationContext startFollower(String... args) {
+      return new SpringApplicationBuilder(ClientApiApplication.class).run(Stream.concat(Stream.of("--server.port=0",
+            "--client.replication.leader=" + url(leader, ""), "--client.replication.retry-interval=100ms"), 
+            Stream.of(args)).toArray(String[]::new));
+   }
+
+   static ConfigurableApplicationContext start(int port) {
+      return new SpringApplicationBuilder(ClientApiApplication.class).run("--server.port=" + port);
+   }
+
+   static String create(ConfigurableApplicationContext instance, String firstName, String idNumber) throws Exception {
+      HttpResponse<String> response = send(instance, "POST", "/v1/clients", client(firstName, idNumber));
+      assertEquals(201, response.statusCode(), response.body());
+      return response.body();
+   }
+
+   static String client(String firstName, String idNumber) {
+      return "{\"firstName\":\"" + firstName + "\",\"lastName\":\"Pretorius\",\"idNumber\":\"" + idNumber + "\"}";
+   }
+
+   static int status(ConfigurableApplicationContext instance, String path) {
+      return get(instance, path).statusCode();
+   }
+
+   static HttpResponse<String> get(ConfigurableApplicationContext instance, String path) {
+      try {
+         return send(instance, "GET", path, null);
+      } catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   static HttpResponse<String> send(ConfigurableApplicationContext instance, String method, String path, String json)
+         throws Exception {
+      HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url(instance, path)))
+            .header("Content-Type", "application/json")
+            .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+      return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofString());
+   }
+
+   static String url(ConfigurableApplicationContext instance, String path) {
+      return "http://localhost:" + port(instance) + path;
+   }
+
+   static int port(ConfigurableApplicationContext instance) {
+      return ((WebServerApplicationContext) instance).getWebServer().getPort();
+   }
+
+   static void await(BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.nanoTime() + TIMEOUT.toNanos();
+
+      while (!condition.getAsBoolean()) {
+         assertTrue(System.nanoTime() < deadline, "Timed out");
+         Thread.sleep(50);
+      }
+   }
+}
@@ -0,0 +1,99 @@
+package com.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.demo.dto.ClientDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ClientJsonCacheTest {
+   static final ObjectMapper MAPPER = new ObjectMapper();
+
+   private MeterRegistry registry;
+
+   @BeforeEach
+   public void setup() {
+      registry = new SimpleMeterRegistry();
+   }
+
+   @Test
+   void testHitsOnlyTheSameVersion() throws Exception {
+      ClientJsonCache cache = new ClientJsonCache(MAPPER, registry, 16);
+      ClientDto client = client(1L, "Dewald", 1L);
+
+      byte[] json = cache.json(client);
+      assertEquals(MAPPER.writeValueAsString(client), new String(json));
+      assertSame(json, cache.json(client));
+      assertSame(json, cache.json(client(1L, "Dewald", 1L)));
+
+      ClientDto updated = client(1L, "Jan", 2L);
+      assertEquals(MAPPER.writeValueAsString(updated), new String(cache.json(updated)));
+
+      assertEquals(2, gets("hit"));
+      assertEquals(2, gets("miss"));
+      assertEquals(0, evictions());
+   }
+
+   @Test
+   void testInvalidate() throws Exception {
+      ClientJsonCache cache = new ClientJsonCache(MAPPER, registry, 16);
+      ClientDto client = client(1L, "Dewald", 1L);
+      byte[] json = cache.json(client);
+
+      cache.invalidate(2L); //another id, nothing cached
+      assertSame(json, cache.json(client));
+
+      cache.invalidate(1L);
+      assertNotSame(json, cache.json(client));
+      assertEquals(2, gets("miss"));
+   }
+
+   @Test
+   void testBounded() throws Exception {
+      ClientJsonCache cache = new ClientJsonCache(MAPPER, registry, 10); //16 slots
+
+      for (long id = 1; id <= 1000; id++) {
+         cache.json(client(id, "Dewald", 1L));
+      }
+
+      assertTrue(evictions() >= 1000 - 16, "evictions " + evictions()); //at most one client per slot survives
+
+      cache.json(client(1000L, "Dewald", 1L));
+      assertEquals(1, gets("hit"));
+   }
+
+   @Test
+   void testDisabled() throws Exception {
+      ClientJsonCache cache = new ClientJsonCache(MAPPER, registry, 0);
+      ClientDto client = client(1L, "Dewald", 1L);
+
+      assertEquals(MAPPER.writeValueAsString(client), new String(cache.json(client)));
+      assertEquals(MAPPER.writeValueAsString(client), new String(cache.json(client)));
+      cache.invalidate(1L);
+
+      assertEquals(0, gets("hit"));
+      assertEquals(2, gets("miss"));
+   }
+
+   private double gets(String result) {
+      return registry.get("cache.gets").tag("cache", ClientJsonCache.NAME).tag("result", result).counter().count();
+   }
+
+   private double evictions() {
+      return registry.get("cache.evictions").tag("cache", ClientJsonCache.NAME).counter().count();
+   }
+
+   static ClientDto client(Long id, String firstName, long version) {
+      ClientDto client = new ClientDto();
+      client.setClient(id);
+      client.setFirstName(firstName);
+      client.setLastName("Pretorius");
+      client.setVersion(version);
+      return client;
+   }
+}
@@ -3,8 +3,11 @@ package com.demo.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
-import java.util.function.Function;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,9 +15,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.demo.dto.BatchResultDto;
+import com.demo.dto.ClientChangeDto;
 import com.demo.dto.ClientDto;
+import com.demo.dto.ClientPage;
+import com.demo.dto.MultiGetResultDto;
+import com.demo.error.ChangesLostException;
 import com.demo.error.DataNotFoundException;
+import com.demo.error.UniqueConstraintException;
 import com.demo.error.ValidationException;
+import com.demo.error.VersionConflictException;
+import com.demo.repository.ChangeLog;
 import com.demo.repository.ClientRepo;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,27 +34,11 @@ class ClientServiceTest {
    
    @Mock
    private ClientRepo repo;
+   @Mock
+   private ClientJsonCache jsonCache;
    @InjectMocks
    private ClientService service;
 
-   @Test
-   void testValidateIdNumber() {
-      assertFalse(service.validateIdNumber(null)); //n/a
-      assertFalse(service.validateIdNumber("960710480008")); //too short
-      //invalid ids
-      assertFalse(service.validateIdNumber("9607104800081")); //female 
-      assertFalse(service.validateIdNumber("7711145800089")); //male
-      //valid ids
-      assertTrue(service.validateIdNumber("9607104800084")); //female 
-      assertTrue(service.validateIdNumber("7711145800087")); //male
-   }
-   
-   @Test
-   void testValidateMobileNumber() {
-      assertTrue(service.validateMobileNumber("7711145800089"));
-      assertFalse(service.validateMobileNumber("77111ABC00089"));
-   }
-   
    @Test
    void testValidateNonTransient() {
       ClientDto client = new ClientDto(); //empty client
@@ -53,6 +48,7 @@ class ClientServiceTest {
       assertTrue(error.getReasons().stream().anyMatch(reason -> reason.contains("Mandatory firstName is not submitted")));
       assertTrue(error.getReasons().stream().anyMatch(reason -> reason.contains("Mandatory lastName is not submitted")));
       assertTrue(error.getReasons().stream().anyMatch(reason -> reason.contains("Mandatory idNumber is not submitted")));
+      assertEquals(0, error.getStackTrace().length); //expected failures skip the stack trace
       
       client.setIdNumber("bad id number");
       client.setMobileNumber("no dial tone");
@@ -74,8 +70,6 @@ class ClientServiceTest {
       client.setMobileNumber("7711145800089");
       
       doNothing().when(spy).validateNonTransient(client);
-      when(repo.fieldExists(any(Function.class), eq("7711145800087"))).thenReturn(Boolean.FALSE);
-      when(repo.fieldExists(any(Function.class), eq("7711145800089"))).thenReturn(Boolean.FALSE);
       when(repo.insert(client)).thenReturn(id);
       
       assertEquals(id, spy.create(client));
@@ -92,10 +86,10 @@ class ClientServiceTest {
       client.setMobileNumber("7711145800089");
       
       doNothing().when(spy).validateNonTransient(client);
-      when(repo.fieldExists(any(Function.class), eq("7711145800089"))).thenReturn(Boolean.FALSE);
-      when(repo.fieldExists(any(Function.class), eq("7711145800087"))).thenReturn(Boolean.TRUE);
+      when(repo.insert(client)).thenThrow(new UniqueConstraintException("idNumber"));
       
-      assertThrows(ValidationException.class, () -> spy.create(client));
+      ValidationException error = assertThrows(ValidationException.class, () -> spy.create(client));
+      assertEquals(List.of("Client creation failed: Existing idNumber"), error.getReasons());
       
       verify(spy).validateNonTransient(client);
    }
@@ -109,9 +103,10 @@ class ClientServiceTest {
       client.setMobileNumber("7711145800089");
       
       doNothing().when(spy).validateNonTransient(client);
-      when(repo.fieldExists(any(Function.class), eq("7711145800089"))).thenReturn(Boolean.TRUE);
+      when(repo.insert(client)).thenThrow(new UniqueConstraintException("mobileNumber"));
       
-      assertThrows(ValidationException.class, () -> spy.create(client));
+      ValidationException error = assertThrows(ValidationException.class, () -> spy.create(client));
+      assertEquals(List.of("Client creation failed: Existing mobileNumber"), error.getReasons());
       
       verify(spy).validateNonTransient(client);
    }
@@ -121,21 +116,217 @@ class ClientServiceTest {
       Long id = RANDOM.nextLong();
       ClientService spy = spy(service);
       ClientDto client = new ClientDto();
-      ClientDto oldClient = new ClientDto();
       
       client.setIdNumber("7711145800087"); 
       client.setMobileNumber("7711145800089");
-      oldClient.setIdNumber("7711145800089"); 
-      oldClient.setMobileNumber("7711145800087");
       
       doNothing().when(spy).validateNonTransient(client);
-      doReturn(oldClient).when(spy).find(id);
-      when(repo.fieldExists(any(Function.class), eq("7711145800087"))).thenReturn(Boolean.FALSE);
-      when(repo.fieldExists(any(Function.class), eq("7711145800089"))).thenReturn(Boolean.FALSE);
+      when(repo.update(id, client, ClientRepo.ANY_VERSION)).thenReturn(true);
       
       assertEquals(client, spy.update(id, client));
       
       verify(spy).validateNonTransient(client);
+      verify(jsonCache).invalidate(id);
+   }
+   
+   @Test
+   void testUpdateExistingIdNumber() {
+      Long id = RANDOM.nextLong();
+      ClientService spy = spy(service);
+      ClientDto client = new ClientDto();
+      
+      doNothing().when(spy).validateNonTransient(client);
+      when(repo.update(id, client, ClientRepo.ANY_VERSION)).thenThrow(new UniqueConstraintException("idNumber"));
+      
+      ValidationException error = assertThrows(ValidationException.class, () -> spy.update(id, client));
+      assertEquals(List.of("Client update failed: Existing idNumber"), error.getReasons());
+   }
+   
+   @Test
+   void testUpdateVersionConflict() {
+      Long id = RANDOM.nextLong();
+      ClientService spy = spy(service);
+      ClientDto client = new ClientDto();
+      
+      doNothing().when(spy).validateNonTransient(client);
+      when(repo.update(id, client, 3L)).thenThrow(new VersionConflictException(id, 4L));
+      
+      VersionConflictException error = assertThrows(VersionConflictException.class, () -> spy.update(id, client, 3L));
+      assertEquals(4L, error.getVersion());
+      assertEquals(0, error.getStackTrace().length);
+      verifyNoInteractions(jsonCache);
+   }
+   
+   @Test
+   void testChanges() {
+      ChangeLog changeLog = mock(ChangeLog.class);
+      ClientChangeDto created = new ClientChangeDto(11L, ClientChangeDto.Type.CREATED, 1L, 1L, new ClientDto(), 1L, "e");
+      ClientChangeDto deleted = new ClientChangeDto(12L, ClientChangeDto.Type.DELETED, 1L, null, null, 2L, "e");
+      
+      when(repo.changes()).thenReturn(changeLog);
+      when(repo.epoch()).thenReturn("e");
+      when(changeLog.lastSequence()).thenReturn(10L);
+      when(changeLog.read(10L, ClientService.CHANGE_BATCH_SIZE))
+            .thenReturn(List.of())
+            .thenReturn(List.of(created));
+      when(changeLog.read(11L, ClientService.CHANGE_BATCH_SIZE)).thenReturn(List.of(deleted));
+      when(changeLog.read(12L, ClientService.CHANGE_BATCH_SIZE)).thenThrow(new ChangesLostException(12L, 99L));
+      
+      List<ClientChangeDto> changes = service.changes(null).collectList().block(Duration.ofSeconds(5));
+      
+      assertEquals(ClientChangeDto.Type.HEARTBEAT, changes.get(0).getType()); //caught up at the start
+      assertEquals(10L, changes.get(0).getSequence());
+      assertEquals("e", changes.get(0).getEpoch());
+      assertEquals(List.of(created, deleted, ClientChangeDto.resync(99L)), changes.subList(1, changes.size()));
+   }
+   
+   @Test
+   void testChangesHeartbeatWhenIdle() {
+      ChangeLog changeLog = mock(ChangeLog.class);
+      
+      when(repo.changes()).thenReturn(changeLog);
+      when(changeLog.read(5L, ClientService.CHANGE_BATCH_SIZE)).thenReturn(List.of());
+      
+      long start = System.currentTimeMillis();
+      List<ClientChangeDto> heartbeats = service.changes(5L).take(2).collectList().block(Duration.ofSeconds(5));
+      
+      assertEquals(List.of(5L, 5L), heartbeats.stream().map(ClientChangeDto::getSequence).toList());
+      assertTrue(heartbeats.get(1).getTime() - heartbeats.get(0).getTime() >= ClientService.CHANGE_HEARTBEAT_INTERVAL.toMillis());
+      assertTrue(heartbeats.get(0).getTime() >= start);
+   }
+   
+   @Test
+   void testChangesSince() {
+      ChangeLog changeLog = mock(ChangeLog.class);
+      
+      when(repo.changes()).thenReturn(changeLog);
+      when(changeLog.read(5L, ClientService.CHANGE_BATCH_SIZE)).thenThrow(new ChangesLostException(5L, 10L));
+      
+      assertEquals(List.of(ClientChangeDto.resync(10L)), service.changes(5L).collectList().block(Duration.ofSeconds(5)));
+      verify(changeLog, never()).lastSequence();
+   }
+   
+   @Test
+   void testUpdateNotFound() {
+      Long id = RANDOM.nextLong();
+      ClientService spy = spy(service);
+      ClientDto client = new ClientDto();
+      
+      doNothing().when(spy).validateNonTransient(client);
+      when(repo.update(id, client, ClientRepo.ANY_VERSION)).thenReturn(false);
+      
+      assertThrows(DataNotFoundException.class, () -> spy.update(id, client));
+   }
+   
+   @Test
+   void testSearch() {
+      ClientDto first = new ClientDto();
+      ClientDto second = new ClientDto();
+      ClientDto third = new ClientDto();
+      
+      first.setClient(3L);
+      second.setClient(7L);
+      
+      when(repo.search(null, "Dewald", null, 0L, 3)).thenReturn(List.of(first, second, third));
+      when(repo.search(null, "Dewald", null, 7L, 3)).thenReturn(List.of(third));
+      
+      ClientPage page = service.search(null, "Dewald", null, null, 2);
+      assertEquals(List.of(first, second), page.getClients());
+      assertNotNull(page.getNextCursor());
+      
+      ClientPage lastPage = service.search(null, "Dewald", null, page.getNextCursor(), 2);
+      assertEquals(List.of(third), lastPage.getClients());
+      assertNull(lastPage.getNextCursor());
+   }
+   
+   @Test
+   void testSearchRanked() {
+      ClientDto first = new ClientDto();
+      ClientDto second = new ClientDto();
+      
+      when(repo.searchByFirstNamePrefix("De", 0, 2)).thenReturn(List.of(first, second));
+      when(repo.searchByFirstNamePrefix("De", 1, 2)).thenReturn(List.of(second));
+      when(repo.searchByFirstNameSimilarTo("Dewlad", 0, 101)).thenReturn(List.of(first));
+      
+      ClientPage page = service.search(null, null, null, "De", null, null, 1);
+      assertEquals(List.of(first), page.getClients());
+      
+      ClientPage lastPage = service.search(null, null, null, "De", null, page.getNextCursor(), 1);
+      assertEquals(List.of(second), lastPage.getClients());
+      assertNull(lastPage.getNextCursor());
+      
+      assertEquals(List.of(first), service.search(null, null, null, null, "Dewlad", null, 100).getClients());
+      
+      assertThrows(ValidationException.class, () -> service.search(null, null, null, "De", "Dewlad", null, 10));
+      assertThrows(ValidationException.class, () -> service.search("9607104800084", null, null, "De", null, null, 10));
+   }
+   
+   @Test
+   void testSearchInvalidPaging() {
+      assertThrows(ValidationException.class, () -> service.search(null, "Dewald", null, null, 0));
+      assertThrows(ValidationException.class, () -> service.search(null, "Dewald", null, "not a cursor!", 10));
+      
+      service.search(null, "Dewald", null, null, ClientService.MAX_PAGE_SIZE * 10);
+      verify(repo).search(null, "Dewald", null, 0L, ClientService.MAX_PAGE_SIZE + 1);
+   }
+   
+   @Test
+   void testBatch() {
+      ClientDto invalid = new ClientDto();
+      ClientDto created = validClient("9607104800084");
+      ClientDto duplicate = validClient("9607104800084");
+      ClientDto updated = validClient("7711145800087");
+      ClientDto missing = validClient("8001015009087");
+      
+      updated.setClient(5L);
+      missing.setClient(6L);
+      
+      when(repo.insertAll(List.of(created, duplicate))).thenAnswer(invocation -> {
+         created.setClient(9L);
+         return Arrays.asList(null, "idNumber");
+      });
+      when(repo.update(5L, updated)).thenReturn(true);
+      when(repo.update(6L, missing)).thenReturn(false);
+      
+      List<BatchResultDto> results = service.batch(List.of(invalid, created, duplicate, updated, missing));
+      
+      assertEquals(5, results.size());
+      assertNull(results.get(0).getClient());
+      assertTrue(results.get(0).getFailure().getReasons().contains("Mandatory firstName is not submitted"));
+      assertEquals(new BatchResultDto(9L, null), results.get(1));
+      assertEquals(List.of("Client creation failed: Existing idNumber"), results.get(2).getFailure().getReasons());
+      assertEquals(new BatchResultDto(5L, null), results.get(3));
+      assertEquals(List.of("Data not found - Client id: 6"), results.get(4).getFailure().getReasons());
+   }
+   
+   @Test
+   void testBatchAppliesClientsInListOrder() {
+      ClientService stored = new ClientService(new ClientRepo(), jsonCache);
+      Long id = stored.create(validClient("9607104800084"));
+      ClientDto created = validClient("7711145800087");
+      ClientDto updated = validClient("9607104800084");
+      ClientDto recreated = validClient("8001015009087");
+      
+      created.setMobileNumber("0821234567");
+      updated.setClient(id);
+      updated.setMobileNumber("0821234567"); //taken by the client created before it
+      recreated.setMobileNumber("0821234567");
+      
+      List<BatchResultDto> results = stored.batch(Arrays.asList(created, null, updated, recreated));
+      
+      assertNotNull(results.get(0).getClient());
+      assertEquals(List.of("Mandatory client is not submitted"), results.get(1).getFailure().getReasons());
+      assertEquals(List.of("Client update failed: Existing mobileNumber"), results.get(2).getFailure().getReasons());
+      assertEquals(List.of("Client creation failed: Existing mobileNumber"), results.get(3).getFailure().getReasons());
+      assertNull(stored.find(id).getMobileNumber());
+   }
+   
+   @Test
+   void testBatchTooLarge() {
+      List<ClientDto> clients = Collections.nCopies(ClientService.MAX_BATCH_SIZE + 1, new ClientDto());
+      
+      assertThrows(ValidationException.class, () -> service.batch(clients));
+      verifyNoInteractions(repo);
    }
    
    @Test
@@ -148,7 +339,53 @@ class ClientServiceTest {
             .thenReturn(null); //not found
       
       assertEquals(client, service.find(id));
-      assertThrows(DataNotFoundException.class, () -> service.find(id));
+      DataNotFoundException error = assertThrows(DataNotFoundException.class, () -> service.find(id));
+      assertEquals(0, error.getStackTrace().length);
+   }
+   
+   @Test
+   void testFindAllById() {
+      ClientDto client = validClient("9607104800084");
+      
+      when(repo.findAllById(List.of(3L, 1L, 2L))).thenReturn(Arrays.asList(client, null, client));
+      
+      MultiGetResultDto result = service.findAllById(List.of(3L, 1L, 3L, 2L));
+      
+      assertEquals(List.of(client, client), result.getClients());
+      assertEquals(List.of(1L), result.getMissing());
+      assertThrows(ValidationException.class, () -> service.findAllById(Arrays.asList(1L, null)));
+      assertThrows(ValidationException.class, 
+            () -> service.findAllById(Collections.nCopies(ClientService.MAX_BATCH_SIZE + 1, 1L)));
+   }
+   
+   @Test
+   void testReadModifyWrite() {
+      ClientService stored = new ClientService(new ClientRepo(), jsonCache);
+      Long id = stored.create(validClient("9607104800084"));
+      
+      ClientDto client = stored.find(id);
+      client.setAddress("1 Main Road");
+      ClientDto updated = stored.update(id, client, client.getVersion());
+      
+      assertEquals(2L, updated.getVersion());
+      assertEquals(1L, client.getVersion()); //the caller's client is left as it is
+      assertEquals("1 Main Road", stored.find(id).getAddress());
+      
+      ClientDto found = stored.search("9607104800084", null, null, null, 10).getClients().get(0);
+      found.setAddress("2 Main Road");
+      stored.update(id, found);
+      
+      ClientDto exported = stored.findAll().iterator().next();
+      exported.setAddress("3 Main Road");
+      assertEquals("2 Main Road", stored.find(id).getAddress());
+   }
+   
+   static ClientDto validClient(String idNumber) {
+      ClientDto client = new ClientDto();
+      client.setFirstName("Dewald");
+      client.setLastName("Pretorius");
+      client.setIdNumber(idNumber);
+      return client;
    }
    
    @Test
@@ -160,6 +397,9 @@ class ClientServiceTest {
             .thenReturn(false);
       
       service.remove(id);
+      verify(jsonCache).invalidate(id);
+      
       assertThrows(DataNotFoundException.class, () -> service.remove(id));
+      verifyNoMoreInteractions(jsonCache);
    }
 }
@@ -0,0 +1,71 @@
+package com.demo.service;
+
+import static com.demo.error.ValidationCode.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.demo.dto.ClientDto;
+import com.demo.error.ValidationCode;
+
+class ClientValidatorTest {
+
+   @Test
+   void testIsIdNumber() {
+      assertFalse(ClientValidator.isIdNumber(null)); //n/a
+      assertFalse(ClientValidator.isIdNumber("960710480008")); //too short
+      assertFalse(ClientValidator.isIdNumber("96071048000840")); //too long
+      assertFalse(ClientValidator.isIdNumber("96071O4800084")); //letter O
+      //invalid ids
+      assertFalse(ClientValidator.isIdNumber("9607104800081")); //female
+      assertFalse(ClientValidator.isIdNumber("7711145800089")); //male
+      //valid ids
+      assertTrue(ClientValidator.isIdNumber("9607104800084")); //female
+      assertTrue(ClientValidator.isIdNumber("7711145800087")); //male
+   }
+
+   @Test
+   void testIsMobileNumber() {
+      assertTrue(ClientValidator.isMobileNumber(null)); //optional
+      assertTrue(ClientValidator.isMobileNumber("7711145800089"));
+      assertTrue(ClientValidator.isMobileNumber("0821234567"));
+      assertTrue(ClientValidator.isMobileNumber("+27821234567"));
+      assertTrue(ClientValidator.isMobileNumber(Long.toString(Long.MAX_VALUE)));
+      assertTrue(ClientValidator.isMobileNumber(Long.toString(Long.MIN_VALUE)));
+      assertTrue(ClientValidator.isMobileNumber("0000" + Long.MAX_VALUE));
+
+      assertFalse(ClientValidator.isMobileNumber("77111ABC00089"));
+      assertFalse(ClientValidator.isMobileNumber(""));
+      assertFalse(ClientValidator.isMobileNumber("+"));
+      assertFalse(ClientValidator.isMobileNumber("082 123 4567"));
+      assertFalse(ClientValidator.isMobileNumber("9223372036854775808")); //Long.MAX_VALUE + 1
+      assertFalse(ClientValidator.isMobileNumber("-9223372036854775809")); //Long.MIN_VALUE - 1
+   }
+
+   @Test
+   void testValidate() {
+      ClientDto client = new ClientDto();
+      client.setFirstName("Dewald");
+      client.setLastName("Pretorius");
+      client.setIdNumber("9607104800084");
+      client.setMobileNumber("0821234567");
+
+      assertEquals(0, ClientValidator.validate(client));
+
+      client.setLastName(null);
+      client.setIdNumber("9607104800081");
+      client.setMobileNumber("no dial tone");
+      int codes = ClientValidator.validate(client);
+
+      assertEquals(LAST_NAME_MISSING.bit() | ID_NUMBER_INVALID.bit() | MOBILE_NUMBER_INVALID.bit(), codes);
+      assertEquals(List.of("Mandatory lastName is not submitted", "Invalid idNumber: 9607104800081",
+            "Invalid mobileNumber: no dial tone"), ValidationCode.reasons(codes, client));
+      assertTrue(ValidationCode.rejectsValues(codes));
+      assertFalse(ValidationCode.rejectsValues(LAST_NAME_MISSING.bit() | FIRST_NAME_MISSING.bit()));
+
+      assertEquals(FIRST_NAME_MISSING.bit() | LAST_NAME_MISSING.bit() | ID_NUMBER_MISSING.bit(),
+            ClientValidator.validate(new ClientDto()));
+   }
+}
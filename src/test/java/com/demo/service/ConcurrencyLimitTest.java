@@ -0,0 +1,96 @@
+package com.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConcurrencyLimitTest {
+   static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+   static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+   private MeterRegistry registry;
+
+   @BeforeEach
+   public void setup() {
+      registry = new SimpleMeterRegistry();
+   }
+
+   @Test
+   void testRejectsPastTheLimit() {
+      ConcurrencyLimit limit = new ConcurrencyLimit("test", 4, 1, 100, 2.0, Duration.ofHours(1), registry);
+
+      assertEquals(4, takeAll(limit));
+      assertEquals(4, limit.inFlight());
+      assertEquals(1, limit.shed());
+
+      limit.release(FAST);
+      assertTrue(limit.tryAcquire());
+      assertFalse(limit.tryAcquire());
+
+      assertEquals(2, registry.get("client.admission.shed").tag("budget", "test").counter().count());
+      assertEquals(4, registry.get("client.admission.limit").tag("budget", "test").gauge().value());
+      assertEquals(4, registry.get("client.admission.in.flight").tag("budget", "test").gauge().value());
+   }
+
+   @Test
+   void testGrowsWhileTheLatencyHolds() {
+      ConcurrencyLimit limit = new ConcurrencyLimit("test", 10, 1, 100, 2.0, Duration.ZERO, registry);
+
+      for (int round = 0; round < 20; round++) {
+         serve(limit, takeAll(limit), FAST);
+      }
+
+      assertTrue(limit.limit() > 20, "limit " + limit.limit());
+      assertEquals(0.001, registry.get("client.admission.latency").tag("budget", "test").gauge().value(), 1e-9);
+   }
+
+   @Test
+   void testShrinksWhenTheLatencyRises() {
+      ConcurrencyLimit limit = new ConcurrencyLimit("test", 50, 5, 100, 2.0, Duration.ZERO, registry);
+      serve(limit, takeAll(limit), FAST);
+      int fast = limit.limit();
+
+      for (int round = 0; round < 3; round++) {
+         serve(limit, takeAll(limit), SLOW);
+      }
+
+      assertTrue(limit.limit() < fast / 2, "limit " + limit.limit() + " after " + fast);
+      assertTrue(limit.limit() >= 5);
+   }
+
+   @Test
+   void testHoldsUnderLightLoad() {
+      ConcurrencyLimit limit = new ConcurrencyLimit("test", 10, 1, 100, 2.0, Duration.ZERO, registry);
+
+      for (int request = 0; request < 100; request++) {
+         assertTrue(limit.tryAcquire());
+         limit.release(request % 2 == 0 ? FAST : SLOW);
+      }
+
+      assertEquals(10, limit.limit());
+      assertEquals(0, limit.shed());
+   }
+
+   private static int takeAll(ConcurrencyLimit limit) {
+      int taken = 0;
+
+      while (limit.tryAcquire()) {
+         taken++;
+      }
+
+      return taken;
+   }
+
+   private static void serve(ConcurrencyLimit limit, int requests, long latency) {
+      for (int request = 0; request < requests; request++) {
+         limit.release(latency);
+      }
+   }
+}